@@ -0,0 +1,104 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.servicebus;
+
+/**
+ * Tunes how many messages the message pump handles concurrently, between a minimum and a maximum, with additive increase and multiplicative decrease.
+ * Calls are looked at in rounds of as many calls as the current limit. After a round in which handlers kept their latency, didn't fail too often,
+ * and the service didn't report being busy, one more concurrent call is allowed. Otherwise the limit is cut down, so overloaded downstream services
+ * get relief quickly while spare capacity is taken up gradually.
+ */
+final class AdaptiveConcurrencyLimiter {
+    // Fraction of the limit kept when it is cut down
+    static final double DECREASE_FACTOR = 0.7;
+    // Round is considered overloaded if its average latency is this many times the baseline latency
+    static final double LATENCY_TOLERANCE = 2.0;
+    // Round is considered overloaded if more than this fraction of calls failed
+    static final double MAX_ERROR_RATE = 0.2;
+    // Baseline moves this far towards the latency of each round that wasn't overloaded, so it follows handlers that became slower for good
+    private static final double BASELINE_DRIFT = 0.05;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private double limit;
+    private double baselineLatencyInNanos;
+    private int roundCallCount;
+    private int roundFailureCount;
+    // Latency of successful calls only, as failed calls may fail fast and would pull the baseline down
+    private long roundLatencyInNanos;
+    private boolean isServerBusyInRound;
+
+    AdaptiveConcurrencyLimiter(int minLimit, int maxLimit) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Minimum concurrent calls must be at least 1 and not more than maximum concurrent calls.");
+        }
+
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = minLimit;
+        this.baselineLatencyInNanos = 0;
+        this.startRound();
+    }
+
+    synchronized int getLimit() {
+        return (int) this.limit;
+    }
+
+    synchronized double getBaselineLatencyInNanos() {
+        return this.baselineLatencyInNanos;
+    }
+
+    // Service reported being busy, which cuts down the limit at the end of the current round
+    synchronized void onServerBusy() {
+        this.isServerBusyInRound = true;
+    }
+
+    /**
+     * Records a completed handler call.
+     * @return true if the limit changed
+     */
+    synchronized boolean onCallCompleted(long latencyInNanos, boolean failed) {
+        this.roundCallCount++;
+        if (failed) {
+            this.roundFailureCount++;
+        } else {
+            this.roundLatencyInNanos += Math.max(0, latencyInNanos);
+        }
+
+        if (this.roundCallCount < this.getLimit()) {
+            return false;
+        }
+
+        int previousLimit = this.getLimit();
+        int roundSuccessCount = this.roundCallCount - this.roundFailureCount;
+        double roundAverageLatency = roundSuccessCount == 0 ? 0 : this.roundLatencyInNanos / (double) roundSuccessCount;
+        boolean isOverloaded = this.isServerBusyInRound
+                || this.roundFailureCount > this.roundCallCount * MAX_ERROR_RATE
+                || (this.baselineLatencyInNanos > 0 && roundAverageLatency > this.baselineLatencyInNanos * LATENCY_TOLERANCE);
+        if (isOverloaded) {
+            this.limit = Math.max(this.minLimit, this.limit * DECREASE_FACTOR);
+        } else {
+            this.limit = Math.min(this.maxLimit, this.limit + 1);
+        }
+
+        // Overloaded rounds don't show the latency of a healthy handler, so they would skew the baseline
+        if (!isOverloaded && roundSuccessCount > 0) {
+            if (this.baselineLatencyInNanos == 0 || roundAverageLatency < this.baselineLatencyInNanos) {
+                this.baselineLatencyInNanos = roundAverageLatency;
+            } else {
+                this.baselineLatencyInNanos += BASELINE_DRIFT * (roundAverageLatency - this.baselineLatencyInNanos);
+            }
+        }
+
+        this.startRound();
+        return this.getLimit() != previousLimit;
+    }
+
+    private void startRound() {
+        this.roundCallCount = 0;
+        this.roundFailureCount = 0;
+        this.roundLatencyInNanos = 0;
+        this.isServerBusyInRound = false;
+    }
+}
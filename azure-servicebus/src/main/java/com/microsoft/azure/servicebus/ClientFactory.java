@@ -406,6 +406,72 @@ public final class ClientFactory {
         return receiver.initializeAsync().thenApply((v) -> receiver);
     }
 
+    /**
+     * Creates a message receiver that receives messages from the entity over several receive links. Each message is settled over the link it was received on.
+     *
+     * @param amqpConnectionStringBuilder the connection string builder
+     * @param receiveMode                 {@link ReceiveMode} PeekLock or ReceiveAndDelete
+     * @param linkCount                   number of receive links, at least 1
+     * @param useSeparateConnections      true to open each link on its own connection, false to open all links on one connection
+     * @return {@link IMessageReceiver} instance
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     * @throws ServiceBusException  if the receiver cannot be created
+     * @since 1.2.19
+     */
+    public static IMessageReceiver createMultiLinkMessageReceiverFromConnectionStringBuilder(ConnectionStringBuilder amqpConnectionStringBuilder, ReceiveMode receiveMode, int linkCount, boolean useSeparateConnections) throws InterruptedException, ServiceBusException {
+        return Utils.completeFuture(createMultiLinkMessageReceiverFromConnectionStringBuilderAsync(amqpConnectionStringBuilder, receiveMode, linkCount, useSeparateConnections));
+    }
+
+    /**
+     * Creates a message receiver that receives messages from the entity over several receive links. Each message is settled over the link it was received on.
+     * @param namespaceEndpointURI endpoint uri of entity namespace
+     * @param entityPath path of entity
+     * @param clientSettings client settings
+     * @param receiveMode PeekLock or ReceiveAndDelete
+     * @param linkCount number of receive links, at least 1
+     * @param useSeparateConnections true to open each link on its own connection, false to open all links on one connection
+     * @return IMessageReceiver instance
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     * @throws ServiceBusException if the receiver cannot be created
+     * @since 1.2.19
+     */
+    public static IMessageReceiver createMultiLinkMessageReceiverFromEntityPath(URI namespaceEndpointURI, String entityPath, ClientSettings clientSettings, ReceiveMode receiveMode, int linkCount, boolean useSeparateConnections) throws InterruptedException, ServiceBusException {
+        return Utils.completeFuture(createMultiLinkMessageReceiverFromEntityPathAsync(namespaceEndpointURI, entityPath, clientSettings, receiveMode, linkCount, useSeparateConnections));
+    }
+
+    /**
+     * Asynchronously creates a message receiver that receives messages from the entity over several receive links. Each message is settled over the link it was received on.
+     *
+     * @param amqpConnectionStringBuilder the connection string builder
+     * @param receiveMode                 {@link ReceiveMode} PeekLock or ReceiveAndDelete
+     * @param linkCount                   number of receive links, at least 1
+     * @param useSeparateConnections      true to open each link on its own connection, false to open all links on one connection
+     * @return a CompletableFuture representing the pending creation of message receiver
+     * @since 1.2.19
+     */
+    public static CompletableFuture<IMessageReceiver> createMultiLinkMessageReceiverFromConnectionStringBuilderAsync(ConnectionStringBuilder amqpConnectionStringBuilder, ReceiveMode receiveMode, int linkCount, boolean useSeparateConnections) {
+        Utils.assertNonNull("amqpConnectionStringBuilder", amqpConnectionStringBuilder);
+        return createMultiLinkMessageReceiverFromEntityPathAsync(amqpConnectionStringBuilder.getEndpoint(), amqpConnectionStringBuilder.getEntityPath(), Util.getClientSettingsFromConnectionStringBuilder(amqpConnectionStringBuilder), receiveMode, linkCount, useSeparateConnections);
+    }
+
+    /**
+     * Asynchronously creates a message receiver that receives messages from the entity over several receive links. Each message is settled over the link it was received on.
+     * @param namespaceEndpointURI endpoint uri of entity namespace
+     * @param entityPath path of entity
+     * @param clientSettings client settings
+     * @param receiveMode PeekLock or ReceiveAndDelete
+     * @param linkCount number of receive links, at least 1
+     * @param useSeparateConnections true to open each link on its own connection, false to open all links on one connection
+     * @return a CompletableFuture representing the pending creation of message receiver
+     * @since 1.2.19
+     */
+    public static CompletableFuture<IMessageReceiver> createMultiLinkMessageReceiverFromEntityPathAsync(URI namespaceEndpointURI, String entityPath, ClientSettings clientSettings, ReceiveMode receiveMode, int linkCount, boolean useSeparateConnections) {
+        Utils.assertNonNull("namespaceEndpointURI", namespaceEndpointURI);
+        Utils.assertNonNull("entityPath", entityPath);
+        MultiLinkMessageReceiver receiver = new MultiLinkMessageReceiver(namespaceEndpointURI, entityPath, clientSettings, receiveMode, linkCount, useSeparateConnections);
+        return receiver.initializeAsync().thenApply((v) -> receiver);
+    }
+
     /**
      * Accept a {@link IMessageSession} in default {@link ReceiveMode#PEEKLOCK} mode from service bus connection string with specified session id. Session Id can be null, if null, service will return the first available session.
      *
@@ -16,6 +16,7 @@ public class ClientSettings {
     private TokenProvider tokenProvider;
     private RetryPolicy retryPolicy;
     private Duration operationTimeout;
+    private long prefetchMemoryBudgetInBytes;
     
     /**
      * Creates a new instance with the given token provider, default retry policy and default operation timeout.
@@ -36,9 +37,29 @@ public class ClientSettings {
      */
     public ClientSettings(TokenProvider tokenProvider, RetryPolicy retryPolicy, Duration operationTimeout)
     {
+        this(tokenProvider, retryPolicy, operationTimeout, Long.MAX_VALUE);
+    }
+
+    /**
+     * Creates a new instance with the given token provider, retry policy, operation timeout and prefetch memory budget.
+     * @param tokenProvider {@link TokenProvider} instance
+     * @param retryPolicy {@link RetryPolicy} instance
+     * @param operationTimeout default operation timeout to be used for all client operations. Client can override this value by explicitly specifying a timeout in the operation.
+     * @param prefetchMemoryBudgetInBytes maximum total size of messages prefetched by all receivers using these settings. Receivers stop requesting messages from the service when the budget is used up.
+     * {@link Long#MAX_VALUE} means no budget.
+     * @since 1.2.19
+     */
+    public ClientSettings(TokenProvider tokenProvider, RetryPolicy retryPolicy, Duration operationTimeout, long prefetchMemoryBudgetInBytes)
+    {
+        if (prefetchMemoryBudgetInBytes <= 0)
+        {
+            throw new IllegalArgumentException("Prefetch memory budget must be positive.");
+        }
+
         this.tokenProvider = tokenProvider;
         this.retryPolicy = retryPolicy;
         this.operationTimeout = operationTimeout;
+        this.prefetchMemoryBudgetInBytes = prefetchMemoryBudgetInBytes;
     }
 
     /**
@@ -67,4 +88,14 @@ public class ClientSettings {
     {
         return operationTimeout;
     }
+
+    /**
+     * Gets the prefetch memory budget contained in this instance.
+     * @return maximum total size of prefetched messages in bytes, {@link Long#MAX_VALUE} if there is no budget
+     * @since 1.2.19
+     */
+    public long getPrefetchMemoryBudgetInBytes()
+    {
+        return prefetchMemoryBudgetInBytes;
+    }
 }
@@ -9,6 +9,7 @@ import java.util.Collection;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 import com.microsoft.azure.servicebus.primitives.ServiceBusException;
 
@@ -329,6 +330,36 @@ public interface IMessageReceiver extends IMessageEntityClient, IMessageBrowser
      */
     Instant renewMessageLock(IMessage message) throws InterruptedException, ServiceBusException;
 
+    /**
+     * Keeps renewing the lock on the message until the message has been locked for the given duration, or until the message is settled through this receiver
+     * or {@link #unregisterMessageLockRenewal(UUID)} is called. The receiver renews locks of all messages registered with it that are due for renewal at
+     * about the same time with one request, so it is cheaper than renewing the lock of each message with {@link #renewMessageLockAsync(IMessage)}.
+     * Failures to renew are logged. Renewal stops when the lock is lost.
+     *
+     * @param message The {@link Message} received in {@link ReceiveMode#PEEKLOCK} mode whose lock should be renewed
+     * @param maxRenewalDuration how long from now the message should stay locked at most
+     * @since 1.2.19
+     */
+    void registerMessageLockRenewal(IMessage message, Duration maxRenewalDuration);
+
+    /**
+     * Same as {@link #registerMessageLockRenewal(IMessage, Duration)}, and also passes failures to renew the lock to the given consumer.
+     *
+     * @param message The {@link Message} received in {@link ReceiveMode#PEEKLOCK} mode whose lock should be renewed
+     * @param maxRenewalDuration how long from now the message should stay locked at most
+     * @param onRenewFailure consumer of failures to renew the lock, or null to only log them
+     * @since 1.2.19
+     */
+    void registerMessageLockRenewal(IMessage message, Duration maxRenewalDuration, Consumer<Throwable> onRenewFailure);
+
+    /**
+     * Stops renewing the lock on the message, if it was registered with {@link #registerMessageLockRenewal(IMessage, Duration)}.
+     *
+     * @param lockToken Message lock token {@link Message#getLockToken()}
+     * @since 1.2.19
+     */
+    void unregisterMessageLockRenewal(UUID lockToken);
+
     //Collection<Instant> renewMessageLockBatch(Collection<? extends IBrokeredMessage> messages) throws InterruptedException, ServiceBusException;    
 
     /**
@@ -349,4 +380,64 @@ public interface IMessageReceiver extends IMessageEntityClient, IMessageBrowser
      * @throws ServiceBusException if sets the value failed
      */
     void setPrefetchCount(int prefetchCount) throws ServiceBusException;
+
+    /**
+     * Gets the maximum total size of messages this receiver prefetches.
+     *
+     * @return maximum size of prefetched messages in bytes, {@link Long#MAX_VALUE} if prefetch is limited only by count
+     * @see #setMaxPrefetchBytes(long)
+     */
+    long getMaxPrefetchBytes();
+
+    /**
+     * Sets the maximum total size of messages this receiver prefetches, in addition to the prefetch count. The receiver requests only as many messages
+     * as are expected to fit, based on the sizes of the messages it has received so far, so the limit can be exceeded by messages larger than earlier ones.
+     * A receiver with no prefetched messages always requests at least one message, so messages larger than the limit are still received.
+     * The prefetch memory budget set in {@link ClientSettings} limits the prefetched messages of all receivers created from the same factory in the same way.
+     * By default, prefetch is limited only by count.
+     *
+     * @param maxPrefetchBytes maximum size of prefetched messages in bytes
+     * @throws IllegalArgumentException if the size is not positive
+     * @since 1.2.19
+     */
+    void setMaxPrefetchBytes(long maxPrefetchBytes);
+
+    /**
+     * Gets whether this receiver tunes its prefetch count.
+     *
+     * @return true if adaptive prefetch is enabled
+     * @see #setAdaptivePrefetchEnabled(boolean)
+     */
+    boolean isAdaptivePrefetchEnabled();
+
+    /**
+     * Enables or disables tuning of the prefetch count. When enabled, the receiver starts by prefetching one message and prefetches enough messages
+     * to keep up with the rate at which the application receives them, given the time it takes for a request for messages to be served.
+     * In PEEKLOCK mode, it also prefetches few enough messages for them to be received well before their locks expire.
+     * The prefetch count set with {@link #setPrefetchCount(int)} is the upper bound of the tuned prefetch count. Adaptive prefetch is disabled by default.
+     *
+     * @param enabled true to enable adaptive prefetch, false to prefetch as many messages as the prefetch count
+     * @throws ServiceBusException if setting adaptive prefetch failed
+     * @since 1.2.19
+     */
+    void setAdaptivePrefetchEnabled(boolean enabled) throws ServiceBusException;
+
+    /**
+     * Gets whether this receiver decodes received messages off the thread that handles the connection.
+     *
+     * @return true if lazy message decoding is enabled
+     * @see #setLazyMessageDecodingEnabled(boolean)
+     */
+    boolean isLazyMessageDecodingEnabled();
+
+    /**
+     * Enables or disables lazy message decoding. All receivers and senders created from the same factory share one thread that handles the connection.
+     * By default, that thread decodes each message as it is received. When lazy decoding is enabled, that thread only copies received messages,
+     * and messages are decoded on a worker thread when they are returned to the application. This spreads the decoding work of busy receivers over
+     * several threads. Prefetched messages then take their encoded size in memory until they are returned. Lazy message decoding is disabled by default.
+     *
+     * @param enabled true to decode messages when they are returned to the application, false to decode them as they are received
+     * @since 1.2.19
+     */
+    void setLazyMessageDecodingEnabled(boolean enabled);
 }
@@ -3,6 +3,7 @@
 
 package com.microsoft.azure.servicebus;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Collection;
 import java.util.concurrent.CompletableFuture;
@@ -51,6 +52,123 @@ public interface IMessageSender extends IMessageEntityClient {
      */
     CompletableFuture<Void> sendBatchAsync(Collection<? extends IMessage> messages);
 
+    /**
+     * Creates an empty batch whose maximum size is the maximum message size allowed by the entity this sender is connected to. Messages can be added to the batch until it is full,
+     * without having to find out by sending. This method blocks until the batch is created. Calling this method is equivalent to calling <code>createBatchAsync().get()</code>.
+     *
+     * @return an empty batch
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     * @throws ServiceBusException  if the batch couldn't be created
+     */
+    MessageBatch createBatch() throws InterruptedException, ServiceBusException;
+
+    /**
+     * Creates an empty batch whose maximum size is the maximum message size allowed by the entity this sender is connected to. Messages can be added to the batch until it is full,
+     * without having to find out by sending. This is an asynchronous method returning a CompletableFuture which completes when the batch is created.
+     *
+     * @return a CompletableFuture representing the pending batch creation
+     */
+    CompletableFuture<MessageBatch> createBatchAsync();
+
+    /**
+     * Sends a batch created by {@link #createBatchAsync()} to the Azure Service Bus entity this sender is connected to. This method blocks until the batch is sent to the entity. Calling this method is equivalent to calling
+     * <code>sendMessageBatchAsync(batch).get()</code>. For better performance, use async methods.
+     *
+     * @param batch batch of messages to be sent to the entity
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     * @throws ServiceBusException  if the batch couldn't be sent to the entity
+     * @throws IllegalArgumentException if the batch was created by a different sender
+     */
+    void sendMessageBatch(MessageBatch batch) throws InterruptedException, ServiceBusException;
+
+    /**
+     * Sends a batch created by {@link #createBatchAsync()} to the Azure Service Bus entity this sender is connected to. This is an asynchronous method returning a CompletableFuture which completes when the batch is sent to the entity.
+     *
+     * @param batch batch of messages to be sent to the entity
+     * @return a CompletableFuture representing the pending send
+     * @throws IllegalArgumentException if the batch was created by a different sender
+     */
+    CompletableFuture<Void> sendMessageBatchAsync(MessageBatch batch);
+
+    /**
+     * Sends messages to the Azure Service Bus entity this sender is connected to, splitting them into as many batches as needed. This method blocks until all messages are sent to the entity.
+     * Calling this method is equivalent to calling <code>sendInBatchesAsync(messages).get()</code>. For better performance, use async methods.
+     *
+     * @param messages collection of messages to be sent to the entity
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     * @throws ServiceBusException  if any of the batches couldn't be sent to the entity
+     * @see #sendInBatchesAsync(Collection)
+     */
+    void sendInBatches(Collection<? extends IMessage> messages) throws InterruptedException, ServiceBusException;
+
+    /**
+     * Sends messages to the Azure Service Bus entity this sender is connected to, splitting them into as many batches as needed. Unlike {@link #sendBatchAsync(Collection)}, messages don't need to
+     * have the same partition key, session id or scheduled enqueue time, and don't need to fit in one batch. Messages with the same partition key, session id and scheduled enqueue time
+     * are put in the same batches, in the order they are in the collection, and each batch is filled up to the maximum message size allowed by the entity. All batches are sent at the same time.
+     * This is an asynchronous method returning a CompletableFuture which completes when all batches are sent to the entity. If any batch fails, the returned CompletableFuture fails,
+     * and other batches may still have been sent.
+     *
+     * @param messages collection of messages to be sent to the entity
+     * @return a CompletableFuture representing the pending sends
+     */
+    CompletableFuture<Void> sendInBatchesAsync(Collection<? extends IMessage> messages);
+
+    /**
+     * Gets the linger time used for automatically batching messages sent one at a time.
+     *
+     * @return linger time, zero if automatic batching is disabled
+     * @see #setAutoBatchingLingerTime(Duration)
+     */
+    Duration getAutoBatchingLingerTime();
+
+    /**
+     * Sets the linger time used for automatically batching messages sent one at a time using {@link #sendAsync(IMessage)} or {@link #send(IMessage)}.
+     * When it is non-zero, a sent message waits up to the linger time for other messages sent by this sender, and they are all sent to the entity as one batch.
+     * A batch is sent earlier if it reaches the maximum message size allowed by the entity. Only messages with the same session id, partition key and scheduled enqueue time are batched together.
+     * Each send still completes only when the batch containing the message is sent to the entity. Automatic batching trades latency of individual sends for higher throughput, and is disabled by default.
+     *
+     * @param lingerTime maximum time a message waits for other messages before it is sent. Zero disables automatic batching, and sends any messages waiting in the current batch.
+     * @throws IllegalArgumentException if linger time is null or negative
+     */
+    void setAutoBatchingLingerTime(Duration lingerTime);
+
+    /**
+     * Gets the maximum number of sends this sender can have in flight.
+     *
+     * @return maximum number of pending sends
+     * @see #setMaxPendingSendCount(int)
+     */
+    int getMaxPendingSendCount();
+
+    /**
+     * Sets the maximum number of sends this sender can have in flight. A send, or a batch, counts as in flight until it completes.
+     * Sends beyond the limit wait until earlier sends complete before they are sent to the entity, and fail with a timeout if they can't start within the operation timeout.
+     * This bounds the memory used by a sender when messages are sent faster than the entity accepts them, for example while a link is being recreated.
+     * By default, the number of pending sends is not limited.
+     *
+     * @param maxPendingSendCount maximum number of pending sends
+     * @throws IllegalArgumentException if the count is not positive
+     */
+    void setMaxPendingSendCount(int maxPendingSendCount);
+
+    /**
+     * Gets the maximum total size in bytes of the encoded messages this sender can have in flight.
+     *
+     * @return maximum size of pending sends in bytes
+     * @see #setMaxPendingSendBytes(long)
+     */
+    long getMaxPendingSendBytes();
+
+    /**
+     * Sets the maximum total size in bytes of the encoded messages this sender can have in flight. Sends beyond the limit wait in the same way as sends beyond
+     * the limit set by {@link #setMaxPendingSendCount(int)}. A single send larger than the limit is sent when no other send is in flight.
+     * By default, the size of pending sends is not limited.
+     *
+     * @param maxPendingSendBytes maximum size of pending sends in bytes
+     * @throws IllegalArgumentException if the size is not positive
+     */
+    void setMaxPendingSendBytes(long maxPendingSendBytes);
+
     /**
      * Sends a scheduled message to the Azure Service Bus entity this sender is connected to. A scheduled message is enqueued and made available to receivers only at the scheduled enqueue time.
      * This is an asynchronous method returning a CompletableFuture which completes when the message is sent to the entity. The CompletableFuture, on completion, returns the sequence number of the scheduled message
@@ -0,0 +1,39 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.servicebus;
+
+/**
+ * Receives messages from a {@link MessagePublisher} as it asks for them. Follows the Reactive Streams Subscriber contract, so it can be adapted to
+ * Reactive Streams, Reactor or RxJava subscribers by forwarding each method.
+ *
+ * @since 1.2.19
+ */
+public interface IMessageSubscriber {
+
+    /**
+     * Called once when subscribing, before any other method. No messages are received until the subscriber asks for them through the subscription.
+     *
+     * @param subscription subscription to ask for messages and to cancel
+     */
+    public void onSubscribe(IMessageSubscription subscription);
+
+    /**
+     * Called with each received message. Never called more times than the number of messages asked for.
+     *
+     * @param message the received message
+     */
+    public void onNext(IMessage message);
+
+    /**
+     * Called once when receiving fails. No methods are called after it.
+     *
+     * @param throwable the failure
+     */
+    public void onError(Throwable throwable);
+
+    /**
+     * Called once when no more messages will be received. No methods are called after it.
+     */
+    public void onComplete();
+}
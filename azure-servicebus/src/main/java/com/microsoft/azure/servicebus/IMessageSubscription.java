@@ -0,0 +1,24 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.servicebus;
+
+/**
+ * Subscription of an {@link IMessageSubscriber} to a {@link MessagePublisher}. Follows the Reactive Streams Subscription contract.
+ *
+ * @since 1.2.19
+ */
+public interface IMessageSubscription {
+
+    /**
+     * Asks for more messages. Messages are only received from the entity when asked for, so a subscriber that stops asking stops receiving.
+     *
+     * @param messageCount number of messages to add to the number already asked for, must be positive. Long.MAX_VALUE asks for all messages.
+     */
+    public void request(long messageCount);
+
+    /**
+     * Stops receiving messages. Messages already asked for are not delivered.
+     */
+    public void cancel();
+}
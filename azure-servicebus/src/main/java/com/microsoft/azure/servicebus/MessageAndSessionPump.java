@@ -5,6 +5,9 @@ package com.microsoft.azure.servicebus;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
@@ -12,15 +15,19 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.microsoft.azure.servicebus.primitives.ExceptionUtil;
-import com.microsoft.azure.servicebus.primitives.MessageLockLostException;
 import com.microsoft.azure.servicebus.primitives.MessagingEntityType;
 import com.microsoft.azure.servicebus.primitives.MessagingFactory;
 import com.microsoft.azure.servicebus.primitives.OperationCancelledException;
+import com.microsoft.azure.servicebus.primitives.ServerBusyException;
 import com.microsoft.azure.servicebus.primitives.ServiceBusException;
 import com.microsoft.azure.servicebus.primitives.SessionLockLostException;
 import com.microsoft.azure.servicebus.primitives.StringUtil;
@@ -32,7 +39,8 @@ class MessageAndSessionPump extends InitializableEntity implements IMessageAndSe
     private static final Logger TRACE_LOGGER = LoggerFactory.getLogger(MessageAndSessionPump.class);
     private static final Duration MINIMUM_MESSAGE_LOCK_VALIDITY = Duration.ofSeconds(4);
     private static final Duration MAXIMUM_RENEW_LOCK_BUFFER = Duration.ofSeconds(10);
-    private static final Duration SLEEP_DURATION_ON_ACCEPT_SESSION_EXCEPTION = Duration.ofMinutes(1);
+    private static final Duration MINIMUM_ACCEPT_SESSION_RETRY_DELAY = Duration.ofSeconds(1);
+    private static final Duration MAXIMUM_ACCEPT_SESSION_RETRY_DELAY = Duration.ofMinutes(1);
     private static final int UNSET_PREFETCH_COUNT = -1; // Means prefetch count not set
     private static final CompletableFuture<Void> COMPLETED_FUTURE = CompletableFuture.completedFuture(null);
 
@@ -50,6 +58,17 @@ class MessageAndSessionPump extends InitializableEntity implements IMessageAndSe
     private SessionHandlerOptions sessionHandlerOptions;
     private int prefetchCount;
     private ExecutorService customCodeExecutor;
+    // Messages being handled, each taking a handler slot
+    private final AtomicInteger messagesInFlight;
+    // Messages waiting for a message with the same ordering key to be handled. They take no handler slot, but their number is capped separately.
+    private final AtomicInteger messagesWaitingForOrderingKey;
+    // Null if the number of concurrent calls to the message handler is fixed
+    private volatile AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final AtomicBoolean isReceivingMessages;
+    // Messages waiting for the message with the same ordering key being handled
+    private final HashMap<String, ArrayDeque<IMessage>> orderingKeyQueues;
+    // Delay before retrying a failed accept session. Grows while accepts keep failing and is reset when a session is accepted.
+    private final AtomicLong acceptSessionRetryDelayInMillis;
 
     public MessageAndSessionPump(MessagingFactory factory, String entityPath, MessagingEntityType entityType, ReceiveMode receiveMode) {
         super(StringUtil.getShortRandomString());
@@ -59,6 +78,12 @@ class MessageAndSessionPump extends InitializableEntity implements IMessageAndSe
         this.receiveMode = receiveMode;
         this.openSessions = new ConcurrentHashMap<>();
         this.prefetchCount = UNSET_PREFETCH_COUNT;
+        this.messagesInFlight = new AtomicInteger();
+        this.messagesWaitingForOrderingKey = new AtomicInteger();
+        this.concurrencyLimiter = null;
+        this.isReceivingMessages = new AtomicBoolean();
+        this.orderingKeyQueues = new HashMap<>();
+        this.acceptSessionRetryDelayInMillis = new AtomicLong();
     }
 
     @Deprecated
@@ -93,9 +118,10 @@ class MessageAndSessionPump extends InitializableEntity implements IMessageAndSe
         {
             this.innerReceiver.setPrefetchCount(this.prefetchCount);
         }
-        for (int i = 0; i < handlerOptions.getMaxConcurrentCalls(); i++) {
-            this.receiveAndPumpMessage();
+        if (handlerOptions.isAdaptiveConcurrency()) {
+            this.concurrencyLimiter = new AdaptiveConcurrencyLimiter(handlerOptions.getMinConcurrentCalls(), handlerOptions.getMaxConcurrentCalls());
         }
+        this.receiveAndPumpMessages();
     }
 
     @Deprecated
@@ -148,111 +174,246 @@ class MessageAndSessionPump extends InitializableEntity implements IMessageAndSe
         this.handlerRegistered = true;
     }
 
-    private void receiveAndPumpMessage() {
-        if (!this.getIsClosingOrClosed()) {
-            CompletableFuture<IMessage> receiveMessageFuture = this.innerReceiver.receiveAsync(this.messageHandlerOptions.getMessageWaitDuration());
-            receiveMessageFuture.handleAsync((message, receiveEx) -> {
-                if (receiveEx != null) {
-                    receiveEx = ExceptionUtil.extractAsyncCompletionCause(receiveEx);
-                    TRACE_LOGGER.error("Receiving message from entity '{}' failed.", this.entityPath, receiveEx);
-                    this.notifyExceptionToMessageHandler(receiveEx, ExceptionPhase.RECEIVE);
-                    this.receiveAndPumpMessage();
-                } else {
-                    if (message == null) {
-                        TRACE_LOGGER.debug("Receive from entity '{}' returned no messages.", this.entityPath);
-                        this.receiveAndPumpMessage();
-                    } else {
-                        TRACE_LOGGER.trace("Message with sequence number '{}' received from entity '{}'.", message.getSequenceNumber(), this.entityPath);
-                        // Start renew lock loop
-                        final MessgeRenewLockLoop renewLockLoop;
-                        if (this.innerReceiver.getReceiveMode() == ReceiveMode.PEEKLOCK) {
-                            Instant stopRenewMessageLockAt = Instant.now().plus(this.messageHandlerOptions.getMaxAutoRenewDuration());
-                            renewLockLoop = new MessgeRenewLockLoop(this.innerReceiver, this, message, stopRenewMessageLockAt);
-                            renewLockLoop.startLoop();
-                            TRACE_LOGGER.trace("Started loop to renew lock on message with sequence number '{}' until '{}'", message.getSequenceNumber(), stopRenewMessageLockAt);
-                        } else {
-                            renewLockLoop = null;
-                        }
+    // One loop receives messages in batches no larger than the number of free handler slots, so each received message goes straight to a handler,
+    // or waits for its ordering key if there is room for it to wait. Only one receive is outstanding at a time. Handlers that finish free their slots
+    // and start the loop again if it stopped for lack of free slots.
+    private void receiveAndPumpMessages() {
+        while (!this.getIsClosingOrClosed() && this.getReceivableMessageCount() > 0 && this.isReceivingMessages.compareAndSet(false, true)) {
+            int maxMessageCount = this.getReceivableMessageCount();
+            if (maxMessageCount > 0) {
+                this.receiveBatchAndPumpMessages(maxMessageCount);
+                return;
+            }
 
-                        CompletableFuture<Void> onMessageFuture;
-                        try {
-                            TRACE_LOGGER.debug("Invoking onMessage with message containing sequence number '{}'", message.getSequenceNumber());
-                            onMessageFuture = COMPLETED_FUTURE.thenComposeAsync((v) -> this.messageHandler.onMessageAsync(message), this.customCodeExecutor);
-                        } catch (Exception onMessageSyncEx) {
-                            TRACE_LOGGER.error("Invocation of onMessage with message containing sequence number '{}' threw unexpected exception", message.getSequenceNumber(), onMessageSyncEx);
-                            onMessageFuture = new CompletableFuture<Void>();
-                            onMessageFuture.completeExceptionally(onMessageSyncEx);
-                        }
-                        
-                        // Some clients are returning null from the call
-                        if(onMessageFuture == null)
-                        {
-                            onMessageFuture = COMPLETED_FUTURE;
-                        }
+            this.isReceivingMessages.set(false);
+        }
+    }
 
-                        onMessageFuture.handleAsync((v, onMessageEx) -> {
-                            if (onMessageEx != null) {
-                                onMessageEx = ExceptionUtil.extractAsyncCompletionCause(onMessageEx);
-                                TRACE_LOGGER.error("onMessage with message containing sequence number '{}' threw exception", message.getSequenceNumber(), onMessageEx);
-                                this.notifyExceptionToMessageHandler(onMessageEx, ExceptionPhase.USERCALLBACK);
-                            }
-                            if (this.innerReceiver.getReceiveMode() == ReceiveMode.PEEKLOCK) {
-                                if (renewLockLoop != null) {
-                                    renewLockLoop.cancelLoop();
-                                    TRACE_LOGGER.trace("Cancelled loop to renew lock on message with sequence number '{}'", message.getSequenceNumber());
-                                }
-                                CompletableFuture<Void> updateDispositionFuture;
-                                ExceptionPhase dispositionPhase;
-                                if (onMessageEx == null) {
-                                    // Complete message
-                                    dispositionPhase = ExceptionPhase.COMPLETE;
-                                    if (this.messageHandlerOptions.isAutoComplete()) {
-                                        TRACE_LOGGER.debug("Completing message with sequence number '{}'", message.getSequenceNumber());
-                                        updateDispositionFuture = this.innerReceiver.completeAsync(message.getLockToken());
-                                    } else {
-                                        updateDispositionFuture = CompletableFuture.completedFuture(null);
-                                    }
-                                } else {
-                                    // Abandon message
-                                    dispositionPhase = ExceptionPhase.ABANDON;
-                                    if(this.messageHandlerOptions.isAutoComplete())
-                                    {
-                                        TRACE_LOGGER.debug("Abandoning message with sequence number '{}'", message.getSequenceNumber());
-                                        updateDispositionFuture = this.innerReceiver.abandonAsync(message.getLockToken());
-                                    }
-                                    else
-                                    {
-                                        updateDispositionFuture = CompletableFuture.completedFuture(null);
-                                    }
-                                }
+    private void receiveBatchAndPumpMessages(int maxMessageCount) {
+        CompletableFuture<Collection<IMessage>> receiveMessagesFuture;
+        try {
+            receiveMessagesFuture = this.innerReceiver.receiveBatchAsync(maxMessageCount, this.messageHandlerOptions.getMessageWaitDuration());
+        } catch (Exception receiveSyncEx) {
+            receiveMessagesFuture = new CompletableFuture<Collection<IMessage>>();
+            receiveMessagesFuture.completeExceptionally(receiveSyncEx);
+        }
 
-                                updateDispositionFuture.handleAsync((u, updateDispositionEx) -> {
-                                    if (updateDispositionEx != null) {
-                                        updateDispositionEx = ExceptionUtil.extractAsyncCompletionCause(updateDispositionEx);
-                                        TRACE_LOGGER.error("{} message with sequence number '{}' failed", dispositionPhase == ExceptionPhase.COMPLETE ? "Completing" : "Abandoning", message.getSequenceNumber(), updateDispositionEx);
-                                        this.notifyExceptionToMessageHandler(updateDispositionEx, dispositionPhase);
-                                    }
-                                    this.receiveAndPumpMessage();
-                                    return null;
-                                }, MessagingFactory.INTERNAL_THREAD_POOL);
-                            } else {
-                                this.receiveAndPumpMessage();
-                            }
+        receiveMessagesFuture.handleAsync((messages, receiveEx) -> {
+            if (receiveEx != null) {
+                receiveEx = ExceptionUtil.extractAsyncCompletionCause(receiveEx);
+                TRACE_LOGGER.error("Receiving messages from entity '{}' failed.", this.entityPath, receiveEx);
+                this.onServiceCallFailed(receiveEx);
+                this.notifyExceptionToMessageHandler(receiveEx, ExceptionPhase.RECEIVE);
+            } else if (messages == null) {
+                TRACE_LOGGER.debug("Receive from entity '{}' returned no messages.", this.entityPath);
+            } else {
+                for (IMessage message : messages) {
+                    this.dispatchMessage(message);
+                }
+            }
 
-                            return null;
-                        }, MessagingFactory.INTERNAL_THREAD_POOL);
-                    }
+            this.isReceivingMessages.set(false);
+            this.receiveAndPumpMessages();
+            return null;
+        }, MessagingFactory.INTERNAL_THREAD_POOL);
+    }
+
+    // Messages with an ordering key are handled one at a time per key, in the order they were received. A message whose key has a message being handled
+    // waits in the queue of that key without taking a handler slot, while messages with other keys are handled right away.
+    private void dispatchMessage(IMessage message) {
+        TRACE_LOGGER.trace("Message with sequence number '{}' received from entity '{}'.", message.getSequenceNumber(), this.entityPath);
+        // Locks of messages waiting for their turn are renewed too, so they are not lost while waiting
+        this.startMessageLockRenewal(message);
+
+        String orderingKey = this.getOrderingKey(message);
+        if (orderingKey != null) {
+            synchronized (this.orderingKeyQueues) {
+                ArrayDeque<IMessage> waitingMessages = this.orderingKeyQueues.get(orderingKey);
+                if (waitingMessages != null) {
+                    TRACE_LOGGER.trace("Message with sequence number '{}' waits for messages with ordering key '{}' to be handled", message.getSequenceNumber(), orderingKey);
+                    waitingMessages.add(message);
+                    this.messagesWaitingForOrderingKey.incrementAndGet();
+                    return;
+                }
+
+                this.orderingKeyQueues.put(orderingKey, new ArrayDeque<>());
+            }
+        }
+
+        this.messagesInFlight.incrementAndGet();
+        this.pumpMessage(message, orderingKey);
+    }
+
+    // Locks of all messages being handled are renewed together by the receiver, for up to the maximum auto renew duration. Starting renewal again when
+    // a waiting message is handed over restarts that duration, so time spent waiting for the ordering key doesn't count against it.
+    private void startMessageLockRenewal(IMessage message) {
+        if (this.innerReceiver.getReceiveMode() == ReceiveMode.PEEKLOCK && !this.getIsClosingOrClosed()) {
+            try {
+                this.innerReceiver.registerMessageLockRenewal(message, this.messageHandlerOptions.getMaxAutoRenewDuration(), (renewLockEx) -> {
+                    this.notifyExceptionToMessageHandler(renewLockEx, ExceptionPhase.RENEWMESSAGELOCK);
+                });
+                TRACE_LOGGER.trace("Started renewing lock on message with sequence number '{}' for '{}'", message.getSequenceNumber(), this.messageHandlerOptions.getMaxAutoRenewDuration());
+            } catch (RuntimeException registerEx) {
+                // Receiver started closing after the message was received. The message is still handed over, so its handler slot is released when it is handled.
+                TRACE_LOGGER.warn("Renewing lock on message with sequence number '{}' couldn't be started", message.getSequenceNumber(), registerEx);
+            }
+        }
+    }
+
+    private String getOrderingKey(IMessage message) {
+        Function<IMessage, String> orderingKeySelector = this.messageHandlerOptions.getOrderingKeySelector();
+        if (orderingKeySelector == null) {
+            return null;
+        }
+
+        try {
+            return orderingKeySelector.apply(message);
+        } catch (Exception selectorEx) {
+            TRACE_LOGGER.error("Ordering key selector threw exception for message with sequence number '{}'. Message is handled without ordering.", message.getSequenceNumber(), selectorEx);
+            this.notifyExceptionToMessageHandler(selectorEx, ExceptionPhase.USERCALLBACK);
+            return null;
+        }
+    }
 
+    private void onMessageHandled(String orderingKey) {
+        if (orderingKey != null) {
+            IMessage nextMessage;
+            synchronized (this.orderingKeyQueues) {
+                nextMessage = this.orderingKeyQueues.get(orderingKey).poll();
+                if (nextMessage == null) {
+                    this.orderingKeyQueues.remove(orderingKey);
                 }
+            }
 
-                return null;
-            }, MessagingFactory.INTERNAL_THREAD_POOL);
+            if (nextMessage != null) {
+                // Handler slot of the handled message passes to the next message with the same key
+                this.messagesWaitingForOrderingKey.decrementAndGet();
+                this.startMessageLockRenewal(nextMessage);
+                this.pumpMessage(nextMessage, orderingKey);
+                this.receiveAndPumpMessages();
+                return;
+            }
+        }
+
+        this.messagesInFlight.decrementAndGet();
+        this.receiveAndPumpMessages();
+    }
+
+    private int getMaxConcurrentCalls() {
+        AdaptiveConcurrencyLimiter limiter = this.concurrencyLimiter;
+        return limiter == null ? this.messageHandlerOptions.getMaxConcurrentCalls() : limiter.getLimit();
+    }
+
+    // Any received message may have to wait for its ordering key, so no more messages are received than there is room for them to wait. Up to as many
+    // messages as there are handler slots can wait. A busy key can use up that room and pause receiving until its next message is handed over,
+    // but never takes the handler slots that messages of other keys need.
+    private int getReceivableMessageCount() {
+        int maxConcurrentCalls = this.getMaxConcurrentCalls();
+        int freeMessageHandlerSlots = maxConcurrentCalls - this.messagesInFlight.get();
+        if (this.messageHandlerOptions.getOrderingKeySelector() == null) {
+            return freeMessageHandlerSlots;
+        }
+
+        return Math.min(freeMessageHandlerSlots, maxConcurrentCalls - this.messagesWaitingForOrderingKey.get());
+    }
+
+    private void onHandlerCallCompleted(long latencyInNanos, Throwable onMessageEx) {
+        AdaptiveConcurrencyLimiter limiter = this.concurrencyLimiter;
+        if (limiter != null) {
+            this.onServiceCallFailed(onMessageEx);
+            if (limiter.onCallCompleted(latencyInNanos, onMessageEx != null)) {
+                TRACE_LOGGER.info("Adjusted maximum concurrent calls to message handler on entity '{}' to '{}'", this.entityPath, limiter.getLimit());
+            }
         }
     }
 
+    // Handlers that call the service may pass its busy signal on, the same as receives and completes
+    private void onServiceCallFailed(Throwable exception) {
+        AdaptiveConcurrencyLimiter limiter = this.concurrencyLimiter;
+        if (limiter != null && exception instanceof ServerBusyException) {
+            limiter.onServerBusy();
+        }
+    }
+
+    private void pumpMessage(IMessage message, String orderingKey) {
+        // Latency is measured from when the handler starts running, not from when it is queued on the executor
+        final long[] handlerStartedAtNanos = new long[1];
+        CompletableFuture<Void> onMessageFuture;
+        try {
+            TRACE_LOGGER.debug("Invoking onMessage with message containing sequence number '{}'", message.getSequenceNumber());
+            onMessageFuture = COMPLETED_FUTURE.thenComposeAsync((v) -> {
+                handlerStartedAtNanos[0] = System.nanoTime();
+                return this.messageHandler.onMessageAsync(message);
+            }, this.customCodeExecutor);
+        } catch (Exception onMessageSyncEx) {
+            TRACE_LOGGER.error("Invocation of onMessage with message containing sequence number '{}' threw unexpected exception", message.getSequenceNumber(), onMessageSyncEx);
+            onMessageFuture = new CompletableFuture<Void>();
+            onMessageFuture.completeExceptionally(onMessageSyncEx);
+        }
+        
+        // Some clients are returning null from the call
+        if(onMessageFuture == null)
+        {
+            onMessageFuture = COMPLETED_FUTURE;
+        }
+
+        onMessageFuture.handleAsync((v, onMessageEx) -> {
+            if (onMessageEx != null) {
+                onMessageEx = ExceptionUtil.extractAsyncCompletionCause(onMessageEx);
+                TRACE_LOGGER.error("onMessage with message containing sequence number '{}' threw exception", message.getSequenceNumber(), onMessageEx);
+                this.notifyExceptionToMessageHandler(onMessageEx, ExceptionPhase.USERCALLBACK);
+            }
+            this.onHandlerCallCompleted(handlerStartedAtNanos[0] == 0 ? 0 : System.nanoTime() - handlerStartedAtNanos[0], onMessageEx);
+            if (this.innerReceiver.getReceiveMode() == ReceiveMode.PEEKLOCK) {
+                this.innerReceiver.unregisterMessageLockRenewal(message.getLockToken());
+                TRACE_LOGGER.trace("Stopped renewing lock on message with sequence number '{}'", message.getSequenceNumber());
+                CompletableFuture<Void> updateDispositionFuture;
+                ExceptionPhase dispositionPhase;
+                if (onMessageEx == null) {
+                    // Complete message
+                    dispositionPhase = ExceptionPhase.COMPLETE;
+                    if (this.messageHandlerOptions.isAutoComplete()) {
+                        TRACE_LOGGER.debug("Completing message with sequence number '{}'", message.getSequenceNumber());
+                        updateDispositionFuture = this.innerReceiver.completeAsync(message.getLockToken());
+                    } else {
+                        updateDispositionFuture = CompletableFuture.completedFuture(null);
+                    }
+                } else {
+                    // Abandon message
+                    dispositionPhase = ExceptionPhase.ABANDON;
+                    if(this.messageHandlerOptions.isAutoComplete())
+                    {
+                        TRACE_LOGGER.debug("Abandoning message with sequence number '{}'", message.getSequenceNumber());
+                        updateDispositionFuture = this.innerReceiver.abandonAsync(message.getLockToken());
+                    }
+                    else
+                    {
+                        updateDispositionFuture = CompletableFuture.completedFuture(null);
+                    }
+                }
+
+                updateDispositionFuture.handleAsync((u, updateDispositionEx) -> {
+                    if (updateDispositionEx != null) {
+                        updateDispositionEx = ExceptionUtil.extractAsyncCompletionCause(updateDispositionEx);
+                        TRACE_LOGGER.error("{} message with sequence number '{}' failed", dispositionPhase == ExceptionPhase.COMPLETE ? "Completing" : "Abandoning", message.getSequenceNumber(), updateDispositionEx);
+                        this.onServiceCallFailed(updateDispositionEx);
+                        this.notifyExceptionToMessageHandler(updateDispositionEx, dispositionPhase);
+                    }
+                    this.onMessageHandled(orderingKey);
+                    return null;
+                }, MessagingFactory.INTERNAL_THREAD_POOL);
+            } else {
+                this.onMessageHandled(orderingKey);
+            }
+
+            return null;
+        }, MessagingFactory.INTERNAL_THREAD_POOL);
+    }
+
     private void acceptSessionAndPumpMessages() {
         if (!this.getIsClosingOrClosed()) {
             TRACE_LOGGER.debug("Accepting a session from entity '{}'", this.entityPath);
+            Instant acceptStartedAt = Instant.now();
             CompletableFuture<IMessageSession> acceptSessionFuture = ClientFactory.acceptSessionFromEntityPathAsync(this.factory, this.entityPath, this.entityType, null, this.receiveMode);
             acceptSessionFuture.handleAsync((session, acceptSessionEx) -> {
                 if (acceptSessionEx != null) {
@@ -266,13 +427,19 @@ class MessageAndSessionPump extends InitializableEntity implements IMessageAndSe
 
                     if (!(acceptSessionEx instanceof OperationCancelledException)) {
                         // don't retry if OperationCancelled by service.. may be entity itself is deleted
-                        // In case of any other exception, sleep and retry
-                        TRACE_LOGGER.debug("AcceptSession from entity '{}' will be retried after '{}'.", this.entityPath, SLEEP_DURATION_ON_ACCEPT_SESSION_EXCEPTION);
-                        Timer.schedule(() -> {
-                            MessageAndSessionPump.this.acceptSessionAndPumpMessages();
-                        }, SLEEP_DURATION_ON_ACCEPT_SESSION_EXCEPTION, TimerType.OneTimeRun);
+                        // In case of any other exception, wait and retry
+                        Duration retryDelay = this.getAcceptSessionRetryDelay(acceptSessionEx, Duration.between(acceptStartedAt, Instant.now()));
+                        if (retryDelay.isZero()) {
+                            this.acceptSessionAndPumpMessages();
+                        } else {
+                            TRACE_LOGGER.debug("AcceptSession from entity '{}' will be retried after '{}'.", this.entityPath, retryDelay);
+                            Timer.schedule(() -> {
+                                MessageAndSessionPump.this.acceptSessionAndPumpMessages();
+                            }, retryDelay, TimerType.OneTimeRun);
+                        }
                     }
                 } else {
+                    this.acceptSessionRetryDelayInMillis.set(0);
                     // Received a session.. Now pump messages..
                     TRACE_LOGGER.debug("Accepted a session '{}' from entity '{}'", session.getSessionId(), this.entityPath);
                     if(this.prefetchCount != UNSET_PREFETCH_COUNT)
@@ -298,6 +465,18 @@ class MessageAndSessionPump extends InitializableEntity implements IMessageAndSe
         }
     }
 
+    // A timeout means the service waited for a session and none became available, so another accept, which waits again, is started right away.
+    // New sessions are then picked up as soon as they arrive. Accepts that fail for other reasons, or time out without the service having waited,
+    // are retried after a delay that doubles with each failure in a row.
+    private Duration getAcceptSessionRetryDelay(Throwable acceptSessionEx, Duration acceptDuration) {
+        if (acceptSessionEx instanceof TimeoutException && acceptDuration.compareTo(MINIMUM_ACCEPT_SESSION_RETRY_DELAY) >= 0) {
+            return Duration.ZERO;
+        }
+
+        long retryDelayInMillis = this.acceptSessionRetryDelayInMillis.updateAndGet((d) -> Math.min(Math.max(d * 2, MINIMUM_ACCEPT_SESSION_RETRY_DELAY.toMillis()), MAXIMUM_ACCEPT_SESSION_RETRY_DELAY.toMillis()));
+        return Duration.ofMillis(retryDelayInMillis);
+    }
+
     private void receiveFromSessionAndPumpMessage(SessionTracker sessionTracker) {
         if (!this.getIsClosingOrClosed()) {
             IMessageSession session = sessionTracker.getSession();
@@ -499,7 +678,9 @@ class MessageAndSessionPump extends InitializableEntity implements IMessageAndSe
                             TRACE_LOGGER.info("Closed session '{}' from entity '{}'", this.session.getSessionId(), this.messageAndSessionPump.entityPath);
                         }
 
-                        this.messageAndSessionPump.openSessions.remove(this.session.getSessionId());
+                        this.messageAndSessionPump.openSessions.remove(this.session.getSessionId(), this.session);
+                        // Next session is accepted only once this one is closed, so no more than the maximum concurrent sessions are ever open.
+                        // Accepting a session locks it, so an accept started ahead of the close, or kept warm for the slot, would hold one session too many.
                         this.messageAndSessionPump.acceptSessionAndPumpMessages();
                         return null;
                     }, MessagingFactory.INTERNAL_THREAD_POOL);
@@ -554,65 +735,6 @@ class MessageAndSessionPump extends InitializableEntity implements IMessageAndSe
         }
     }
 
-    private static class MessgeRenewLockLoop extends RenewLockLoop {
-        private IMessageReceiver innerReceiver;
-        private MessageAndSessionPump messageAndSessionPump;
-        private IMessage message;
-        private Instant stopRenewalAt;
-        private String messageIdentifier;
-        ScheduledFuture<?> timerFuture;
-
-        MessgeRenewLockLoop(IMessageReceiver innerReceiver, MessageAndSessionPump messageAndSessionPump, IMessage message, Instant stopRenewalAt) {
-            super();
-            this.innerReceiver = innerReceiver;
-            this.messageAndSessionPump = messageAndSessionPump;
-            this.message = message;
-            this.stopRenewalAt = stopRenewalAt;
-            this.messageIdentifier = String.format("message with locktoken : %s, sequence number : %s", this.message.getLockToken(), this.message.getSequenceNumber());
-        }
-
-        @Override
-        protected ScheduledFuture<?> getTimerFuture() {
-            return this.timerFuture;
-        }
-
-        @Override
-        protected void loop() {
-            if (!this.isCancelled()) {
-                Duration renewInterval = this.getNextRenewInterval();
-                if (renewInterval != null && !renewInterval.isNegative()) {
-                    this.timerFuture = Timer.schedule(() -> {
-                        TRACE_LOGGER.debug("Renewing lock on '{}'", this.messageIdentifier);
-                        this.innerReceiver.renewMessageLockAsync(message).handleAsync((v, renewLockEx) ->
-                        {
-                            if (renewLockEx != null) {
-                                renewLockEx = ExceptionUtil.extractAsyncCompletionCause(renewLockEx);
-                                TRACE_LOGGER.error("Renewing lock on '{}' failed", this.messageIdentifier, renewLockEx);
-                                this.messageAndSessionPump.notifyExceptionToMessageHandler(renewLockEx, ExceptionPhase.RENEWMESSAGELOCK);
-                                if (!(renewLockEx instanceof MessageLockLostException || renewLockEx instanceof OperationCancelledException)) {
-                                    this.loop();
-                                }
-                            } else {
-                                TRACE_LOGGER.debug("Renewed lock on '{}'", this.messageIdentifier);
-                                this.loop();
-                            }
-
-                            return null;
-                        }, MessagingFactory.INTERNAL_THREAD_POOL);
-                    }, renewInterval, TimerType.OneTimeRun);
-                }
-            }
-        }
-
-        private Duration getNextRenewInterval() {
-            if (this.message.getLockedUntilUtc().isBefore(stopRenewalAt)) {
-                return RenewLockLoop.getNextRenewInterval(this.message.getLockedUntilUtc(), this.messageIdentifier);
-            } else {
-                return null;
-            }
-        }
-    }
-
     private static class SessionRenewLockLoop extends RenewLockLoop {
         private IMessageSession session;
         private MessageAndSessionPump messageAndSessionPump;
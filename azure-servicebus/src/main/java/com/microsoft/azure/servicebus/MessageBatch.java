@@ -0,0 +1,61 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.servicebus;
+
+import com.microsoft.azure.servicebus.primitives.CoreMessageBatch;
+
+/**
+ * Represents a batch of messages whose encoded size is tracked as messages are added, so a batch can be filled up to the maximum message size allowed by the entity
+ * without failing on send. Create a batch using {@link IMessageSender#createBatchAsync()} and send it using {@link IMessageSender#sendMessageBatchAsync(MessageBatch)}.
+ * A batch can only be sent once and only by the sender that created it.
+ *
+ * @since 1.2.19
+ */
+public final class MessageBatch {
+    private final CoreMessageBatch internalBatch;
+
+    MessageBatch(CoreMessageBatch internalBatch) {
+        this.internalBatch = internalBatch;
+    }
+
+    /**
+     * Adds a message to the batch if the batch has room for it. Message is encoded when it is added, so any changes made to the message after adding it are not sent.
+     *
+     * @param message message to be added to the batch
+     * @return true if the message is added to the batch, false if the batch doesn't have room for the message
+     * @throws IllegalStateException if the batch is already sent
+     */
+    public boolean tryAdd(IMessage message) {
+        if (message == null) {
+            throw new IllegalArgumentException("Message cannot be null.");
+        }
+
+        return this.internalBatch.tryAdd(MessageConverter.convertBrokeredMessageToAmqpMessage((Message) message));
+    }
+
+    /**
+     * @return number of messages in the batch
+     */
+    public int getCount() {
+        return this.internalBatch.getCount();
+    }
+
+    /**
+     * @return encoded size of the batch in bytes
+     */
+    public int getSizeInBytes() {
+        return this.internalBatch.getSizeInBytes();
+    }
+
+    /**
+     * @return maximum encoded size of the batch in bytes
+     */
+    public int getMaxSizeInBytes() {
+        return this.internalBatch.getMaxSizeInBytes();
+    }
+
+    CoreMessageBatch getInternalBatch() {
+        return this.internalBatch;
+    }
+}
@@ -4,6 +4,7 @@ package com.microsoft.azure.servicebus;
 
 import java.time.Duration;
 import java.util.Locale;
+import java.util.function.Function;
 
 /**
  * The OnMessage handler processing options.
@@ -18,6 +19,8 @@ public final class MessageHandlerOptions {
     private Duration maxAutoRenewDuration;
     private Duration messageWaitDuration;
     private int maxConcurrentCalls;
+    private int minConcurrentCalls;
+    private Function<IMessage, String> orderingKeySelector;
 
     /**
      * Default constructor for create {@link MessageHandlerOptions} with default settings.
@@ -49,10 +52,64 @@ public final class MessageHandlerOptions {
      * @param messageWaitDuration  duration to wait for receiving the message
      */
     public MessageHandlerOptions(int maxConcurrentCalls, boolean autoComplete, Duration maxAutoRenewDuration, Duration messageWaitDuration) {
+        this(maxConcurrentCalls, autoComplete, maxAutoRenewDuration, messageWaitDuration, null);
+    }
+
+    /**
+     * Create a instance of {@link MessageHandlerOptions} that handles messages concurrently while keeping the order of messages with the same ordering key.
+     * Messages with the same key are passed to the handler one at a time, in the order they were received, while messages with different keys are handled concurrently.
+     * For example, {@code IMessage::getPartitionKey} or {@code IMessage::getCorrelationId} can be used as the ordering key selector.
+     * Messages for which the selector returns null are handled without ordering. A message that is abandoned, or whose lock expires, is received again
+     * later and can then be handled after messages with the same key that were sent after it.
+     *
+     * @param maxConcurrentCalls   maximum number of concurrent calls to the onMessage handler
+     * @param autoComplete         true if the pump should automatically complete message after onMessageHandler action is completed. false otherwise.
+     * @param maxAutoRenewDuration - Maximum duration within which the client keeps renewing the message lock if the processing of the message is not completed by the handler.
+     * @param messageWaitDuration  duration to wait for receiving the message
+     * @param orderingKeySelector  function returning the ordering key of a message, or null to handle all messages without ordering
+     * @since 1.2.19
+     */
+    public MessageHandlerOptions(int maxConcurrentCalls, boolean autoComplete, Duration maxAutoRenewDuration, Duration messageWaitDuration, Function<IMessage, String> orderingKeySelector) {
+        // Not validated, as the number of concurrent calls never was before it could be tuned
+        this.autoComplete = autoComplete;
+        this.maxAutoRenewDuration = maxAutoRenewDuration;
+        this.minConcurrentCalls = maxConcurrentCalls;
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.messageWaitDuration = messageWaitDuration;
+        this.orderingKeySelector = orderingKeySelector;
+    }
+
+    /**
+     * Create a instance of {@link MessageHandlerOptions} that tunes the number of concurrent calls to the onMessage handler between a minimum and a maximum.
+     * The pump starts with the minimum and allows one more concurrent call after each round of calls in which the handler kept its latency and rarely failed.
+     * When handler latency grows well beyond the lowest latency seen, handler calls often fail, or the service reports being busy, the number of concurrent calls
+     * is cut down. Fewer messages are then received, as the pump only receives as many messages as it can hand over to the handler.
+     * If both numbers are the same, the number of concurrent calls is fixed.
+     *
+     * @param minConcurrentCalls   minimum number of concurrent calls to the onMessage handler
+     * @param maxConcurrentCalls   maximum number of concurrent calls to the onMessage handler
+     * @param autoComplete         true if the pump should automatically complete message after onMessageHandler action is completed. false otherwise.
+     * @param maxAutoRenewDuration - Maximum duration within which the client keeps renewing the message lock if the processing of the message is not completed by the handler.
+     * @param messageWaitDuration  duration to wait for receiving the message
+     * @param orderingKeySelector  function returning the ordering key of a message, or null to handle all messages without ordering
+     * @throws IllegalArgumentException if the minimum number of concurrent calls is less than 1 or greater than the maximum
+     * @since 1.2.19
+     */
+    public MessageHandlerOptions(int minConcurrentCalls, int maxConcurrentCalls, boolean autoComplete, Duration maxAutoRenewDuration, Duration messageWaitDuration, Function<IMessage, String> orderingKeySelector) {
+        if (minConcurrentCalls < 1) {
+            throw new IllegalArgumentException("Minimum number of concurrent calls must be at least 1, but was " + minConcurrentCalls + ".");
+        }
+
+        if (minConcurrentCalls > maxConcurrentCalls) {
+            throw new IllegalArgumentException(String.format(Locale.US, "Minimum number of concurrent calls %s cannot be greater than the maximum %s.", minConcurrentCalls, maxConcurrentCalls));
+        }
+
         this.autoComplete = autoComplete;
         this.maxAutoRenewDuration = maxAutoRenewDuration;
+        this.minConcurrentCalls = minConcurrentCalls;
         this.maxConcurrentCalls = maxConcurrentCalls;
         this.messageWaitDuration = messageWaitDuration;
+        this.orderingKeySelector = orderingKeySelector;
     }
 
     /**
@@ -73,6 +130,26 @@ public final class MessageHandlerOptions {
         return this.maxConcurrentCalls;
     }
 
+    /**
+     * Gets the minimum number of concurrent calls to the callback. Same as the maximum unless the number of concurrent calls is tuned by the pump.
+     *
+     * @return The minimum number of concurrent calls to the callback.
+     * @since 1.2.19
+     */
+    public int getMinConcurrentCalls() {
+        return this.minConcurrentCalls;
+    }
+
+    /**
+     * Whether the pump tunes the number of concurrent calls to the callback between the minimum and the maximum.
+     *
+     * @return true if the number of concurrent calls is tuned; false if it is fixed.
+     * @since 1.2.19
+     */
+    public boolean isAdaptiveConcurrency() {
+        return this.minConcurrentCalls < this.maxConcurrentCalls;
+    }
+
     /**
      * Gets the maximum duration within which the lock will be renewed automatically. This value should be greater than the longest message lock duration; for example, the LockDuration Property.
      *
@@ -88,8 +165,17 @@ public final class MessageHandlerOptions {
      */
     public Duration getMessageWaitDuration() { return this.messageWaitDuration; }
 
+    /**
+     * Gets the function returning the key whose messages are handled in order. Null if messages are handled without ordering.
+     * @return The ordering key selector.
+     * @since 1.2.19
+     */
+    public Function<IMessage, String> getOrderingKeySelector() {
+        return this.orderingKeySelector;
+    }
+
     @Override
     public String toString() {
-        return String.format(Locale.US, "MessageHandlerOptions - AutoComplete:%s, MaxConcurrentCalls:%s, MaxAutoRenewDuration:%s", this.autoComplete, this.maxConcurrentCalls, this.maxAutoRenewDuration);
+        return String.format(Locale.US, "MessageHandlerOptions - AutoComplete:%s, MinConcurrentCalls:%s, MaxConcurrentCalls:%s, MaxAutoRenewDuration:%s, KeyOrdered:%s", this.autoComplete, this.minConcurrentCalls, this.maxConcurrentCalls, this.maxAutoRenewDuration, this.orderingKeySelector != null);
     }
 }
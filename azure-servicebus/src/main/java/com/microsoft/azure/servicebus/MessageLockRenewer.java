@@ -0,0 +1,215 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.servicebus;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.microsoft.azure.servicebus.primitives.ExceptionUtil;
+import com.microsoft.azure.servicebus.primitives.MessageLockLostException;
+import com.microsoft.azure.servicebus.primitives.MessagingFactory;
+import com.microsoft.azure.servicebus.primitives.OperationCancelledException;
+import com.microsoft.azure.servicebus.primitives.Timer;
+import com.microsoft.azure.servicebus.primitives.TimerType;
+
+/**
+ * Keeps renewing the locks of registered messages of a receiver. One timer checks for locks due for renewal, and all locks due within the renewal window
+ * are renewed with one request, instead of each message having its own timer and renewal request.
+ */
+final class MessageLockRenewer {
+    private static final Logger TRACE_LOGGER = LoggerFactory.getLogger(MessageLockRenewer.class);
+    // Locks are checked this often, and locks due for renewal before the next check are renewed right away
+    private static final Duration RENEWAL_WINDOW = Duration.ofSeconds(1);
+    private static final Duration MAXIMUM_RENEW_LOCK_BUFFER = Duration.ofSeconds(10);
+    private static final Duration MINIMUM_MESSAGE_LOCK_VALIDITY = Duration.ofSeconds(4);
+    // Renewal after a failure other than a lost lock is retried no sooner than this, doubling up to the maximum with each consecutive failure.
+    // Minimum is longer than the renewal window, so a failed renewal is not retried on the very next check.
+    private static final Duration MINIMUM_RETRY_BACKOFF = Duration.ofSeconds(2);
+    private static final Duration MAXIMUM_RETRY_BACKOFF = Duration.ofSeconds(8);
+    private static final int MAX_LOCK_TOKENS_PER_RENEWAL = 100;
+
+    private final MessageReceiver receiver;
+    private final ConcurrentHashMap<UUID, Registration> registrations;
+    private ScheduledFuture<?> renewalTimer;
+    private boolean isClosed;
+
+    MessageLockRenewer(MessageReceiver receiver) {
+        this.receiver = receiver;
+        this.registrations = new ConcurrentHashMap<>();
+        this.renewalTimer = null;
+        this.isClosed = false;
+    }
+
+    // Lock is renewed while it expires before renewUntil. Failures to renew are passed to onRenewFailure, if not null.
+    void register(IMessage message, Instant renewUntil, Consumer<Throwable> onRenewFailure) {
+        this.startRenewalTimer();
+        this.addRegistration(new Registration(message, renewUntil, onRenewFailure));
+    }
+
+    // Renewal timer must be started by the caller
+    void addRegistration(Registration registration) {
+        this.registrations.put(registration.message.getLockToken(), registration);
+        TRACE_LOGGER.debug("Renewing lock on message with lock token '{}' until '{}'", registration.message.getLockToken(), registration.renewUntil);
+    }
+
+    void unregister(UUID lockToken) {
+        if (this.registrations.remove(lockToken) != null) {
+            TRACE_LOGGER.debug("Stopped renewing lock on message with lock token '{}'", lockToken);
+        }
+    }
+
+    synchronized void close() {
+        this.isClosed = true;
+        if (this.renewalTimer != null) {
+            this.renewalTimer.cancel(false);
+        }
+        this.registrations.clear();
+    }
+
+    private synchronized void startRenewalTimer() {
+        if (this.isClosed) {
+            throw new IllegalStateException("Receiver is closed.");
+        }
+
+        if (this.renewalTimer == null) {
+            this.renewalTimer = Timer.schedule(() -> this.renewDueLocks(Instant.now()), RENEWAL_WINDOW, TimerType.RepeatRun);
+        }
+    }
+
+    void renewDueLocks(Instant now) {
+        Instant dueBy = now.plus(RENEWAL_WINDOW);
+        List<Registration> dueRegistrations = new ArrayList<>();
+        for (Registration registration : this.registrations.values()) {
+            if (registration.isRenewing) {
+                continue;
+            }
+
+            if (!registration.message.getLockedUntilUtc().isBefore(registration.renewUntil)) {
+                this.registrations.remove(registration.message.getLockToken(), registration);
+            } else if (!registration.nextRenewalAt.isAfter(dueBy)) {
+                registration.isRenewing = true;
+                dueRegistrations.add(registration);
+            }
+        }
+
+        for (int i = 0; i < dueRegistrations.size(); i += MAX_LOCK_TOKENS_PER_RENEWAL) {
+            this.renewLocks(dueRegistrations.subList(i, Math.min(i + MAX_LOCK_TOKENS_PER_RENEWAL, dueRegistrations.size())));
+        }
+    }
+
+    private void renewLocks(List<Registration> dueRegistrations) {
+        Collection<IMessage> messages = new ArrayList<>(dueRegistrations.size());
+        for (Registration registration : dueRegistrations) {
+            messages.add(registration.message);
+        }
+
+        TRACE_LOGGER.debug("Renewing locks on '{}' messages from entity '{}'", messages.size(), this.receiver.getEntityPath());
+        this.receiver.renewMessageLockBatchAsync(messages).handleAsync((v, renewLockEx) -> {
+            if (renewLockEx == null) {
+                Instant now = Instant.now();
+                for (Registration registration : dueRegistrations) {
+                    registration.failedRenewalCount = 0;
+                    registration.nextRenewalAt = getNextRenewalAt(now, registration.message.getLockedUntilUtc());
+                    registration.isRenewing = false;
+                }
+            } else {
+                Throwable cause = ExceptionUtil.extractAsyncCompletionCause(renewLockEx);
+                if (cause instanceof MessageLockLostException && dueRegistrations.size() > 1) {
+                    // A lost lock on one message fails renewal of all of them, so each lock is renewed separately to find out which ones were lost.
+                    // Other failures, like timeouts or a busy service, are not about particular locks, so the batch is retried together later.
+                    TRACE_LOGGER.debug("Renewing locks on '{}' messages together failed with a lost lock. Renewing them one by one.", dueRegistrations.size(), cause);
+                    for (Registration registration : dueRegistrations) {
+                        ArrayList<Registration> singleRegistration = new ArrayList<>(1);
+                        singleRegistration.add(registration);
+                        this.renewLocks(singleRegistration);
+                    }
+                } else {
+                    for (Registration registration : dueRegistrations) {
+                        this.onRenewLockFailed(registration, cause);
+                    }
+                }
+            }
+
+            return null;
+        }, MessagingFactory.INTERNAL_THREAD_POOL);
+    }
+
+    private void onRenewLockFailed(Registration registration, Throwable renewLockEx) {
+        TRACE_LOGGER.error("Renewing lock on message with lock token '{}' failed", registration.message.getLockToken(), renewLockEx);
+        if (renewLockEx instanceof MessageLockLostException || renewLockEx instanceof OperationCancelledException) {
+            this.registrations.remove(registration.message.getLockToken(), registration);
+        } else {
+            registration.failedRenewalCount++;
+            registration.nextRenewalAt = getRetryRenewalAt(Instant.now(), registration.message.getLockedUntilUtc(), registration.failedRenewalCount);
+        }
+        registration.isRenewing = false;
+
+        if (registration.onRenewFailure != null) {
+            registration.onRenewFailure.accept(renewLockEx);
+        }
+    }
+
+    // Lock is renewed the maximum buffer before it expires, or half way through its remaining time if that is shorter. Computed when the lock is taken or renewed,
+    // not on every check, as the remaining time keeps shrinking. An already expired lock, likely due to clock skew, is assumed to have some minimum validity left.
+    static Instant getNextRenewalAt(Instant now, Instant lockedUntilUtc) {
+        Duration remainingTime = Duration.between(now, lockedUntilUtc);
+        if (remainingTime.isNegative()) {
+            remainingTime = MINIMUM_MESSAGE_LOCK_VALIDITY;
+        }
+
+        Duration buffer = remainingTime.dividedBy(2).compareTo(MAXIMUM_RENEW_LOCK_BUFFER) > 0 ? MAXIMUM_RENEW_LOCK_BUFFER : remainingTime.dividedBy(2);
+        return now.plus(remainingTime.minus(buffer));
+    }
+
+    // Backs off exponentially with consecutive failures, but retries before the lock expires if the backoff would go past it
+    static Instant getRetryRenewalAt(Instant now, Instant lockedUntilUtc, int failedRenewalCount) {
+        Duration backoff = MINIMUM_RETRY_BACKOFF;
+        for (int i = 1; i < failedRenewalCount && backoff.compareTo(MAXIMUM_RETRY_BACKOFF) < 0; i++) {
+            backoff = backoff.multipliedBy(2);
+        }
+        if (backoff.compareTo(MAXIMUM_RETRY_BACKOFF) > 0) {
+            backoff = MAXIMUM_RETRY_BACKOFF;
+        }
+
+        Instant retryAt = now.plus(backoff);
+        Instant lastRetryAt = lockedUntilUtc.minus(RENEWAL_WINDOW);
+        return retryAt.isAfter(lastRetryAt) && lastRetryAt.isAfter(now) ? lastRetryAt : retryAt;
+    }
+
+    static final class Registration {
+        private final IMessage message;
+        private final Instant renewUntil;
+        private final Consumer<Throwable> onRenewFailure;
+        private volatile Instant nextRenewalAt;
+        private volatile boolean isRenewing;
+        private volatile int failedRenewalCount;
+
+        Registration(IMessage message, Instant renewUntil, Consumer<Throwable> onRenewFailure) {
+            this.message = message;
+            this.renewUntil = renewUntil;
+            this.onRenewFailure = onRenewFailure;
+            this.nextRenewalAt = MessageLockRenewer.getNextRenewalAt(Instant.now(), message.getLockedUntilUtc());
+            this.isRenewing = false;
+            this.failedRenewalCount = 0;
+        }
+
+        IMessage getMessage() {
+            return this.message;
+        }
+
+        Instant getNextRenewalAt() {
+            return this.nextRenewalAt;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.servicebus;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.microsoft.azure.servicebus.primitives.ExceptionUtil;
+
+/**
+ * Publishes messages received by a {@link IMessageReceiver} to a subscriber as the subscriber asks for them, following the Reactive Streams Publisher
+ * contract. Messages are received from the entity only when asked for, and never more than asked for, so backpressure from the subscriber reaches the
+ * entity. With no prefetch on the receiver, the number of messages asked for is the credit issued on the receive link.
+ * <p>
+ * A publisher allows one subscriber at a time. The subscriber settles messages through the receiver, the same way as messages received by calling the receiver.
+ * Messages have no end, so the subscriber is never completed. Failures to receive, including closing the receiver, end the subscription with
+ * {@link IMessageSubscriber#onError(Throwable)}. Messages received in PeekLock mode but not delivered because the subscription ended are abandoned.
+ * Once a subscription has ended with an error or has been cancelled, a new subscriber can subscribe to the same publisher, for example to resume
+ * receiving after a transient failure that the receiver recovers from.
+ *
+ * @since 1.2.19
+ */
+public final class MessagePublisher {
+    private static final Logger TRACE_LOGGER = LoggerFactory.getLogger(MessagePublisher.class);
+    // Large demand is received in several batches, so one receive doesn't wait for many messages while messages already received could be delivered
+    private static final int MAX_MESSAGES_PER_RECEIVE = 100;
+
+    private final IMessageReceiver receiver;
+    private final AtomicBoolean isSubscribed;
+
+    /**
+     * Creates a publisher of messages received by the given receiver. Nothing is received until a subscriber asks for messages.
+     *
+     * @param receiver receiver to receive messages with. It should not be used to receive messages by other callers.
+     */
+    public MessagePublisher(IMessageReceiver receiver) {
+        Utils.assertNonNull("receiver", receiver);
+        this.receiver = receiver;
+        this.isSubscribed = new AtomicBoolean();
+    }
+
+    /**
+     * Subscribes to messages. Subscribing while another subscription is active fails the later subscriber with {@link IllegalStateException}.
+     *
+     * @param subscriber subscriber to deliver messages to
+     */
+    public void subscribe(IMessageSubscriber subscriber) {
+        Utils.assertNonNull("subscriber", subscriber);
+        if (this.isSubscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new MessageSubscription(this.receiver, subscriber, this.isSubscribed));
+        } else {
+            MessageSubscription rejectedSubscription = new MessageSubscription(this.receiver, subscriber, null);
+            rejectedSubscription.cancel();
+            subscriber.onSubscribe(rejectedSubscription);
+            subscriber.onError(new IllegalStateException("MessagePublisher allows only one subscriber."));
+        }
+    }
+
+    // Signals to the subscriber are made only by the thread that runs the drain loop, so they are never concurrent
+    private static final class MessageSubscription implements IMessageSubscription {
+        private final IMessageReceiver receiver;
+        private final IMessageSubscriber subscriber;
+        // Cleared when the subscription ends, so the publisher accepts a new subscriber. Null for a rejected subscription.
+        private final AtomicBoolean isPublisherSubscribed;
+        private final AtomicLong demand;
+        private final AtomicInteger drainRequests;
+        private final ConcurrentLinkedQueue<IMessage> receivedMessages;
+        private volatile boolean isCancelled;
+        private volatile Throwable error;
+        private volatile boolean isReceiveCompleted;
+        // Accessed only by the thread running the drain loop
+        private boolean isReceiving;
+        private boolean isTerminated;
+        private boolean isEnded;
+
+        MessageSubscription(IMessageReceiver receiver, IMessageSubscriber subscriber, AtomicBoolean isPublisherSubscribed) {
+            this.receiver = receiver;
+            this.subscriber = subscriber;
+            this.isPublisherSubscribed = isPublisherSubscribed;
+            this.demand = new AtomicLong();
+            this.drainRequests = new AtomicInteger();
+            this.receivedMessages = new ConcurrentLinkedQueue<>();
+            this.isCancelled = false;
+            this.error = null;
+            this.isReceiveCompleted = false;
+            this.isReceiving = false;
+            this.isTerminated = false;
+            this.isEnded = false;
+        }
+
+        @Override
+        public void request(long messageCount) {
+            if (messageCount <= 0) {
+                this.error = new IllegalArgumentException("Number of messages requested must be positive, but was " + messageCount + ".");
+            } else {
+                this.demand.getAndUpdate((d) -> d + messageCount < 0 ? Long.MAX_VALUE : d + messageCount);
+            }
+
+            this.drain();
+        }
+
+        @Override
+        public void cancel() {
+            this.isCancelled = true;
+            this.drain();
+        }
+
+        private void drain() {
+            if (this.drainRequests.getAndIncrement() != 0) {
+                // The thread running the drain loop runs it again
+                return;
+            }
+
+            int missedRequests = 1;
+            do {
+                this.drainOnce();
+                missedRequests = this.drainRequests.addAndGet(-missedRequests);
+            } while (missedRequests != 0);
+        }
+
+        private void drainOnce() {
+            if (this.isReceiveCompleted) {
+                this.isReceiveCompleted = false;
+                this.isReceiving = false;
+            }
+
+            if (!this.isCancelled && !this.isTerminated) {
+                IMessage message;
+                while (this.demand.get() > 0 && (message = this.receivedMessages.poll()) != null) {
+                    if (this.demand.get() != Long.MAX_VALUE) {
+                        this.demand.decrementAndGet();
+                    }
+                    this.subscriber.onNext(message);
+                }
+
+                Throwable currentError = this.error;
+                if (currentError != null) {
+                    this.isTerminated = true;
+                    // Ended before signaling, so the subscriber can subscribe again from onError
+                    this.end();
+                    this.subscriber.onError(currentError);
+                } else if (!this.isReceiving && this.receivedMessages.isEmpty() && this.demand.get() > 0) {
+                    this.isReceiving = true;
+                    this.receive((int) Math.min(this.demand.get(), MAX_MESSAGES_PER_RECEIVE));
+                }
+            }
+
+            if (this.isCancelled || this.isTerminated) {
+                this.end();
+                this.abandonUndeliveredMessages();
+            }
+        }
+
+        private void end() {
+            if (!this.isEnded) {
+                this.isEnded = true;
+                if (this.isPublisherSubscribed != null) {
+                    this.isPublisherSubscribed.set(false);
+                }
+            }
+        }
+
+        private void receive(int maxMessageCount) {
+            try {
+                this.receiver.receiveBatchAsync(maxMessageCount).whenComplete((messages, receiveEx) -> {
+                    this.onReceiveCompleted(messages, receiveEx == null ? null : ExceptionUtil.extractAsyncCompletionCause(receiveEx));
+                });
+            } catch (RuntimeException e) {
+                // Receiving from a closed receiver throws right away
+                this.onReceiveCompleted(null, e);
+            }
+        }
+
+        private void onReceiveCompleted(Collection<IMessage> messages, Throwable receiveEx) {
+            if (receiveEx != null) {
+                TRACE_LOGGER.warn("Receiving messages from '{}' for subscriber failed.", this.receiver.getEntityPath(), receiveEx);
+                this.error = receiveEx;
+            } else if (messages != null) {
+                // No messages arrived within the server wait time if null, in which case the next receive is started
+                this.receivedMessages.addAll(messages);
+            }
+
+            this.isReceiveCompleted = true;
+            this.drain();
+        }
+
+        private void abandonUndeliveredMessages() {
+            IMessage message;
+            while ((message = this.receivedMessages.poll()) != null) {
+                if (this.receiver.getReceiveMode() == ReceiveMode.PEEKLOCK) {
+                    final IMessage undeliveredMessage = message;
+                    this.receiver.abandonAsync(undeliveredMessage.getLockToken()).whenComplete((v, abandonEx) -> {
+                        if (abandonEx != null) {
+                            TRACE_LOGGER.debug("Abandoning undelivered message '{}' failed.", undeliveredMessage.getMessageId(), abandonEx);
+                        }
+                    });
+                }
+            }
+        }
+    }
+}
@@ -16,6 +16,7 @@ import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledFuture;
+import java.util.function.Consumer;
 
 import org.apache.qpid.proton.amqp.transport.ReceiverSettleMode;
 import org.apache.qpid.proton.amqp.transport.SenderSettleMode;
@@ -54,7 +55,11 @@ class MessageReceiver extends InitializableEntity implements IMessageReceiver, I
     private boolean isInitialized = false;
     private MessageBrowser browser = null;
     private int messagePrefetchCount;
+    private long maxPrefetchBytes;
+    private boolean isAdaptivePrefetchEnabled;
+    private boolean isLazyMessageDecodingEnabled;
     private ScheduledFuture<?> requestResponseLockTokenPruner = null;
+    private volatile MessageLockRenewer messageLockRenewer = null;
 
     private final ConcurrentHashMap<UUID, Instant> requestResponseLockTokensToLockTimesMap;
 
@@ -67,6 +72,9 @@ class MessageReceiver extends InitializableEntity implements IMessageReceiver, I
         } else {
             this.messagePrefetchCount = DEFAULT_PREFETCH_COUNT_RECEIVEANDDELETE;
         }
+        this.maxPrefetchBytes = Long.MAX_VALUE;
+        this.isAdaptivePrefetchEnabled = false;
+        this.isLazyMessageDecodingEnabled = false;
     }
 
     private MessageReceiver(MessagingFactory messagingFactory, String entityPath, MessagingEntityType entityType, boolean ownsMessagingFactory, ReceiveMode receiveMode) {
@@ -121,16 +129,26 @@ class MessageReceiver extends InitializableEntity implements IMessageReceiver, I
                     CompletableFuture<CoreMessageReceiver> receiverFuture;
                     if (MessageReceiver.this.isSessionReceiver()) {
                         TRACE_LOGGER.info("Creating SessionReceiver to entity '{}', requestedSessionId '{}', browsable session '{}', ReceiveMode '{}'", this.entityPath, this.getRequestedSessionId(), this.isBrowsableSession(), this.receiveMode);
-                        receiverFuture = CoreMessageReceiver.create(this.messagingFactory, StringUtil.getShortRandomString(), this.entityPath, this.getRequestedSessionId(), this.isBrowsableSession(), this.messagePrefetchCount, getSettleModePairForRecevieMode(this.receiveMode), this.entityType);
+                        receiverFuture = CoreMessageReceiver.create(this.messagingFactory, StringUtil.getShortRandomString(), this.entityPath, this.getRequestedSessionId(), this.isBrowsableSession(), this.messagePrefetchCount, this.maxPrefetchBytes, getSettleModePairForRecevieMode(this.receiveMode), this.entityType);
                     } else {
                         TRACE_LOGGER.info("Creating MessageReceiver to entity '{}', ReceiveMode '{}'", this.entityPath, this.receiveMode);
-                        receiverFuture = CoreMessageReceiver.create(this.messagingFactory, StringUtil.getShortRandomString(), this.entityPath, this.messagePrefetchCount, getSettleModePairForRecevieMode(this.receiveMode), this.entityType);
+                        receiverFuture = CoreMessageReceiver.create(this.messagingFactory, StringUtil.getShortRandomString(), this.entityPath, this.messagePrefetchCount, this.maxPrefetchBytes, getSettleModePairForRecevieMode(this.receiveMode), this.entityType);
                     }
 
                     acceptReceiverFuture = receiverFuture.whenCompleteAsync((r, coreReceiverCreationEx) ->
                     {
                         if (coreReceiverCreationEx == null) {
                             this.internalReceiver = r;
+                            if (this.isLazyMessageDecodingEnabled) {
+                                r.setLazyMessageDecodingEnabled(true);
+                            }
+                            if (this.isAdaptivePrefetchEnabled) {
+                                try {
+                                    r.setAdaptivePrefetchEnabled(true);
+                                } catch (ServiceBusException e) {
+                                    TRACE_LOGGER.warn("Enabling adaptive prefetch on receiver to entity '{}' failed.", this.entityPath, e);
+                                }
+                            }
                             if (MessageReceiver.this.isSessionReceiver()) {
                                 TRACE_LOGGER.info("Created SessionReceiver to entity '{}', requestedSessionId '{}', browsable session '{}', acceptedSessionId '{}'", this.entityPath, this.getRequestedSessionId(), this.isBrowsableSession(), this.internalReceiver.getSessionId());
                             } else {
@@ -178,6 +196,12 @@ class MessageReceiver extends InitializableEntity implements IMessageReceiver, I
         return this.internalReceiver;
     }
 
+    // Number of messages already received from the entity and waiting for receive calls, zero until the receiver is initialized
+    int getPrefetchedMessageCount() {
+        CoreMessageReceiver receiver = this.internalReceiver;
+        return receiver == null ? 0 : receiver.getPrefetchedMessageCount();
+    }
+
     @Override
     public String getEntityPath() {
         return this.entityPath;
@@ -207,6 +231,7 @@ class MessageReceiver extends InitializableEntity implements IMessageReceiver, I
     public CompletableFuture<Void> abandonAsync(UUID lockToken, Map<String, Object> propertiesToModify) {
         this.ensurePeekLockReceiveMode();
         TRACE_LOGGER.debug("Abandoning message with lock token '{}'", lockToken);
+        this.unregisterMessageLockRenewal(lockToken);
         return this.checkIfValidRequestResponseLockTokenAsync(lockToken).thenCompose((requestResponseLocked) -> {
             if (requestResponseLocked) {
                 return this.internalReceiver.abandonMessageAsync(lockToken, propertiesToModify).thenRun(() -> MessageReceiver.this.requestResponseLockTokensToLockTimesMap.remove(lockToken));
@@ -231,6 +256,7 @@ class MessageReceiver extends InitializableEntity implements IMessageReceiver, I
     public CompletableFuture<Void> completeAsync(UUID lockToken) {
         this.ensurePeekLockReceiveMode();
         TRACE_LOGGER.debug("Completing message with lock token '{}'", lockToken);
+        this.unregisterMessageLockRenewal(lockToken);
         return this.checkIfValidRequestResponseLockTokenAsync(lockToken).thenCompose((requestResponseLocked) -> {
             if (requestResponseLocked) {
                 return this.internalReceiver.completeMessageAsync(lockToken).thenRun(() -> MessageReceiver.this.requestResponseLockTokensToLockTimesMap.remove(lockToken));
@@ -267,6 +293,7 @@ class MessageReceiver extends InitializableEntity implements IMessageReceiver, I
     public CompletableFuture<Void> deferAsync(UUID lockToken, Map<String, Object> propertiesToModify) {
         this.ensurePeekLockReceiveMode();
         TRACE_LOGGER.debug("Deferring message with lock token '{}'", lockToken);
+        this.unregisterMessageLockRenewal(lockToken);
         return this.checkIfValidRequestResponseLockTokenAsync(lockToken).thenCompose((requestResponseLocked) -> {
             if (requestResponseLocked) {
                 return this.internalReceiver.deferMessageAsync(lockToken, propertiesToModify).thenRun(() -> MessageReceiver.this.requestResponseLockTokensToLockTimesMap.remove(lockToken));
@@ -315,6 +342,7 @@ class MessageReceiver extends InitializableEntity implements IMessageReceiver, I
     public CompletableFuture<Void> deadLetterAsync(UUID lockToken, String deadLetterReason, String deadLetterErrorDescription, Map<String, Object> propertiesToModify) {
         this.ensurePeekLockReceiveMode();
         TRACE_LOGGER.debug("Deadlettering message with lock token '{}'", lockToken);
+        this.unregisterMessageLockRenewal(lockToken);
         return this.checkIfValidRequestResponseLockTokenAsync(lockToken).thenCompose((requestResponseLocked) -> {
             if (requestResponseLocked) {
                 return this.internalReceiver.deadLetterMessageAsync(lockToken, deadLetterReason, deadLetterErrorDescription, propertiesToModify).thenRun(() -> MessageReceiver.this.requestResponseLockTokensToLockTimesMap.remove(lockToken));
@@ -430,6 +458,9 @@ class MessageReceiver extends InitializableEntity implements IMessageReceiver, I
             if (this.requestResponseLockTokenPruner != null) {
             	this.requestResponseLockTokenPruner.cancel(false);
             }
+            if (this.messageLockRenewer != null) {
+                this.messageLockRenewer.close();
+            }
             CompletableFuture<Void> closeReceiverFuture = this.internalReceiver.closeAsync();
 
             return closeReceiverFuture.thenComposeAsync((v) ->
@@ -472,6 +503,49 @@ class MessageReceiver extends InitializableEntity implements IMessageReceiver, I
         }
     }
 
+    @Override
+    public long getMaxPrefetchBytes() {
+        return this.maxPrefetchBytes;
+    }
+
+    @Override
+    public void setMaxPrefetchBytes(long maxPrefetchBytes) {
+        if (maxPrefetchBytes <= 0) {
+            throw new IllegalArgumentException("Maximum prefetch bytes must be positive.");
+        }
+
+        this.maxPrefetchBytes = maxPrefetchBytes;
+        if (this.isInitialized) {
+            this.internalReceiver.setMaxPrefetchBytes(maxPrefetchBytes);
+        }
+    }
+
+    @Override
+    public boolean isAdaptivePrefetchEnabled() {
+        return this.isAdaptivePrefetchEnabled;
+    }
+
+    @Override
+    public void setAdaptivePrefetchEnabled(boolean enabled) throws ServiceBusException {
+        this.isAdaptivePrefetchEnabled = enabled;
+        if (this.isInitialized) {
+            this.internalReceiver.setAdaptivePrefetchEnabled(enabled);
+        }
+    }
+
+    @Override
+    public boolean isLazyMessageDecodingEnabled() {
+        return this.isLazyMessageDecodingEnabled;
+    }
+
+    @Override
+    public void setLazyMessageDecodingEnabled(boolean enabled) {
+        this.isLazyMessageDecodingEnabled = enabled;
+        if (this.isInitialized) {
+            this.internalReceiver.setLazyMessageDecodingEnabled(enabled);
+        }
+    }
+
     private static SettleModePair getSettleModePairForRecevieMode(ReceiveMode receiveMode) {
         if (receiveMode == ReceiveMode.RECEIVEANDDELETE) {
             return new SettleModePair(SenderSettleMode.SETTLED, ReceiverSettleMode.FIRST);
@@ -481,7 +555,7 @@ class MessageReceiver extends InitializableEntity implements IMessageReceiver, I
     }
 
     private Collection<IMessage> convertAmqpMessagesWithDeliveryTagsToBrokeredMessages(Collection<MessageWithDeliveryTag> amqpMessages) {
-        ArrayList<IMessage> convertedMessages = new ArrayList<IMessage>();
+        ArrayList<IMessage> convertedMessages = new ArrayList<IMessage>(amqpMessages.size());
         for (MessageWithDeliveryTag amqpMessageWithDeliveryTag : amqpMessages) {
             convertedMessages.add(MessageConverter.convertAmqpMessageToBrokeredMessage(amqpMessageWithDeliveryTag));
         }
@@ -582,6 +656,39 @@ class MessageReceiver extends InitializableEntity implements IMessageReceiver, I
         return Utils.completeFuture(this.renewMessageLockAsync(message));
     }
 
+    @Override
+    public void registerMessageLockRenewal(IMessage message, Duration maxRenewalDuration) {
+        this.registerMessageLockRenewal(message, maxRenewalDuration, null);
+    }
+
+    @Override
+    public void registerMessageLockRenewal(IMessage message, Duration maxRenewalDuration, Consumer<Throwable> onRenewFailure) {
+        this.ensurePeekLockReceiveMode();
+        Utils.assertNonNull("message", message);
+        Utils.assertNonNull("maxRenewalDuration", maxRenewalDuration);
+        if (message.getLockToken().equals(ClientConstants.ZEROLOCKTOKEN)) {
+            throw new UnsupportedOperationException("Lock of a message received in ReceiveAndDelete mode cannot be renewed.");
+        }
+
+        this.getMessageLockRenewer().register(message, Instant.now().plus(maxRenewalDuration), onRenewFailure);
+    }
+
+    @Override
+    public void unregisterMessageLockRenewal(UUID lockToken) {
+        MessageLockRenewer renewer = this.messageLockRenewer;
+        if (renewer != null) {
+            renewer.unregister(lockToken);
+        }
+    }
+
+    private synchronized MessageLockRenewer getMessageLockRenewer() {
+        if (this.messageLockRenewer == null) {
+            this.messageLockRenewer = new MessageLockRenewer(this);
+        }
+
+        return this.messageLockRenewer;
+    }
+
     //	@Override
     public Collection<Instant> renewMessageLockBatch(Collection<? extends IMessage> messages) throws InterruptedException, ServiceBusException {
         return Utils.completeFuture(this.renewMessageLockBatchAsync(messages));
@@ -4,6 +4,7 @@
 package com.microsoft.azure.servicebus;
 
 import java.net.URI;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -135,6 +136,75 @@ final class MessageSender extends InitializableEntity implements IMessageSender
         return this.internalSender.sendAsync(convertedMessages);
     }
 
+    @Override
+    public MessageBatch createBatch() throws InterruptedException, ServiceBusException {
+        return Utils.completeFuture(this.createBatchAsync());
+    }
+
+    @Override
+    public CompletableFuture<MessageBatch> createBatchAsync() {
+        return CompletableFuture.completedFuture(new MessageBatch(this.internalSender.createBatch()));
+    }
+
+    @Override
+    public void sendMessageBatch(MessageBatch batch) throws InterruptedException, ServiceBusException {
+        Utils.completeFuture(this.sendMessageBatchAsync(batch));
+    }
+
+    @Override
+    public CompletableFuture<Void> sendMessageBatchAsync(MessageBatch batch) {
+        if (batch == null) {
+            throw new IllegalArgumentException("Batch cannot be null.");
+        }
+
+        return this.internalSender.sendAsync(batch.getInternalBatch());
+    }
+
+    @Override
+    public void sendInBatches(Collection<? extends IMessage> messages) throws InterruptedException, ServiceBusException {
+        Utils.completeFuture(this.sendInBatchesAsync(messages));
+    }
+
+    @Override
+    public CompletableFuture<Void> sendInBatchesAsync(Collection<? extends IMessage> messages) {
+        ArrayList<org.apache.qpid.proton.message.Message> convertedMessages = new ArrayList<org.apache.qpid.proton.message.Message>();
+        for (IMessage message : messages) {
+            convertedMessages.add(MessageConverter.convertBrokeredMessageToAmqpMessage((Message) message));
+        }
+
+        return this.internalSender.sendInBatchesAsync(convertedMessages);
+    }
+
+    @Override
+    public Duration getAutoBatchingLingerTime() {
+        return this.internalSender.getAutoBatchingLingerTime();
+    }
+
+    @Override
+    public void setAutoBatchingLingerTime(Duration lingerTime) {
+        this.internalSender.setAutoBatchingLingerTime(lingerTime);
+    }
+
+    @Override
+    public int getMaxPendingSendCount() {
+        return this.internalSender.getMaxPendingSendCount();
+    }
+
+    @Override
+    public void setMaxPendingSendCount(int maxPendingSendCount) {
+        this.internalSender.setMaxPendingSendCount(maxPendingSendCount);
+    }
+
+    @Override
+    public long getMaxPendingSendBytes() {
+        return this.internalSender.getMaxPendingSendBytes();
+    }
+
+    @Override
+    public void setMaxPendingSendBytes(long maxPendingSendBytes) {
+        this.internalSender.setMaxPendingSendBytes(maxPendingSendBytes);
+    }
+
     @Override
     protected CompletableFuture<Void> onClose() {
         if (this.isInitialized) {
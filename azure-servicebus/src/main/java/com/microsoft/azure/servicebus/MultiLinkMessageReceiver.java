@@ -0,0 +1,520 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.servicebus;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.microsoft.azure.servicebus.primitives.ClientConstants;
+import com.microsoft.azure.servicebus.primitives.MessagingFactory;
+import com.microsoft.azure.servicebus.primitives.ServiceBusException;
+import com.microsoft.azure.servicebus.primitives.StringUtil;
+import com.microsoft.azure.servicebus.primitives.Timer;
+import com.microsoft.azure.servicebus.primitives.TimerType;
+
+/**
+ * Receives messages from one entity over several receive links, optionally each on its own connection, so a single consumer isn't limited to what one link
+ * can receive. Receive requests go to a link that already has prefetched messages, or else to the links in turn. Each message is settled and its lock
+ * renewed through the link it was received on.
+ * Settings like prefetch count apply to each link.
+ */
+class MultiLinkMessageReceiver extends InitializableEntity implements IMessageReceiver {
+    private static final Logger TRACE_LOGGER = LoggerFactory.getLogger(MultiLinkMessageReceiver.class);
+    private static final Duration LOCK_TOKEN_PRUNING_INTERVAL = Duration.ofMinutes(5);
+
+    private final URI namespaceEndpointURI;
+    private final String entityPath;
+    private final ClientSettings clientSettings;
+    private final ReceiveMode receiveMode;
+    private final boolean useSeparateConnections;
+    private final MessageReceiver[] linkReceivers;
+    private final AtomicInteger nextLinkIndex;
+    // Lock tokens of messages received and not yet settled, mapped to the links they were received on
+    private final ConcurrentHashMap<UUID, LockOwner> lockTokensToOwners;
+    private MessagingFactory sharedMessagingFactory = null;
+    private ScheduledFuture<?> lockTokenPruner = null;
+    private boolean isInitialized = false;
+
+    MultiLinkMessageReceiver(URI namespaceEndpointURI, String entityPath, ClientSettings clientSettings, ReceiveMode receiveMode, int linkCount, boolean useSeparateConnections) {
+        super(StringUtil.getShortRandomString());
+        if (linkCount < 1) {
+            throw new IllegalArgumentException("Link count must be at least 1.");
+        }
+
+        this.namespaceEndpointURI = namespaceEndpointURI;
+        this.entityPath = entityPath;
+        this.clientSettings = clientSettings;
+        this.receiveMode = receiveMode;
+        this.useSeparateConnections = useSeparateConnections;
+        this.linkReceivers = new MessageReceiver[linkCount];
+        this.nextLinkIndex = new AtomicInteger();
+        this.lockTokensToOwners = new ConcurrentHashMap<>();
+    }
+
+    // Receiver over links that are already created and initialized
+    MultiLinkMessageReceiver(String entityPath, ReceiveMode receiveMode, MessageReceiver[] linkReceivers) {
+        super(StringUtil.getShortRandomString());
+        if (linkReceivers.length < 1) {
+            throw new IllegalArgumentException("Link count must be at least 1.");
+        }
+
+        this.namespaceEndpointURI = null;
+        this.entityPath = entityPath;
+        this.clientSettings = null;
+        this.receiveMode = receiveMode;
+        this.useSeparateConnections = false;
+        this.linkReceivers = linkReceivers.clone();
+        this.nextLinkIndex = new AtomicInteger();
+        this.lockTokensToOwners = new ConcurrentHashMap<>();
+        this.isInitialized = true;
+    }
+
+    @Override
+    synchronized CompletableFuture<Void> initializeAsync() {
+        if (this.isInitialized) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        TRACE_LOGGER.info("Creating MultiLinkMessageReceiver to entity '{}' with '{}' links, separate connections '{}'", this.entityPath, this.linkReceivers.length, this.useSeparateConnections);
+        CompletableFuture<Void> factoryFuture;
+        if (this.useSeparateConnections) {
+            factoryFuture = CompletableFuture.completedFuture(null);
+        } else {
+            factoryFuture = MessagingFactory.createFromNamespaceEndpointURIAsyc(this.namespaceEndpointURI, this.clientSettings).thenAccept((f) -> this.sharedMessagingFactory = f);
+        }
+
+        return factoryFuture.thenComposeAsync((v) -> {
+            CompletableFuture<?>[] initializeFutures = new CompletableFuture<?>[this.linkReceivers.length];
+            for (int i = 0; i < this.linkReceivers.length; i++) {
+                if (this.useSeparateConnections) {
+                    this.linkReceivers[i] = new MessageReceiver(this.namespaceEndpointURI, this.entityPath, null, this.clientSettings, this.receiveMode);
+                } else {
+                    this.linkReceivers[i] = new MessageReceiver(this.sharedMessagingFactory, this.entityPath, null, this.receiveMode);
+                }
+
+                initializeFutures[i] = this.linkReceivers[i].initializeAsync();
+            }
+
+            return CompletableFuture.allOf(initializeFutures);
+        }, MessagingFactory.INTERNAL_THREAD_POOL).whenCompleteAsync((v, initializationEx) -> {
+            if (initializationEx != null) {
+                TRACE_LOGGER.error("Creating MultiLinkMessageReceiver to entity '{}' failed.", this.entityPath, initializationEx);
+                // Links already created are closed, the failure is reported regardless of how closing goes
+                this.closeLinksAsync();
+            }
+        }, MessagingFactory.INTERNAL_THREAD_POOL).thenRunAsync(() -> {
+            this.isInitialized = true;
+            this.scheduleLockTokenPruning();
+            TRACE_LOGGER.info("Created MultiLinkMessageReceiver to entity '{}'", this.entityPath);
+        }, MessagingFactory.INTERNAL_THREAD_POOL);
+    }
+
+    @Override
+    public String getEntityPath() {
+        return this.entityPath;
+    }
+
+    @Override
+    public ReceiveMode getReceiveMode() {
+        return this.receiveMode;
+    }
+
+    /**
+     * Gets the number of receive links this receiver receives messages over.
+     * @return number of links
+     */
+    int getLinkCount() {
+        return this.linkReceivers.length;
+    }
+
+    @Override
+    public void abandon(UUID lockToken) throws InterruptedException, ServiceBusException {
+        Utils.completeFuture(this.abandonAsync(lockToken));
+    }
+
+    @Override
+    public void abandon(UUID lockToken, Map<String, Object> propertiesToModify) throws InterruptedException, ServiceBusException {
+        Utils.completeFuture(this.abandonAsync(lockToken, propertiesToModify));
+    }
+
+    @Override
+    public CompletableFuture<Void> abandonAsync(UUID lockToken) {
+        return this.abandonAsync(lockToken, null);
+    }
+
+    @Override
+    public CompletableFuture<Void> abandonAsync(UUID lockToken, Map<String, Object> propertiesToModify) {
+        return this.getOwningLink(lockToken).abandonAsync(lockToken, propertiesToModify).thenRun(() -> this.lockTokensToOwners.remove(lockToken));
+    }
+
+    @Override
+    public void complete(UUID lockToken) throws InterruptedException, ServiceBusException {
+        Utils.completeFuture(this.completeAsync(lockToken));
+    }
+
+    @Override
+    public CompletableFuture<Void> completeAsync(UUID lockToken) {
+        return this.getOwningLink(lockToken).completeAsync(lockToken).thenRun(() -> this.lockTokensToOwners.remove(lockToken));
+    }
+
+    @Override
+    public void defer(UUID lockToken) throws InterruptedException, ServiceBusException {
+        Utils.completeFuture(this.deferAsync(lockToken));
+    }
+
+    @Override
+    public void defer(UUID lockToken, Map<String, Object> propertiesToModify) throws InterruptedException, ServiceBusException {
+        Utils.completeFuture(this.deferAsync(lockToken, propertiesToModify));
+    }
+
+    @Override
+    public CompletableFuture<Void> deferAsync(UUID lockToken) {
+        return this.deferAsync(lockToken, null);
+    }
+
+    @Override
+    public CompletableFuture<Void> deferAsync(UUID lockToken, Map<String, Object> propertiesToModify) {
+        return this.getOwningLink(lockToken).deferAsync(lockToken, propertiesToModify).thenRun(() -> this.lockTokensToOwners.remove(lockToken));
+    }
+
+    @Override
+    public void deadLetter(UUID lockToken) throws InterruptedException, ServiceBusException {
+        Utils.completeFuture(this.deadLetterAsync(lockToken));
+    }
+
+    @Override
+    public void deadLetter(UUID lockToken, Map<String, Object> propertiesToModify) throws InterruptedException, ServiceBusException {
+        Utils.completeFuture(this.deadLetterAsync(lockToken, propertiesToModify));
+    }
+
+    @Override
+    public void deadLetter(UUID lockToken, String deadLetterReason, String deadLetterErrorDescription) throws InterruptedException, ServiceBusException {
+        Utils.completeFuture(this.deadLetterAsync(lockToken, deadLetterReason, deadLetterErrorDescription));
+    }
+
+    @Override
+    public void deadLetter(UUID lockToken, String deadLetterReason, String deadLetterErrorDescription, Map<String, Object> propertiesToModify) throws InterruptedException, ServiceBusException {
+        Utils.completeFuture(this.deadLetterAsync(lockToken, deadLetterReason, deadLetterErrorDescription, propertiesToModify));
+    }
+
+    @Override
+    public CompletableFuture<Void> deadLetterAsync(UUID lockToken) {
+        return this.deadLetterAsync(lockToken, null, null, null);
+    }
+
+    @Override
+    public CompletableFuture<Void> deadLetterAsync(UUID lockToken, Map<String, Object> propertiesToModify) {
+        return this.deadLetterAsync(lockToken, null, null, propertiesToModify);
+    }
+
+    @Override
+    public CompletableFuture<Void> deadLetterAsync(UUID lockToken, String deadLetterReason, String deadLetterErrorDescription) {
+        return this.deadLetterAsync(lockToken, deadLetterReason, deadLetterErrorDescription, null);
+    }
+
+    @Override
+    public CompletableFuture<Void> deadLetterAsync(UUID lockToken, String deadLetterReason, String deadLetterErrorDescription, Map<String, Object> propertiesToModify) {
+        return this.getOwningLink(lockToken).deadLetterAsync(lockToken, deadLetterReason, deadLetterErrorDescription, propertiesToModify).thenRun(() -> this.lockTokensToOwners.remove(lockToken));
+    }
+
+    @Override
+    public IMessage receive() throws InterruptedException, ServiceBusException {
+        return Utils.completeFuture(this.receiveAsync());
+    }
+
+    @Override
+    public IMessage receive(Duration serverWaitTime) throws InterruptedException, ServiceBusException {
+        return Utils.completeFuture(this.receiveAsync(serverWaitTime));
+    }
+
+    @Override
+    public IMessage receiveDeferredMessage(long sequenceNumber) throws InterruptedException, ServiceBusException {
+        return Utils.completeFuture(this.receiveDeferredMessageAsync(sequenceNumber));
+    }
+
+    @Override
+    public Collection<IMessage> receiveBatch(int maxMessageCount) throws InterruptedException, ServiceBusException {
+        return Utils.completeFuture(this.receiveBatchAsync(maxMessageCount));
+    }
+
+    @Override
+    public Collection<IMessage> receiveBatch(int maxMessageCount, Duration serverWaitTime) throws InterruptedException, ServiceBusException {
+        return Utils.completeFuture(this.receiveBatchAsync(maxMessageCount, serverWaitTime));
+    }
+
+    @Override
+    public Collection<IMessage> receiveDeferredMessageBatch(Collection<Long> sequenceNumbers) throws InterruptedException, ServiceBusException {
+        return Utils.completeFuture(this.receiveDeferredMessageBatchAsync(sequenceNumbers));
+    }
+
+    @Override
+    public CompletableFuture<IMessage> receiveAsync() {
+        MessageReceiver linkReceiver = this.getNextLink();
+        return linkReceiver.receiveAsync().thenApply((m) -> this.trackLockOwner(m, linkReceiver));
+    }
+
+    @Override
+    public CompletableFuture<IMessage> receiveAsync(Duration serverWaitTime) {
+        MessageReceiver linkReceiver = this.getNextLink();
+        return linkReceiver.receiveAsync(serverWaitTime).thenApply((m) -> this.trackLockOwner(m, linkReceiver));
+    }
+
+    @Override
+    public CompletableFuture<IMessage> receiveDeferredMessageAsync(long sequenceNumber) {
+        MessageReceiver linkReceiver = this.getNextLink();
+        return linkReceiver.receiveDeferredMessageAsync(sequenceNumber).thenApply((m) -> this.trackLockOwner(m, linkReceiver));
+    }
+
+    @Override
+    public CompletableFuture<Collection<IMessage>> receiveBatchAsync(int maxMessageCount) {
+        MessageReceiver linkReceiver = this.getNextLink();
+        return linkReceiver.receiveBatchAsync(maxMessageCount).thenApply((c) -> this.trackLockOwners(c, linkReceiver));
+    }
+
+    @Override
+    public CompletableFuture<Collection<IMessage>> receiveBatchAsync(int maxMessageCount, Duration serverWaitTime) {
+        MessageReceiver linkReceiver = this.getNextLink();
+        return linkReceiver.receiveBatchAsync(maxMessageCount, serverWaitTime).thenApply((c) -> this.trackLockOwners(c, linkReceiver));
+    }
+
+    @Override
+    public CompletableFuture<Collection<IMessage>> receiveDeferredMessageBatchAsync(Collection<Long> sequenceNumbers) {
+        MessageReceiver linkReceiver = this.getNextLink();
+        return linkReceiver.receiveDeferredMessageBatchAsync(sequenceNumbers).thenApply((c) -> this.trackLockOwners(c, linkReceiver));
+    }
+
+    @Override
+    public CompletableFuture<Instant> renewMessageLockAsync(IMessage message) {
+        return this.getOwningLink(message.getLockToken()).renewMessageLockAsync(message);
+    }
+
+    @Override
+    public Instant renewMessageLock(IMessage message) throws InterruptedException, ServiceBusException {
+        return Utils.completeFuture(this.renewMessageLockAsync(message));
+    }
+
+    @Override
+    public void registerMessageLockRenewal(IMessage message, Duration maxRenewalDuration) {
+        this.getOwningLink(message.getLockToken()).registerMessageLockRenewal(message, maxRenewalDuration);
+    }
+
+    @Override
+    public void registerMessageLockRenewal(IMessage message, Duration maxRenewalDuration, Consumer<Throwable> onRenewFailure) {
+        this.getOwningLink(message.getLockToken()).registerMessageLockRenewal(message, maxRenewalDuration, onRenewFailure);
+    }
+
+    @Override
+    public void unregisterMessageLockRenewal(UUID lockToken) {
+        this.getOwningLink(lockToken).unregisterMessageLockRenewal(lockToken);
+    }
+
+    @Override
+    public int getPrefetchCount() {
+        return this.linkReceivers[0].getPrefetchCount();
+    }
+
+    @Override
+    public void setPrefetchCount(int prefetchCount) throws ServiceBusException {
+        for (MessageReceiver linkReceiver : this.linkReceivers) {
+            linkReceiver.setPrefetchCount(prefetchCount);
+        }
+    }
+
+    @Override
+    public long getMaxPrefetchBytes() {
+        return this.linkReceivers[0].getMaxPrefetchBytes();
+    }
+
+    @Override
+    public void setMaxPrefetchBytes(long maxPrefetchBytes) {
+        for (MessageReceiver linkReceiver : this.linkReceivers) {
+            linkReceiver.setMaxPrefetchBytes(maxPrefetchBytes);
+        }
+    }
+
+    @Override
+    public boolean isAdaptivePrefetchEnabled() {
+        return this.linkReceivers[0].isAdaptivePrefetchEnabled();
+    }
+
+    @Override
+    public void setAdaptivePrefetchEnabled(boolean enabled) throws ServiceBusException {
+        for (MessageReceiver linkReceiver : this.linkReceivers) {
+            linkReceiver.setAdaptivePrefetchEnabled(enabled);
+        }
+    }
+
+    @Override
+    public boolean isLazyMessageDecodingEnabled() {
+        return this.linkReceivers[0].isLazyMessageDecodingEnabled();
+    }
+
+    @Override
+    public void setLazyMessageDecodingEnabled(boolean enabled) {
+        for (MessageReceiver linkReceiver : this.linkReceivers) {
+            linkReceiver.setLazyMessageDecodingEnabled(enabled);
+        }
+    }
+
+    // Browsing is done over the first link, so peeking without a sequence number continues from the last peeked message
+    @Override
+    public IMessage peek() throws InterruptedException, ServiceBusException {
+        return this.linkReceivers[0].peek();
+    }
+
+    @Override
+    public IMessage peek(long fromSequenceNumber) throws InterruptedException, ServiceBusException {
+        return this.linkReceivers[0].peek(fromSequenceNumber);
+    }
+
+    @Override
+    public Collection<IMessage> peekBatch(int messageCount) throws InterruptedException, ServiceBusException {
+        return this.linkReceivers[0].peekBatch(messageCount);
+    }
+
+    @Override
+    public Collection<IMessage> peekBatch(long fromSequenceNumber, int messageCount) throws InterruptedException, ServiceBusException {
+        return this.linkReceivers[0].peekBatch(fromSequenceNumber, messageCount);
+    }
+
+    @Override
+    public CompletableFuture<IMessage> peekAsync() {
+        return this.linkReceivers[0].peekAsync();
+    }
+
+    @Override
+    public CompletableFuture<IMessage> peekAsync(long fromSequenceNumber) {
+        return this.linkReceivers[0].peekAsync(fromSequenceNumber);
+    }
+
+    @Override
+    public CompletableFuture<Collection<IMessage>> peekBatchAsync(int messageCount) {
+        return this.linkReceivers[0].peekBatchAsync(messageCount);
+    }
+
+    @Override
+    public CompletableFuture<Collection<IMessage>> peekBatchAsync(long fromSequenceNumber, int messageCount) {
+        return this.linkReceivers[0].peekBatchAsync(fromSequenceNumber, messageCount);
+    }
+
+    @Override
+    protected CompletableFuture<Void> onClose() {
+        if (!this.isInitialized) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        TRACE_LOGGER.info("Closing MultiLinkMessageReceiver to entity '{}'", this.entityPath);
+        if (this.lockTokenPruner != null) {
+            this.lockTokenPruner.cancel(false);
+        }
+
+        return this.closeLinksAsync().thenRun(() -> TRACE_LOGGER.info("Closed MultiLinkMessageReceiver to entity '{}'", this.entityPath));
+    }
+
+    private CompletableFuture<Void> closeLinksAsync() {
+        ArrayList<CompletableFuture<Void>> closeFutures = new ArrayList<>();
+        for (MessageReceiver linkReceiver : this.linkReceivers) {
+            if (linkReceiver != null) {
+                closeFutures.add(linkReceiver.closeAsync());
+            }
+        }
+
+        return CompletableFuture.allOf(closeFutures.toArray(new CompletableFuture<?>[0])).handleAsync((v, closeEx) -> {
+            if (closeEx != null) {
+                TRACE_LOGGER.warn("Closing links of MultiLinkMessageReceiver to entity '{}' failed.", this.entityPath, closeEx);
+            }
+            return null;
+        }, MessagingFactory.INTERNAL_THREAD_POOL).thenCompose((v) -> {
+            if (this.sharedMessagingFactory != null) {
+                TRACE_LOGGER.info("Closing MessagingFactory associated with namespace '{}'", this.namespaceEndpointURI);
+                return this.sharedMessagingFactory.closeAsync();
+            } else {
+                return CompletableFuture.completedFuture(null);
+            }
+        });
+    }
+
+    // A receive on a link without prefetched messages waits for the service, even while other links hold prefetched messages.
+    // So the first link in turn that has prefetched messages is picked, and the link whose turn it is only if none has any.
+    private MessageReceiver getNextLink() {
+        int linkCount = this.linkReceivers.length;
+        int turnIndex = Math.floorMod(this.nextLinkIndex.getAndIncrement(), linkCount);
+        for (int i = 0; i < linkCount; i++) {
+            MessageReceiver linkReceiver = this.linkReceivers[(turnIndex + i) % linkCount];
+            if (linkReceiver.getPrefetchedMessageCount() > 0) {
+                return linkReceiver;
+            }
+        }
+
+        return this.linkReceivers[turnIndex];
+    }
+
+    // Number of messages received and not yet settled through this receiver
+    int getTrackedLockTokenCount() {
+        return this.lockTokensToOwners.size();
+    }
+
+    // Lock tokens this receiver doesn't know are handed to the first link, which fails them the same way a single link receiver does
+    private MessageReceiver getOwningLink(UUID lockToken) {
+        LockOwner owner = this.lockTokensToOwners.get(lockToken);
+        return owner == null ? this.linkReceivers[0] : owner.linkReceiver;
+    }
+
+    private IMessage trackLockOwner(IMessage message, MessageReceiver linkReceiver) {
+        if (message != null && this.receiveMode == ReceiveMode.PEEKLOCK && !message.getLockToken().equals(ClientConstants.ZEROLOCKTOKEN)) {
+            this.lockTokensToOwners.put(message.getLockToken(), new LockOwner(linkReceiver, message));
+        }
+
+        return message;
+    }
+
+    private Collection<IMessage> trackLockOwners(Collection<IMessage> messages, MessageReceiver linkReceiver) {
+        if (messages != null) {
+            for (IMessage message : messages) {
+                this.trackLockOwner(message, linkReceiver);
+            }
+        }
+
+        return messages;
+    }
+
+    // Lock tokens of messages whose locks expired without them being settled are forgotten, as they can't be settled anymore
+    private void scheduleLockTokenPruning() {
+        this.lockTokenPruner = Timer.schedule(() -> this.pruneLockTokens(Instant.now()), LOCK_TOKEN_PRUNING_INTERVAL, TimerType.RepeatRun);
+    }
+
+    void pruneLockTokens(Instant systemTime) {
+        for (Entry<UUID, LockOwner> entry : this.lockTokensToOwners.entrySet()) {
+            // Locks renewed through the owning link are updated on the message
+            Instant lockedUntilUtc = entry.getValue().message.getLockedUntilUtc();
+            if (lockedUntilUtc != null && lockedUntilUtc.isBefore(systemTime)) {
+                this.lockTokensToOwners.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private static final class LockOwner {
+        private final MessageReceiver linkReceiver;
+        private final IMessage message;
+
+        LockOwner(MessageReceiver linkReceiver, IMessage message) {
+            this.linkReceiver = linkReceiver;
+            this.message = message;
+        }
+    }
+}
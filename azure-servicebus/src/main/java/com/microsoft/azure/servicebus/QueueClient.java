@@ -5,6 +5,7 @@ package com.microsoft.azure.servicebus;
 
 import java.net.URI;
 import java.sql.Date;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Collection;
 import java.util.Map;
@@ -15,6 +16,7 @@ import java.util.concurrent.ExecutorService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.microsoft.azure.servicebus.primitives.ClientConstants;
 import com.microsoft.azure.servicebus.primitives.ConnectionStringBuilder;
 import com.microsoft.azure.servicebus.primitives.ExceptionUtil;
 import com.microsoft.azure.servicebus.primitives.MessagingEntityType;
@@ -32,6 +34,9 @@ public final class QueueClient extends InitializableEntity implements IQueueClie
     private MessagingFactory factory;
     private IMessageSender sender;
     private CompletableFuture<Void> senderCreationFuture;
+    private Duration autoBatchingLingerTime;
+    private int maxPendingSendCount;
+    private long maxPendingSendBytes;
     
     private MessageAndSessionPump messageAndSessionPump;
     private SessionBrowser sessionBrowser;
@@ -42,6 +47,9 @@ public final class QueueClient extends InitializableEntity implements IQueueClie
         this.receiveMode = receiveMode;
         this.queuePath = queuePath;
         this.senderCreationLock = new Object();
+        this.autoBatchingLingerTime = Duration.ZERO;
+        this.maxPendingSendCount = ClientConstants.DEFAULT_MAX_PENDING_SEND_COUNT;
+        this.maxPendingSendBytes = ClientConstants.DEFAULT_MAX_PENDING_SEND_BYTES;
     }
     
     public QueueClient(ConnectionStringBuilder amqpConnectionStringBuilder, ReceiveMode receiveMode) throws InterruptedException, ServiceBusException {
@@ -100,7 +108,13 @@ public final class QueueClient extends InitializableEntity implements IQueueClie
                 {
                     if(ex == null)
                     {
-                        this.sender = sender;
+                        synchronized (this.senderCreationLock)
+                        {
+                            sender.setAutoBatchingLingerTime(this.autoBatchingLingerTime);
+                            sender.setMaxPendingSendCount(this.maxPendingSendCount);
+                            sender.setMaxPendingSendBytes(this.maxPendingSendBytes);
+                            this.sender = sender;
+                        }
                         this.senderCreationFuture.complete(null);
                     }
                     else
@@ -171,6 +185,109 @@ public final class QueueClient extends InitializableEntity implements IQueueClie
         }, MessagingFactory.INTERNAL_THREAD_POOL);
     }
 
+    @Override
+    public MessageBatch createBatch() throws InterruptedException, ServiceBusException {
+        return Utils.completeFuture(this.createBatchAsync());
+    }
+
+    @Override
+    public CompletableFuture<MessageBatch> createBatchAsync() {
+        return this.createSenderAsync().thenComposeAsync((v) -> 
+        {
+            return this.sender.createBatchAsync();
+        }, MessagingFactory.INTERNAL_THREAD_POOL);
+    }
+
+    @Override
+    public void sendMessageBatch(MessageBatch batch) throws InterruptedException, ServiceBusException {
+        Utils.completeFuture(this.sendMessageBatchAsync(batch));
+    }
+
+    @Override
+    public CompletableFuture<Void> sendMessageBatchAsync(MessageBatch batch) {
+        return this.createSenderAsync().thenComposeAsync((v) -> 
+        {
+            return this.sender.sendMessageBatchAsync(batch);
+        }, MessagingFactory.INTERNAL_THREAD_POOL);
+    }
+
+    @Override
+    public void sendInBatches(Collection<? extends IMessage> messages) throws InterruptedException, ServiceBusException {
+        Utils.completeFuture(this.sendInBatchesAsync(messages));
+    }
+
+    @Override
+    public CompletableFuture<Void> sendInBatchesAsync(Collection<? extends IMessage> messages) {
+        return this.createSenderAsync().thenComposeAsync((v) -> 
+        {
+            return this.sender.sendInBatchesAsync(messages);
+        }, MessagingFactory.INTERNAL_THREAD_POOL);
+    }
+
+    @Override
+    public Duration getAutoBatchingLingerTime() {
+        synchronized (this.senderCreationLock) {
+            return this.autoBatchingLingerTime;
+        }
+    }
+
+    @Override
+    public void setAutoBatchingLingerTime(Duration lingerTime) {
+        if (lingerTime == null || lingerTime.isNegative()) {
+            throw new IllegalArgumentException("Linger time cannot be null or negative.");
+        }
+
+        // Sender is created lazily, so it picks up the linger time when it is created
+        synchronized (this.senderCreationLock) {
+            this.autoBatchingLingerTime = lingerTime;
+            if (this.sender != null) {
+                this.sender.setAutoBatchingLingerTime(lingerTime);
+            }
+        }
+    }
+
+    @Override
+    public int getMaxPendingSendCount() {
+        synchronized (this.senderCreationLock) {
+            return this.maxPendingSendCount;
+        }
+    }
+
+    @Override
+    public void setMaxPendingSendCount(int maxPendingSendCount) {
+        if (maxPendingSendCount <= 0) {
+            throw new IllegalArgumentException("Maximum pending send count must be positive.");
+        }
+
+        synchronized (this.senderCreationLock) {
+            this.maxPendingSendCount = maxPendingSendCount;
+            if (this.sender != null) {
+                this.sender.setMaxPendingSendCount(maxPendingSendCount);
+            }
+        }
+    }
+
+    @Override
+    public long getMaxPendingSendBytes() {
+        synchronized (this.senderCreationLock) {
+            return this.maxPendingSendBytes;
+        }
+    }
+
+    @Override
+    public void setMaxPendingSendBytes(long maxPendingSendBytes) {
+        if (maxPendingSendBytes <= 0) {
+            throw new IllegalArgumentException("Maximum pending send bytes must be positive.");
+        }
+
+        synchronized (this.senderCreationLock) {
+            this.maxPendingSendBytes = maxPendingSendBytes;
+            if (this.sender != null) {
+                this.sender.setMaxPendingSendBytes(maxPendingSendBytes);
+            }
+        }
+    }
+
     @Override
     public CompletableFuture<Long> scheduleMessageAsync(IMessage message, Instant scheduledEnqueueTimeUtc) {
         return this.createSenderAsync().thenComposeAsync((v) -> 
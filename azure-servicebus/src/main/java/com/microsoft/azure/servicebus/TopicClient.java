@@ -4,6 +4,7 @@
 package com.microsoft.azure.servicebus;
 
 import java.net.URI;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Collection;
 import java.util.concurrent.CompletableFuture;
@@ -81,6 +82,66 @@ public final class TopicClient extends InitializableEntity implements ITopicClie
         return this.sender.sendBatchAsync(messages);
     }
 
+    @Override
+    public MessageBatch createBatch() throws InterruptedException, ServiceBusException {
+        return this.sender.createBatch();
+    }
+
+    @Override
+    public CompletableFuture<MessageBatch> createBatchAsync() {
+        return this.sender.createBatchAsync();
+    }
+
+    @Override
+    public void sendMessageBatch(MessageBatch batch) throws InterruptedException, ServiceBusException {
+        this.sender.sendMessageBatch(batch);
+    }
+
+    @Override
+    public CompletableFuture<Void> sendMessageBatchAsync(MessageBatch batch) {
+        return this.sender.sendMessageBatchAsync(batch);
+    }
+
+    @Override
+    public void sendInBatches(Collection<? extends IMessage> messages) throws InterruptedException, ServiceBusException {
+        this.sender.sendInBatches(messages);
+    }
+
+    @Override
+    public CompletableFuture<Void> sendInBatchesAsync(Collection<? extends IMessage> messages) {
+        return this.sender.sendInBatchesAsync(messages);
+    }
+
+    @Override
+    public Duration getAutoBatchingLingerTime() {
+        return this.sender.getAutoBatchingLingerTime();
+    }
+
+    @Override
+    public void setAutoBatchingLingerTime(Duration lingerTime) {
+        this.sender.setAutoBatchingLingerTime(lingerTime);
+    }
+
+    @Override
+    public int getMaxPendingSendCount() {
+        return this.sender.getMaxPendingSendCount();
+    }
+
+    @Override
+    public void setMaxPendingSendCount(int maxPendingSendCount) {
+        this.sender.setMaxPendingSendCount(maxPendingSendCount);
+    }
+
+    @Override
+    public long getMaxPendingSendBytes() {
+        return this.sender.getMaxPendingSendBytes();
+    }
+
+    @Override
+    public void setMaxPendingSendBytes(long maxPendingSendBytes) {
+        this.sender.setMaxPendingSendBytes(maxPendingSendBytes);
+    }
+
     @Override
     public CompletableFuture<Long> scheduleMessageAsync(IMessage message, Instant scheduledEnqueueTimeUtc) {
         return this.sender.scheduleMessageAsync(message, scheduledEnqueueTimeUtc);
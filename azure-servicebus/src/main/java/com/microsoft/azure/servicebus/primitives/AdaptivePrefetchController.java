@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+package com.microsoft.azure.servicebus.primitives;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tunes the prefetch count of a receiver from how fast the application takes messages and how long it takes for credit to bring a message.
+ * Enough messages are prefetched to cover two round trips at the observed drain rate, so the application rarely waits for messages.
+ * When messages are locked, prefetch is also kept small enough for prefetched messages to be taken well before their locks expire.
+ * Prefetch starts at one message and grows quickly while the application keeps up, as a larger prefetch lets it take messages faster.
+ */
+final class AdaptivePrefetchController
+{
+	static final long ADJUSTMENT_INTERVAL_IN_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+	// Used until a round trip is measured
+	private static final long DEFAULT_ROUND_TRIP_IN_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+	// A credit that brings no message for a long time means the entity is empty, not that round trips are slow
+	private static final long MAX_ROUND_TRIP_SAMPLE_IN_NANOS = TimeUnit.SECONDS.toNanos(1);
+	// Prefetched messages should be taken within this fraction of their lock duration
+	private static final double LOCK_DURATION_FRACTION = 0.5;
+	private static final double DRAIN_RATE_SMOOTHING = 0.3;
+
+	private volatile int maxPrefetchCount;
+	// Written only by the reactor thread
+	private volatile long roundTripInNanos;
+	// Written by whichever thread decodes messages. A lost update only drops one sample.
+	private volatile long lockDurationInMillis;
+	// Accessed only by the thread returning messages to the application
+	private long windowStartInNanos;
+	private int windowMessageCount;
+	private double drainRatePerSecond;
+	private volatile int targetPrefetchCount;
+
+	AdaptivePrefetchController(int maxPrefetchCount, long currentTimeInNanos)
+	{
+		this.maxPrefetchCount = maxPrefetchCount;
+		this.roundTripInNanos = 0;
+		this.lockDurationInMillis = 0;
+		this.windowStartInNanos = currentTimeInNanos;
+		this.windowMessageCount = 0;
+		this.drainRatePerSecond = 0;
+		this.targetPrefetchCount = Math.min(1, maxPrefetchCount);
+	}
+
+	int getMaxPrefetchCount()
+	{
+		return this.maxPrefetchCount;
+	}
+
+	void setMaxPrefetchCount(int maxPrefetchCount)
+	{
+		this.maxPrefetchCount = maxPrefetchCount;
+		this.targetPrefetchCount = Math.min(this.targetPrefetchCount, maxPrefetchCount);
+	}
+
+	int getTargetPrefetchCount()
+	{
+		return this.targetPrefetchCount;
+	}
+
+	long getRoundTripInNanos()
+	{
+		return this.roundTripInNanos;
+	}
+
+	long getLockDurationInMillis()
+	{
+		return this.lockDurationInMillis;
+	}
+
+	// Time from flowing credit on a link without credit to the first message arriving
+	void onRoundTripMeasured(long roundTripInNanos)
+	{
+		long sample = Math.min(Math.max(0, roundTripInNanos), MAX_ROUND_TRIP_SAMPLE_IN_NANOS);
+		long currentRoundTrip = this.roundTripInNanos;
+		this.roundTripInNanos = currentRoundTrip == 0 ? sample : currentRoundTrip + (sample - currentRoundTrip) / 4;
+	}
+
+	// Time a just received message stays locked. Smoothed like round trips, as a single message can appear to have a much shorter lock,
+	// for example due to clock skew, and shouldn't hold prefetch down for the lifetime of the receiver.
+	void onMessageLockObserved(long remainingLockInMillis)
+	{
+		if(remainingLockInMillis > 0)
+		{
+			long currentLockDuration = this.lockDurationInMillis;
+			this.lockDurationInMillis = currentLockDuration == 0 ? remainingLockInMillis : currentLockDuration + (remainingLockInMillis - currentLockDuration) / 4;
+		}
+	}
+
+	/**
+	 * Records messages returned to the application.
+	 * @return true if the target prefetch count changed
+	 */
+	boolean onMessagesReturned(int messageCount, long currentTimeInNanos)
+	{
+		this.windowMessageCount += messageCount;
+		long elapsedInNanos = currentTimeInNanos - this.windowStartInNanos;
+		if(elapsedInNanos < ADJUSTMENT_INTERVAL_IN_NANOS)
+		{
+			return false;
+		}
+
+		double windowDrainRate = this.windowMessageCount * (double)TimeUnit.SECONDS.toNanos(1) / elapsedInNanos;
+		this.drainRatePerSecond = this.drainRatePerSecond == 0 ? windowDrainRate : this.drainRatePerSecond + DRAIN_RATE_SMOOTHING * (windowDrainRate - this.drainRatePerSecond);
+		this.windowStartInNanos = currentTimeInNanos;
+		this.windowMessageCount = 0;
+
+		int previousTarget = this.targetPrefetchCount;
+		this.targetPrefetchCount = this.computeTargetPrefetchCount();
+		return this.targetPrefetchCount != previousTarget;
+	}
+
+	private int computeTargetPrefetchCount()
+	{
+		long roundTrip = this.roundTripInNanos == 0 ? DEFAULT_ROUND_TRIP_IN_NANOS : this.roundTripInNanos;
+		double roundTripInSeconds = roundTrip / (double)TimeUnit.SECONDS.toNanos(1);
+		long target = (long)Math.ceil(this.drainRatePerSecond * roundTripInSeconds * 2) + 1;
+
+		long lockDuration = this.lockDurationInMillis;
+		if(lockDuration > 0)
+		{
+			long lockBound = (long)(this.drainRatePerSecond * lockDuration * LOCK_DURATION_FRACTION / 1000);
+			target = Math.min(target, Math.max(1, lockBound));
+		}
+
+		return (int)Math.max(Math.min(1, this.maxPrefetchCount), Math.min(target, this.maxPrefetchCount));
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+package com.microsoft.azure.servicebus.primitives;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of byte arrays used for encoding messages before handing them over to proton-j, and for holding received messages until they are decoded.
+ * Arrays are grouped into power of two size classes, from {@link #MIN_POOLED_ARRAY_SIZE} up to {@link #MAX_POOLED_ARRAY_SIZE}.
+ * Each size class retains at most {@link #MAX_RETAINED_BYTES_PER_SIZE_CLASS} bytes, anything released beyond that is left to the garbage collector.
+ * Requests larger than the largest size class are served with a fresh array which is never pooled.
+ */
+final class BufferPool
+{
+	static final int MIN_POOLED_ARRAY_SIZE = 1024;
+	static final int MAX_POOLED_ARRAY_SIZE = ClientConstants.MAX_MESSAGE_LENGTH_BYTES;
+	static final int MAX_RETAINED_BYTES_PER_SIZE_CLASS = 8 * 1024 * 1024;
+
+	private static final int MIN_SIZE_CLASS_SHIFT = Integer.numberOfTrailingZeros(MIN_POOLED_ARRAY_SIZE);
+	private static final SizeClass[] SIZE_CLASSES = createSizeClasses();
+
+	private BufferPool()
+	{
+	}
+
+	/**
+	 * Gets an array of at least the given length. Returned array may be longer than requested and may contain stale data.
+	 * @param minimumLength minimum length of the array
+	 * @return a byte array whose length is greater than or equal to minimumLength
+	 */
+	static byte[] acquire(int minimumLength)
+	{
+		if(minimumLength < 0)
+		{
+			throw new IllegalArgumentException("Buffer length cannot be negative.");
+		}
+
+		int sizeClassIndex = getSizeClassIndex(minimumLength);
+		if(sizeClassIndex < 0)
+		{
+			return new byte[minimumLength];
+		}
+
+		SizeClass sizeClass = SIZE_CLASSES[sizeClassIndex];
+		byte[] buffer = sizeClass.pooledArrays.poll();
+		if(buffer == null)
+		{
+			return new byte[sizeClass.arraySize];
+		}
+
+		sizeClass.retainedCount.decrementAndGet();
+		return buffer;
+	}
+
+	/**
+	 * Returns an array to the pool. Caller must not use the array after releasing it, and must only release arrays obtained from {@link #acquire(int)}.
+	 * Ownership is not tracked, so any array whose length is exactly a size class is pooled and later handed out by {@link #acquire(int)}.
+	 * Arrays that don't fit in any size class are ignored.
+	 * @param buffer array to be returned to the pool, can be null
+	 */
+	static void release(byte[] buffer)
+	{
+		if(buffer == null)
+		{
+			return;
+		}
+
+		int sizeClassIndex = getSizeClassIndex(buffer.length);
+		if(sizeClassIndex < 0 || SIZE_CLASSES[sizeClassIndex].arraySize != buffer.length)
+		{
+			return;
+		}
+
+		SizeClass sizeClass = SIZE_CLASSES[sizeClassIndex];
+		if(sizeClass.retainedCount.incrementAndGet() <= sizeClass.maxRetainedCount)
+		{
+			sizeClass.pooledArrays.offer(buffer);
+		}
+		else
+		{
+			sizeClass.retainedCount.decrementAndGet();
+		}
+	}
+
+	static int getRetainedCount(int arraySize)
+	{
+		int sizeClassIndex = getSizeClassIndex(arraySize);
+		return sizeClassIndex < 0 ? 0 : SIZE_CLASSES[sizeClassIndex].retainedCount.get();
+	}
+
+	private static int getSizeClassIndex(int length)
+	{
+		if(length > MAX_POOLED_ARRAY_SIZE)
+		{
+			return -1;
+		}
+
+		if(length <= MIN_POOLED_ARRAY_SIZE)
+		{
+			return 0;
+		}
+
+		// Smallest power of two that is greater than or equal to length
+		int sizeClassShift = Integer.SIZE - Integer.numberOfLeadingZeros(length - 1);
+		return sizeClassShift - MIN_SIZE_CLASS_SHIFT;
+	}
+
+	private static SizeClass[] createSizeClasses()
+	{
+		int count = Integer.numberOfTrailingZeros(Integer.highestOneBit(MAX_POOLED_ARRAY_SIZE)) - MIN_SIZE_CLASS_SHIFT + 1;
+		SizeClass[] sizeClasses = new SizeClass[count];
+		for(int i=0; i<count; i++)
+		{
+			sizeClasses[i] = new SizeClass(MIN_POOLED_ARRAY_SIZE << i);
+		}
+
+		return sizeClasses;
+	}
+
+	private static class SizeClass
+	{
+		private final int arraySize;
+		private final int maxRetainedCount;
+		private final ConcurrentLinkedQueue<byte[]> pooledArrays;
+		// size() on concurrentlinkedqueue is o(n) operation
+		private final AtomicInteger retainedCount;
+
+		SizeClass(int arraySize)
+		{
+			this.arraySize = arraySize;
+			this.maxRetainedCount = Math.max(1, MAX_RETAINED_BYTES_PER_SIZE_CLASS / arraySize);
+			this.pooledArrays = new ConcurrentLinkedQueue<byte[]>();
+			this.retainedCount = new AtomicInteger();
+		}
+	}
+}
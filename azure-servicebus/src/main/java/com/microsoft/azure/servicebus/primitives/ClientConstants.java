@@ -70,6 +70,9 @@ public final class ClientConstants
 	public static final int MAX_MESSAGE_LENGTH_BYTES = 1024 * 1024;
 	public static final int MAX_FRAME_SIZE_BYTES = 64 * 1024;
 	public static final int MAX_MESSAGING_AMQP_HEADER_SIZE_BYTES = 512;
+	// Pending sends are not limited unless the application sets limits
+	public static final int DEFAULT_MAX_PENDING_SEND_COUNT = Integer.MAX_VALUE;
+	public static final long DEFAULT_MAX_PENDING_SEND_BYTES = Long.MAX_VALUE;
 
 	public final static Duration TIMER_TOLERANCE = Duration.ofSeconds(1);
 
@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+package com.microsoft.azure.servicebus.primitives;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A concurrent map with primitive long keys, used for tracking in-flight deliveries and requests by their numeric ids.
+ * Keys and values are stored in open addressing tables with linear probing, so lookups don't box keys or allocate entries.
+ * Map is split into sections, each guarded by its own lock, to keep contention low when many threads add and remove entries.
+ * Null values are not allowed.
+ */
+final class ConcurrentLongHashMap<V>
+{
+	private static final int SECTION_COUNT = 16;
+	private static final int MIN_SECTION_CAPACITY = 16;
+	private static final float MAX_LOAD_FACTOR = 0.66f;
+
+	private final Section<V>[] sections;
+
+	ConcurrentLongHashMap()
+	{
+		this(SECTION_COUNT * MIN_SECTION_CAPACITY);
+	}
+
+	@SuppressWarnings("unchecked")
+	ConcurrentLongHashMap(int expectedSize)
+	{
+		this.sections = (Section<V>[]) new Section<?>[SECTION_COUNT];
+		int sectionCapacity = Math.max(MIN_SECTION_CAPACITY, (int)(expectedSize / SECTION_COUNT / MAX_LOAD_FACTOR) + 1);
+		for(int i=0; i<SECTION_COUNT; i++)
+		{
+			this.sections[i] = new Section<V>(sectionCapacity);
+		}
+	}
+
+	V get(long key)
+	{
+		long hash = hash(key);
+		return this.getSection(hash).get(key, hash);
+	}
+
+	V put(long key, V value)
+	{
+		if(value == null)
+		{
+			throw new IllegalArgumentException("Value cannot be null.");
+		}
+
+		long hash = hash(key);
+		return this.getSection(hash).put(key, value, hash);
+	}
+
+	V remove(long key)
+	{
+		long hash = hash(key);
+		return this.getSection(hash).remove(key, hash);
+	}
+
+	boolean containsKey(long key)
+	{
+		return this.get(key) != null;
+	}
+
+	int size()
+	{
+		int size = 0;
+		for(Section<V> section : this.sections)
+		{
+			size += section.size();
+		}
+
+		return size;
+	}
+
+	boolean isEmpty()
+	{
+		for(Section<V> section : this.sections)
+		{
+			if(section.size() > 0)
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	void clear()
+	{
+		for(Section<V> section : this.sections)
+		{
+			section.clear();
+		}
+	}
+
+	// Snapshot of keys at the time of the call, entries added or removed later are not reflected
+	long[] keys()
+	{
+		LongList keys = new LongList();
+		for(Section<V> section : this.sections)
+		{
+			section.addKeysTo(keys);
+		}
+
+		return keys.toArray();
+	}
+
+	// Snapshot of values at the time of the call, entries added or removed later are not reflected
+	List<V> values()
+	{
+		ArrayList<V> values = new ArrayList<V>();
+		for(Section<V> section : this.sections)
+		{
+			section.addValuesTo(values);
+		}
+
+		return values;
+	}
+
+	private Section<V> getSection(long hash)
+	{
+		// Higher bits pick the section, lower bits the bucket within the section
+		return this.sections[(int)(hash >>> 60) & (SECTION_COUNT - 1)];
+	}
+
+	// Finalizer of MurmurHash3, spreads sequential keys across sections and buckets
+	private static long hash(long key)
+	{
+		long hash = key;
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	private static final class Section<V>
+	{
+		private long[] keys;
+		private Object[] values;
+		private int size;
+		private int resizeThreshold;
+
+		Section(int capacity)
+		{
+			this.allocate(Integer.highestOneBit(capacity - 1) << 1);
+		}
+
+		private void allocate(int capacity)
+		{
+			this.keys = new long[capacity];
+			this.values = new Object[capacity];
+			this.resizeThreshold = (int)(capacity * MAX_LOAD_FACTOR);
+		}
+
+		@SuppressWarnings("unchecked")
+		synchronized V get(long key, long hash)
+		{
+			int mask = this.keys.length - 1;
+			int bucket = (int)hash & mask;
+			while(this.values[bucket] != null)
+			{
+				if(this.keys[bucket] == key)
+				{
+					return (V)this.values[bucket];
+				}
+
+				bucket = (bucket + 1) & mask;
+			}
+
+			return null;
+		}
+
+		@SuppressWarnings("unchecked")
+		synchronized V put(long key, V value, long hash)
+		{
+			int mask = this.keys.length - 1;
+			int bucket = (int)hash & mask;
+			while(this.values[bucket] != null)
+			{
+				if(this.keys[bucket] == key)
+				{
+					V previousValue = (V)this.values[bucket];
+					this.values[bucket] = value;
+					return previousValue;
+				}
+
+				bucket = (bucket + 1) & mask;
+			}
+
+			this.keys[bucket] = key;
+			this.values[bucket] = value;
+			if(++this.size > this.resizeThreshold)
+			{
+				this.rehash();
+			}
+
+			return null;
+		}
+
+		@SuppressWarnings("unchecked")
+		synchronized V remove(long key, long hash)
+		{
+			int mask = this.keys.length - 1;
+			int bucket = (int)hash & mask;
+			while(this.values[bucket] != null)
+			{
+				if(this.keys[bucket] == key)
+				{
+					V removedValue = (V)this.values[bucket];
+					this.values[bucket] = null;
+					this.size--;
+					this.shiftEntriesBack(bucket);
+					return removedValue;
+				}
+
+				bucket = (bucket + 1) & mask;
+			}
+
+			return null;
+		}
+
+		synchronized int size()
+		{
+			return this.size;
+		}
+
+		synchronized void clear()
+		{
+			for(int i=0; i<this.values.length; i++)
+			{
+				this.values[i] = null;
+			}
+
+			this.size = 0;
+		}
+
+		synchronized void addKeysTo(LongList keyList)
+		{
+			for(int i=0; i<this.values.length; i++)
+			{
+				if(this.values[i] != null)
+				{
+					keyList.add(this.keys[i]);
+				}
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		synchronized void addValuesTo(List<V> valueList)
+		{
+			for(Object value : this.values)
+			{
+				if(value != null)
+				{
+					valueList.add((V)value);
+				}
+			}
+		}
+
+		// Moves entries following the removed bucket back, so no lookup hits an empty bucket before reaching its key. Avoids tombstones.
+		private void shiftEntriesBack(int emptiedBucket)
+		{
+			int mask = this.keys.length - 1;
+			int gap = emptiedBucket;
+			int bucket = (gap + 1) & mask;
+			while(this.values[bucket] != null)
+			{
+				int homeBucket = (int)hash(this.keys[bucket]) & mask;
+				// Entry can fill the gap only if its home bucket is not cyclically between the gap and its current bucket
+				if(((bucket - homeBucket) & mask) >= ((bucket - gap) & mask))
+				{
+					this.keys[gap] = this.keys[bucket];
+					this.values[gap] = this.values[bucket];
+					this.values[bucket] = null;
+					gap = bucket;
+				}
+
+				bucket = (bucket + 1) & mask;
+			}
+		}
+
+		private void rehash()
+		{
+			long[] oldKeys = this.keys;
+			Object[] oldValues = this.values;
+			this.allocate(oldKeys.length << 1);
+			int mask = this.keys.length - 1;
+			for(int i=0; i<oldValues.length; i++)
+			{
+				if(oldValues[i] != null)
+				{
+					int bucket = (int)hash(oldKeys[i]) & mask;
+					while(this.values[bucket] != null)
+					{
+						bucket = (bucket + 1) & mask;
+					}
+
+					this.keys[bucket] = oldKeys[i];
+					this.values[bucket] = oldValues[i];
+				}
+			}
+		}
+	}
+
+	private static final class LongList
+	{
+		private long[] items = new long[16];
+		private int count = 0;
+
+		void add(long item)
+		{
+			if(this.count == this.items.length)
+			{
+				long[] newItems = new long[this.items.length << 1];
+				System.arraycopy(this.items, 0, newItems, 0, this.count);
+				this.items = newItems;
+			}
+
+			this.items[this.count++] = item;
+		}
+
+		long[] toArray()
+		{
+			long[] array = new long[this.count];
+			System.arraycopy(this.items, 0, array, 0, this.count);
+			return array;
+		}
+	}
+}
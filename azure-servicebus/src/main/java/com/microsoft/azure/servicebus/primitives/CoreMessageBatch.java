@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+package com.microsoft.azure.servicebus.primitives;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.amqp.Symbol;
+import org.apache.qpid.proton.message.Message;
+
+/**
+ * A batch of AMQP messages that is encoded as messages are added, so the encoded size is always known exactly.
+ * Encoded bytes are sent as they are, so messages added to the batch are encoded only once.
+ * A batch can be sent only once, and no messages can be added to it after it is sent.
+ */
+public final class CoreMessageBatch
+{
+	private final int maxSizeInBytes;
+	// Sender that created the batch, which is the only one allowed to send it. Null if the batch can be sent by any sender.
+	private final Object creator;
+	private GrowableWritableBuffer buffer;
+	private int count;
+	private int sizeInBytes;
+	private boolean isSent;
+
+	CoreMessageBatch(int maxSizeInBytes)
+	{
+		this(maxSizeInBytes, null);
+	}
+
+	CoreMessageBatch(int maxSizeInBytes, Object creator)
+	{
+		this.maxSizeInBytes = maxSizeInBytes;
+		this.creator = creator;
+		this.buffer = null;
+		this.count = 0;
+		this.sizeInBytes = 0;
+		this.isSent = false;
+	}
+
+	/**
+	 * Splits messages into as few batches as possible, so each batch is within its maximum size and has messages of only one partition and session.
+	 * Messages that go into the same batch keep their order. A message that doesn't fit into a full batch starts a new batch for its partition and session.
+	 * @param messages messages to be split into batches
+	 * @param batchFactory creates empty batches
+	 * @return batches in the order they were started
+	 * @throws PayloadSizeExceededException if a message is too large for an empty batch. Batches encoded so far are released.
+	 */
+	static List<CoreMessageBatch> splitIntoBatches(Iterable<Message> messages, Supplier<CoreMessageBatch> batchFactory) throws PayloadSizeExceededException
+	{
+		// Batch envelope carries the annotations of its first message, like partition key, and a batch can't span sessions
+		Map<Pair<Map<Symbol, Object>, String>, CoreMessageBatch> openBatches = new LinkedHashMap<Pair<Map<Symbol, Object>, String>, CoreMessageBatch>();
+		List<CoreMessageBatch> batches = new ArrayList<CoreMessageBatch>();
+		for(Message amqpMessage : messages)
+		{
+			Map<Symbol, Object> messageAnnotations = amqpMessage.getMessageAnnotations() == null ? null : amqpMessage.getMessageAnnotations().getValue();
+			Pair<Map<Symbol, Object>, String> batchKey = new Pair<Map<Symbol, Object>, String>(messageAnnotations, amqpMessage.getGroupId());
+			CoreMessageBatch batch = openBatches.get(batchKey);
+			if(batch == null || !batch.tryAdd(amqpMessage))
+			{
+				batch = batchFactory.get();
+				if(!batch.tryAdd(amqpMessage))
+				{
+					for(CoreMessageBatch encodedBatch : batches)
+					{
+						BufferPool.release(encodedBatch.detachEncodedBytes().getFirstItem());
+					}
+
+					throw new PayloadSizeExceededException(String.format(Locale.US, "Size of a message in the batch exceeds the maximum allowed size of %s bytes.", batch.getMaxSizeInBytes()));
+				}
+
+				openBatches.put(batchKey, batch);
+				batches.add(batch);
+			}
+		}
+
+		return batches;
+	}
+
+	boolean canBeSentBy(Object sender)
+	{
+		return this.creator == null || this.creator == sender;
+	}
+
+	/**
+	 * Adds the message to the batch if the batch has room for it.
+	 * @param amqpMessage message to be added
+	 * @return true if the message is added to the batch, false if adding it would make the batch larger than the maximum size allowed
+	 */
+	public synchronized boolean tryAdd(Message amqpMessage)
+	{
+		if(amqpMessage == null)
+		{
+			throw new IllegalArgumentException("Message cannot be null.");
+		}
+
+		if(this.isSent)
+		{
+			throw new IllegalStateException("Cannot add messages to a batch that is already sent.");
+		}
+
+		if(this.buffer == null)
+		{
+			this.buffer = new GrowableWritableBuffer(Util.getEncodedSizeHint(amqpMessage), this.maxSizeInBytes);
+		}
+
+		try
+		{
+			if(this.count == 0)
+			{
+				// Batch envelope carries the annotations of the first message, just like batches sent as a collection of messages
+				Message batchMessage = Proton.message();
+				batchMessage.setMessageAnnotations(amqpMessage.getMessageAnnotations());
+				Util.encodeMessageToBuffer(batchMessage, this.buffer);
+			}
+
+			Util.encodeMessageToDataSection(amqpMessage, this.buffer);
+			this.count++;
+			this.sizeInBytes = this.buffer.position();
+			return true;
+		}
+		catch(PayloadSizeExceededException e)
+		{
+			if(this.count == 0)
+			{
+				this.buffer.position(0);
+			}
+
+			return false;
+		}
+	}
+
+	/**
+	 * @return number of messages in the batch
+	 */
+	public synchronized int getCount()
+	{
+		return this.count;
+	}
+
+	/**
+	 * @return encoded size of the batch in bytes
+	 */
+	public synchronized int getSizeInBytes()
+	{
+		return this.sizeInBytes;
+	}
+
+	/**
+	 * @return maximum encoded size of the batch in bytes, as allowed by the link the batch is created on
+	 */
+	public int getMaxSizeInBytes()
+	{
+		return this.maxSizeInBytes;
+	}
+
+	// Hands encoded bytes over to the sender. Array is borrowed from BufferPool, sender releases it after the send is settled.
+	synchronized Pair<byte[], Integer> detachEncodedBytes()
+	{
+		if(this.isSent)
+		{
+			throw new IllegalStateException("Batch is already sent.");
+		}
+
+		if(this.count == 0)
+		{
+			throw new IllegalArgumentException("Sending Empty batch of messages is not allowed.");
+		}
+
+		this.isSent = true;
+		Pair<byte[], Integer> encodedPair = new Pair<byte[], Integer>(this.buffer.getArray(), this.sizeInBytes);
+		this.buffer = null;
+		return encodedPair;
+	}
+}
@@ -14,7 +14,6 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -23,7 +22,9 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import org.apache.qpid.proton.amqp.Binary;
@@ -66,15 +67,18 @@ public class CoreMessageReceiver extends ClientEntity implements IAmqpReceiver,
 {
 	private static final Logger TRACE_LOGGER = LoggerFactory.getLogger(CoreMessageReceiver.class);
 	private static final Duration LINK_REOPEN_TIMEOUT = Duration.ofMinutes(5); // service closes link long before this timeout expires
-	private static final Duration RETURN_MESSAGES_DAEMON_WAKE_UP_INTERVAL = Duration.ofMillis(1); // Wakes up every 1 millisecond
-	private static final Duration UPDATE_STATE_REQUESTS_DAEMON_WAKE_UP_INTERVAL = Duration.ofMillis(500); // Wakes up every 500 milliseconds
 	private static final Duration ZERO_TIMEOUT_APPROXIMATION = Duration.ofMillis(200);
 	private static final int CREDIT_FLOW_BATCH_SIZE = 50;// Arbitrarily chosen 50 to avoid sending too many flows in case prefetch count is large
+	private static final int MAX_DISPOSITIONS_PER_DISPATCH = 128;// Bounds the time reactor thread spends on dispositions before attending to other work
+	// Prefetched messages with less lock time left than this are released instead of being returned, as they can't be completed in time
+	private static final long LOCK_EXPIRY_MARGIN_IN_MILLIS = 1000;
+	private static final Symbol LOCKED_UNTIL_ANNOTATION = Symbol.valueOf(ClientConstants.LOCKEDUNTILNAME);
 	
 	private final Object requestResonseLinkCreationLock = new Object();
 	private final ConcurrentLinkedQueue<ReceiveWorkItem> pendingReceives;
-	private final ConcurrentHashMap<String, UpdateStateWorkItem> pendingUpdateStateRequests;
-	private final ConcurrentHashMap<String, Delivery> tagsToDeliveriesMap;
+	// Keyed by delivery tags wrapped in Binary, which compares tag bytes without converting them to strings
+	private final ConcurrentHashMap<Binary, UpdateStateWorkItem> pendingUpdateStateRequests;
+	private final ConcurrentHashMap<Binary, Delivery> tagsToDeliveriesMap;
 	private final MessagingFactory underlyingFactory;
 	private final String receivePath;
 	private final String sasTokenAudienceURI;
@@ -82,6 +86,8 @@ public class CoreMessageReceiver extends ClientEntity implements IAmqpReceiver,
 	private final CompletableFuture<Void> linkClose;
 	private final Object prefetchCountSync;
 	private final SettleModePair settleModePair;
+	// Messages are settled by the sender when it sends them, as in ReceiveAndDelete mode
+	private final boolean isSettledOnReceive;
 	private final RetryPolicy retryPolicy;
 	private int prefetchCount;
 	private String sessionId;
@@ -103,12 +109,20 @@ public class CoreMessageReceiver extends ClientEntity implements IAmqpReceiver,
 	private CompletableFuture<Void> requestResponseLinkCreationFuture;
 	private CompletableFuture<Void> receiveLinkReopenFuture;
 	private CompletableFuture<Void> ensureLinkReopenFutureToWaitOn;
-	private final Runnable timedOutUpdateStateRequestsDaemon;
-	private final Runnable returnMesagesLoopDaemon;
+	private final AtomicInteger returnMessagesRequestCount;
+	private final PrefetchMemoryBudget prefetchMemoryBudget;
+	private final AtomicLong currentPrefetchedBytes;
+	private final AtomicBoolean isWaitingForPrefetchMemory;
+	private volatile long maxPrefetchBytes;
+	private volatile int averagePrefetchedMessageSize; // Zero until the first message is received
+	private volatile AdaptivePrefetchController adaptivePrefetchController; // Null unless adaptive prefetch is enabled
+	private long lastFlowWithoutCreditAtNanos; // Accessed only by the reactor thread, zero when no round trip is being measured
+	private volatile boolean isLazyMessageDecodingEnabled;
+	private final ConcurrentLinkedQueue<PendingDisposition> pendingDispositions;
+	private final AtomicBoolean isDispositionDispatchScheduled;
+	private final AtomicLong releasedLockExpiredMessageCount;
 	private final MessagingEntityType entityType;
 	private boolean shouldRetryLinkReopenOnTransientFailure = true;
-	private ScheduledFuture<?> updateStateRequestsTimeoutChecker;
-	private ScheduledFuture<?> returnMessagesLoopRunner;
 	
 	// TODO Change onReceiveComplete to handle empty deliveries. Change onError to retry updateState requests.
 	private CoreMessageReceiver(final MessagingFactory factory,
@@ -130,6 +144,7 @@ public class CoreMessageReceiver extends ClientEntity implements IAmqpReceiver,
 		this.isBrowsableSession = false;
 		this.prefetchCount = prefetchCount;
 		this.settleModePair = settleModePair;
+		this.isSettledOnReceive = settleModePair.getSenderSettleMode() == SenderSettleMode.SETTLED;
 		this.prefetchedMessages = new ConcurrentLinkedQueue<MessageWithDeliveryTag>();
 		this.linkClose = new CompletableFuture<Void>();
 		this.lastKnownLinkError = null;
@@ -145,83 +160,18 @@ public class CoreMessageReceiver extends ClientEntity implements IAmqpReceiver,
 		this.creditNeededtoServePendingReceives = new AtomicInteger();
 		this.currentPrefetechedMessagesCount = new AtomicInteger();
 		this.entityType = entityType;
-		
-		this.timedOutUpdateStateRequestsDaemon = new Runnable() {
-			@Override
-			public void run() {
-			    try
-			    {
-			    	if (CoreMessageReceiver.this.getIsClosed())
-			    	{
-			    		CoreMessageReceiver.this.updateStateRequestsTimeoutChecker.cancel(true);
-			    		return;
-			    	}
-			    	
-			        TRACE_LOGGER.trace("Starting '{}' core message receiver's internal loop to complete timed out update state requests.", CoreMessageReceiver.this.receivePath);
-			        for(Map.Entry<String, UpdateStateWorkItem> entry : CoreMessageReceiver.this.pendingUpdateStateRequests.entrySet())
-	                {
-	                    Duration remainingTime = entry.getValue().getTimeoutTracker().remaining();
-	                    if(remainingTime.isZero() || remainingTime.isNegative())
-	                    {
-	                        CoreMessageReceiver.this.pendingUpdateStateRequests.remove(entry.getKey());
-	                        Exception exception = entry.getValue().getLastKnownException();
-	                        if(exception == null)
-	                        {
-	                            exception = new TimeoutException("Request timed out.");
-	                        }
-	                        TRACE_LOGGER.error("UpdateState request timed out. Delivery:{}", entry.getKey(), exception);
-	                        AsyncUtil.completeFutureExceptionally(entry.getValue().getWork(), exception);
-	                    }
-	                }
-			        TRACE_LOGGER.trace("'{}' core message receiver's internal loop to complete timed out update state requests stopped.", CoreMessageReceiver.this.receivePath);
-			    }
-			    catch(Throwable e)
-			    {
-			        // Shouldn't throw any exception for the executor to run multiple times.. Should never come here
-			    }
-			}
-		};
-		
-		// CONTRACT: message should be delivered to the caller of MessageReceiver.receive() only from prefetched messages
-		this.returnMesagesLoopDaemon = new Runnable() {
-            @Override
-            public void run() {
-                try
-                {
-                	if (CoreMessageReceiver.this.getIsClosed())
-			    	{
-			    		CoreMessageReceiver.this.returnMessagesLoopRunner.cancel(true);
-			    		return;
-			    	}
-                	
-                    TRACE_LOGGER.trace("Starting '{}' core message receiver's internal loop to return messages to waiting clients.", CoreMessageReceiver.this.receivePath);
-                    while(!CoreMessageReceiver.this.prefetchedMessages.isEmpty())
-                    {
-                        ReceiveWorkItem currentReceive = CoreMessageReceiver.this.pendingReceives.poll();
-                        if (currentReceive != null)
-                        {
-                            if(!currentReceive.getWork().isDone())
-                            {
-                                TRACE_LOGGER.debug("Returning the message received from '{}' to a pending receive request", CoreMessageReceiver.this.receivePath);
-                                currentReceive.cancelTimeoutTask(false);
-                                List<MessageWithDeliveryTag> messages = CoreMessageReceiver.this.receiveCore(currentReceive.getMaxMessageCount());
-                                CoreMessageReceiver.this.reduceCreditForCompletedReceiveRequest(currentReceive.getMaxMessageCount());
-                                AsyncUtil.completeFuture(currentReceive.getWork(), messages);
-                            }
-                        }
-                        else
-                        {
-                            break;
-                        }
-                    }
-                    TRACE_LOGGER.trace("'{}' core message receiver's internal loop to return messages to waiting clients stopped.", CoreMessageReceiver.this.receivePath);
-                }
-                catch(Throwable e)
-                {
-                    // Shouldn't throw any exception for the executor to run multiple times.. Should never come here
-                }
-            }
-        };
+		this.returnMessagesRequestCount = new AtomicInteger();
+		this.prefetchMemoryBudget = factory.getPrefetchMemoryBudget();
+		this.currentPrefetchedBytes = new AtomicLong();
+		this.isWaitingForPrefetchMemory = new AtomicBoolean(false);
+		this.maxPrefetchBytes = Long.MAX_VALUE;
+		this.averagePrefetchedMessageSize = 0;
+		this.adaptivePrefetchController = null;
+		this.lastFlowWithoutCreditAtNanos = 0;
+		this.isLazyMessageDecodingEnabled = false;
+		this.pendingDispositions = new ConcurrentLinkedQueue<PendingDisposition>();
+		this.isDispositionDispatchScheduled = new AtomicBoolean(false);
+		this.releasedLockExpiredMessageCount = new AtomicLong();
 	}
 
 	// Connection has to be associated with Reactor before Creating a receiver on it.
@@ -256,6 +206,18 @@ public class CoreMessageReceiver extends ClientEntity implements IAmqpReceiver,
 			final int prefetchCount,
 			final SettleModePair settleModePair,
 			final MessagingEntityType entityType)
+	{
+	    return create(factory, name, recvPath, prefetchCount, Long.MAX_VALUE, settleModePair, entityType);
+	}
+	
+	public static CompletableFuture<CoreMessageReceiver> create(
+			final MessagingFactory factory, 
+			final String name, 
+			final String recvPath,
+			final int prefetchCount,
+			final long maxPrefetchBytes,
+			final SettleModePair settleModePair,
+			final MessagingEntityType entityType)
 	{
 	    TRACE_LOGGER.info("Creating core message receiver to '{}'", recvPath);
 		CoreMessageReceiver msgReceiver = new CoreMessageReceiver(
@@ -266,6 +228,7 @@ public class CoreMessageReceiver extends ClientEntity implements IAmqpReceiver,
 				prefetchCount,
 				settleModePair,
 				entityType);
+		msgReceiver.maxPrefetchBytes = maxPrefetchBytes;
 		return msgReceiver.createLink();
 	}
 	
@@ -278,6 +241,20 @@ public class CoreMessageReceiver extends ClientEntity implements IAmqpReceiver,
 			final int prefetchCount,
 			final SettleModePair settleModePair,
 			final MessagingEntityType entityType)
+	{
+	    return create(factory, name, recvPath, sessionId, isBrowsableSession, prefetchCount, Long.MAX_VALUE, settleModePair, entityType);
+	}
+	
+	public static CompletableFuture<CoreMessageReceiver> create(
+			final MessagingFactory factory, 
+			final String name, 
+			final String recvPath,
+			final String sessionId,
+			final boolean isBrowsableSession,
+			final int prefetchCount,
+			final long maxPrefetchBytes,
+			final SettleModePair settleModePair,
+			final MessagingEntityType entityType)
 	{
 	    TRACE_LOGGER.info("Creating core session receiver to '{}', sessionId '{}', browseonly session '{}'", recvPath, sessionId, isBrowsableSession);
 		CoreMessageReceiver msgReceiver = new CoreMessageReceiver(
@@ -288,6 +265,7 @@ public class CoreMessageReceiver extends ClientEntity implements IAmqpReceiver,
 				prefetchCount,
 				settleModePair,
 				entityType);
+		msgReceiver.maxPrefetchBytes = maxPrefetchBytes;
 		msgReceiver.isSessionReceiver = true;
 		msgReceiver.isBrowsableSession = isBrowsableSession;
 		return msgReceiver.createLink();
@@ -477,17 +455,206 @@ public class CoreMessageReceiver extends ClientEntity implements IAmqpReceiver,
         }
     }
 
+	// CONTRACT: message should be delivered to the caller of MessageReceiver.receive() only from prefetched messages
+	// Called whenever a message is prefetched or a receive request is added. Only one thread returns messages at a time, as a receive request
+	// polled by one thread must not find its messages taken by another. A thread that finds another one returning messages leaves a request
+	// for it to go around once more, so no message or receive request is left waiting.
+	private void returnMessagesToPendingReceives()
+	{
+	    if (this.returnMessagesRequestCount.getAndIncrement() != 0)
+	    {
+	        return;
+	    }
+	    
+	    int requestCount = 1;
+	    long releasedCountBefore = this.releasedLockExpiredMessageCount.get();
+	    do
+	    {
+	        while(!this.prefetchedMessages.isEmpty())
+	        {
+	            if(this.releaseLockExpiredMessageAtHead())
+	            {
+	                continue;
+	            }
+	            
+	            ReceiveWorkItem currentReceive = this.pendingReceives.poll();
+	            if (currentReceive == null)
+	            {
+	                break;
+	            }
+	            
+	            if(!currentReceive.getWork().isDone())
+	            {
+	                TRACE_LOGGER.debug("Returning the message received from '{}' to a pending receive request", this.receivePath);
+	                currentReceive.cancelTimeoutTask(false);
+	                List<MessageWithDeliveryTag> messages = this.receiveCore(currentReceive.getMaxMessageCount());
+	                this.reduceCreditForCompletedReceiveRequest(currentReceive.getMaxMessageCount());
+	                if(this.isLazyMessageDecodingEnabled && messages != null)
+	                {
+	                    AsyncUtil.run(() -> this.decodeMessagesAndCompleteReceive(currentReceive, messages));
+	                }
+	                else
+	                {
+	                    AsyncUtil.completeFuture(currentReceive.getWork(), messages);
+	                }
+	                this.onMessagesReturned(messages == null ? 0 : messages.size());
+	            }
+	        }
+	        
+	        requestCount = this.returnMessagesRequestCount.addAndGet(-requestCount);
+	    }
+	    while(requestCount != 0);
+	    
+	    this.reportReleasedLockExpiredMessages(releasedCountBefore);
+	}
+	
+	// Messages prefetched and not yet returned to receive requests. Not exact, as the count is updated separately from the prefetched messages.
+	public int getPrefetchedMessageCount()
+	{
+	    return this.currentPrefetechedMessagesCount.get();
+	}
+	
+	// Number of prefetched messages released instead of being returned to receive requests, as their locks had expired or were about to expire
+	public long getReleasedLockExpiredMessageCount()
+	{
+	    return this.releasedLockExpiredMessageCount.get();
+	}
+	
+	// Releases the first prefetched message if its lock is about to expire, so receive requests only wait for messages that can be returned
+	private boolean releaseLockExpiredMessageAtHead()
+	{
+	    MessageWithDeliveryTag firstMessage = this.prefetchedMessages.peek();
+	    // Messages decoded lazily are checked after they are decoded
+	    if(this.isSettledOnReceive || firstMessage == null || !firstMessage.isDecoded() || !this.isMessageLockAboutToExpire(firstMessage, System.currentTimeMillis()))
+	    {
+	        return false;
+	    }
+	    
+	    // Prefetched messages might have been cleared meanwhile
+	    if(this.prefetchedMessages.remove(firstMessage))
+	    {
+	        this.currentPrefetechedMessagesCount.decrementAndGet();
+	        this.releasePrefetchedBytes(firstMessage.getEncodedSize());
+	        this.releaseLockExpiredMessage(firstMessage);
+	    }
+	    
+	    return true;
+	}
+	
+	// A lock that had less than the margin left when the message arrived isn't trusted, as the clock of this machine may be ahead of the service's.
+	// Such messages are returned as usual rather than never being returned at all.
+	private boolean isMessageLockAboutToExpire(MessageWithDeliveryTag message, long currentTimeInMillis)
+	{
+	    long lockedUntil = this.getMessageLockedUntilMillis(message.getMessage());
+	    return lockedUntil != 0 && lockedUntil - message.getReceivedAtMillis() > LOCK_EXPIRY_MARGIN_IN_MILLIS && currentTimeInMillis >= lockedUntil - LOCK_EXPIRY_MARGIN_IN_MILLIS;
+	}
+	
+	private void reportReleasedLockExpiredMessages(long releasedCountBefore)
+	{
+	    long releasedCount = this.releasedLockExpiredMessageCount.get() - releasedCountBefore;
+	    if(releasedCount > 0)
+	    {
+	        TRACE_LOGGER.warn("Released '{}' prefetched messages from '{}' as their locks expired before they could be received. '{}' released so far. Consider a smaller prefetch count.",
+	                releasedCount, this.receivePath, this.releasedLockExpiredMessageCount.get());
+	    }
+	}
+	
+	private void releaseLockExpiredMessage(MessageWithDeliveryTag message)
+	{
+	    TRACE_LOGGER.debug("Releasing prefetched message with delivery tag '{}' from '{}' as its lock is about to expire", CoreMessageReceiver.toDeliveryTagKey(message.getDeliveryTag()), this.receivePath);
+	    this.releasedLockExpiredMessageCount.incrementAndGet();
+	    this.releasePrefetchedMessage(message.getDeliveryTag());
+	}
+	
+	// Runs on the internal thread pool, off the reactor thread. Messages that can't be decoded are released, as they are when decoding on the reactor thread fails.
+	private void decodeMessagesAndCompleteReceive(ReceiveWorkItem receiveWorkItem, List<MessageWithDeliveryTag> messages)
+	{
+	    long releasedCountBefore = this.releasedLockExpiredMessageCount.get();
+	    long currentTimeInMillis = System.currentTimeMillis();
+	    Iterator<MessageWithDeliveryTag> messageIterator = messages.iterator();
+	    while(messageIterator.hasNext())
+	    {
+	        MessageWithDeliveryTag message = messageIterator.next();
+	        if(message.isDecoded())
+	        {
+	            continue;
+	        }
+	        
+	        try
+	        {
+	            this.observeMessageLock(message.getMessage());
+	        }
+	        catch(Exception e)
+	        {
+	            messageIterator.remove();
+	            TRACE_LOGGER.warn("Decoding message with delivery tag '{}' from '{}', session '{}' failed with unexpected exception.", CoreMessageReceiver.toDeliveryTagKey(message.getDeliveryTag()), this.receivePath, this.sessionId, e);
+	            this.releasePrefetchedMessage(message.getDeliveryTag());
+	            continue;
+	        }
+	        
+	        if(this.isMessageLockAboutToExpire(message, currentTimeInMillis))
+	        {
+	            messageIterator.remove();
+	            this.releaseLockExpiredMessage(message);
+	        }
+	    }
+	    
+	    this.reportReleasedLockExpiredMessages(releasedCountBefore);
+	    
+	    receiveWorkItem.getWork().complete(messages.isEmpty() ? null : messages);
+	}
+	
+	private void releasePrefetchedMessage(byte[] deliveryTag)
+	{
+	    if(this.settleModePair.getSenderSettleMode() == SenderSettleMode.SETTLED)
+	    {
+	        // Delivery was settled when it arrived
+	        return;
+	    }
+	    
+	    try
+	    {
+	        this.underlyingFactory.scheduleOnReactorThread(new DispatchHandler()
+	        {
+	            @Override
+	            public void onEvent()
+	            {
+	                Delivery delivery = CoreMessageReceiver.this.tagsToDeliveriesMap.remove(CoreMessageReceiver.toDeliveryTagKey(deliveryTag));
+	                if(delivery != null)
+	                {
+	                    delivery.disposition(Released.getInstance());
+	                    delivery.settle();
+	                }
+	            }
+	        });
+	    }
+	    catch (IOException ioException)
+	    {
+	        TRACE_LOGGER.warn("Releasing a prefetched message from '{}' failed. Message will be received again when its lock expires.", this.receivePath, ioException);
+	    }
+	}
+	
 	private List<MessageWithDeliveryTag> receiveCore(int messageCount)
 	{
 		List<MessageWithDeliveryTag> returnMessages = null;
 		MessageWithDeliveryTag currentMessage = this.prefetchedMessages.poll();
 		int returnedMessageCount = 0;
+		long returnedBytes = 0;
+		long currentTimeInMillis = System.currentTimeMillis();
 		while (currentMessage != null) 
 		{
 		    this.currentPrefetechedMessagesCount.decrementAndGet();
+		    returnedBytes += currentMessage.getEncodedSize();
+		    if (!this.isSettledOnReceive && currentMessage.isDecoded() && this.isMessageLockAboutToExpire(currentMessage, currentTimeInMillis))
+		    {
+		        this.releaseLockExpiredMessage(currentMessage);
+		        currentMessage = this.prefetchedMessages.poll();
+		        continue;
+		    }
+		    
 			if (returnMessages == null)
 			{
-				returnMessages = new LinkedList<MessageWithDeliveryTag>();
+				returnMessages = new ArrayList<MessageWithDeliveryTag>(Math.min(messageCount, this.currentPrefetechedMessagesCount.get() + 1));
 			}
 
 			returnMessages.add(currentMessage);
@@ -499,15 +666,84 @@ public class CoreMessageReceiver extends ClientEntity implements IAmqpReceiver,
 			currentMessage = this.prefetchedMessages.poll();
 		}
 		
+		this.releasePrefetchedBytes(returnedBytes);
 		return returnMessages;
 	}
 
+	public long getMaxPrefetchBytes()
+	{
+		return this.maxPrefetchBytes;
+	}
+	
+	// Credit is issued only as far as both this limit and the factory's prefetch memory budget allow. Messages already prefetched are not affected by a lower limit.
+	public void setMaxPrefetchBytes(final long value)
+	{
+		if(value <= 0)
+		{
+			throw new IllegalArgumentException("Maximum prefetch bytes must be positive.");
+		}
+		
+		TRACE_LOGGER.info("Setting maximum prefetch bytes to '{}' on recieve link to '{}'", value, this.receivePath);
+		this.maxPrefetchBytes = value;
+	}
+	
+	public boolean isLazyMessageDecodingEnabled()
+	{
+		return this.isLazyMessageDecodingEnabled;
+	}
+	
+	// When enabled, the reactor thread only copies received messages out of their deliveries. Messages are decoded on the internal thread pool
+	// when they are returned to receive requests. Messages already prefetched are not affected.
+	public void setLazyMessageDecodingEnabled(final boolean enabled)
+	{
+		TRACE_LOGGER.info("Setting lazy message decoding to '{}' on recieve link to '{}'", enabled, this.receivePath);
+		this.isLazyMessageDecodingEnabled = enabled;
+	}
+	
 	public int getPrefetchCount()
 	{
 		synchronized (this.prefetchCountSync)
 		{
-			return this.prefetchCount;
+			AdaptivePrefetchController controller = this.adaptivePrefetchController;
+			return controller == null ? this.prefetchCount : controller.getMaxPrefetchCount();
+		}
+	}
+	
+	public boolean isAdaptivePrefetchEnabled()
+	{
+		return this.adaptivePrefetchController != null;
+	}
+	
+	// When enabled, the prefetch count is the upper bound of a prefetch count tuned from how fast messages are received, the time it takes for credit to bring
+	// a message and the lock duration of messages. Tuning starts from one message.
+	public void setAdaptivePrefetchEnabled(final boolean enabled) throws ServiceBusException
+	{
+		this.throwIfInUnusableState();
+		synchronized (this.prefetchCountSync)
+		{
+			AdaptivePrefetchController controller = this.adaptivePrefetchController;
+			if(enabled == (controller != null))
+			{
+				return;
+			}
+			
+			if(enabled)
+			{
+				controller = new AdaptivePrefetchController(this.prefetchCount, System.nanoTime());
+				this.adaptivePrefetchController = controller;
+				this.prefetchCount = controller.getTargetPrefetchCount();
+			}
+			else
+			{
+				this.adaptivePrefetchController = null;
+				this.prefetchCount = controller.getMaxPrefetchCount();
+			}
+			
+			TRACE_LOGGER.info("Setting adaptive prefetch to '{}' on recieve link to '{}'", enabled, this.receivePath);
 		}
+		
+		// Credit already issued is not taken back when prefetch count shrinks. Messages it brings are received before more credit is issued.
+		this.flowCreditAfterPrefetchCountChange();
 	}
 	
 
@@ -539,8 +775,17 @@ public class CoreMessageReceiver extends ClientEntity implements IAmqpReceiver,
 		final int deltaPrefetchCount;
 		synchronized (this.prefetchCountSync)
 		{
-			deltaPrefetchCount = value - this.prefetchCount;
-			this.prefetchCount = value;
+			AdaptivePrefetchController controller = this.adaptivePrefetchController;
+			int newPrefetchCount = value;
+			if(controller != null)
+			{
+				// Prefetch count is the upper bound of the tuned prefetch count
+				controller.setMaxPrefetchCount(value);
+				newPrefetchCount = controller.getTargetPrefetchCount();
+			}
+			
+			deltaPrefetchCount = newPrefetchCount - this.prefetchCount;
+			this.prefetchCount = newPrefetchCount;
 			TRACE_LOGGER.info("Setting prefetch count to '{}' on recieve link to '{}'", value, this.receivePath);
 		}
 		
@@ -553,7 +798,7 @@ public class CoreMessageReceiver extends ClientEntity implements IAmqpReceiver,
 	                @Override
 	                public void onEvent()
 	                {
-	                    sendFlow(deltaPrefetchCount);
+	                    sendFlow(CoreMessageReceiver.this.limitCreditByPrefetchMemory(deltaPrefetchCount));
 	                }
 	            });
 	        }
@@ -585,7 +830,7 @@ public class CoreMessageReceiver extends ClientEntity implements IAmqpReceiver,
             timeout = ZERO_TIMEOUT_APPROXIMATION;
         }
 		
-        Timer.schedule(
+        ScheduledFuture<?> timeoutTask = Timer.schedule(
                 new Runnable()
                 {
                     public void run()
@@ -599,7 +844,9 @@ public class CoreMessageReceiver extends ClientEntity implements IAmqpReceiver,
                     }
                 },
                 timeout,
-                TimerType.OneTimeRun);
+                TimerType.CoarseOneTimeRun);
+        receiveWorkItem.setTimeoutTask(timeoutTask);
+        this.returnMessagesToPendingReceives();
         
         this.ensureLinkIsOpen().thenRun(() -> {this.addCredit(receiveWorkItem);});
 		return onReceive;
@@ -643,11 +890,6 @@ public class CoreMessageReceiver extends ClientEntity implements IAmqpReceiver,
 			if (this.linkOpen != null && !this.linkOpen.getWork().isDone())
 			{
 				AsyncUtil.completeFuture(this.linkOpen.getWork(), this);
-				
-				// As all update state requests have the same timeout, one timer is better than having one timer per request
-				this.updateStateRequestsTimeoutChecker = Timer.schedule(timedOutUpdateStateRequestsDaemon, CoreMessageReceiver.UPDATE_STATE_REQUESTS_DAEMON_WAKE_UP_INTERVAL, TimerType.RepeatRun);
-				// Scheduling it as a separate thread that wakes up at regular very short intervals.. Doesn't wait on incoming receive requests from callers or incoming deliveries from reactor 
-				this.returnMessagesLoopRunner = Timer.schedule(returnMesagesLoopDaemon, CoreMessageReceiver.RETURN_MESSAGES_DAEMON_WAKE_UP_INTERVAL, TimerType.RepeatRun);
 			}
 			
 			if(this.receiveLinkReopenFuture != null && !this.receiveLinkReopenFuture.isDone())
@@ -659,7 +901,7 @@ public class CoreMessageReceiver extends ClientEntity implements IAmqpReceiver,
 			
 			this.underlyingFactory.getRetryPolicy().resetRetryCount(this.underlyingFactory.getClientId());
 
-			this.sendFlow(this.prefetchCount - this.currentPrefetechedMessagesCount.get());
+			this.sendFlow(this.limitCreditByPrefetchMemory(this.prefetchCount - this.currentPrefetechedMessagesCount.get()));
 			
 			TRACE_LOGGER.debug("receiverPath:{}, linkname:{}, updated-link-credit:{}, sentCredits:{}",
                     this.receivePath, this.receiveLink.getName(), this.receiveLink.getCredit(), this.prefetchCount);
@@ -685,39 +927,91 @@ public class CoreMessageReceiver extends ClientEntity implements IAmqpReceiver,
 		}
 	}
 
+	// Deliveries of a link whose sender settles them are always new messages, which are never disposed or tracked. So they bypass the delivery tag
+	// conversion and lookups and the lock checks of messages received in PeekLock mode, and are settled as soon as they are read. They are otherwise
+	// prefetched and returned like any other message.
+	private void onSettledDeliveryReceived(Delivery delivery)
+	{
+	    try
+	    {
+	        this.onFirstMessageAfterFlow();
+	        MessageWithDeliveryTag prefetchedMessage;
+	        if(this.isLazyMessageDecodingEnabled)
+	        {
+	            byte[] encodedMessage = BufferPool.acquire(delivery.pending());
+	            int messageSize = Util.readEncodedMessageFromDelivery(this.receiveLink, delivery, encodedMessage);
+	            prefetchedMessage = new MessageWithDeliveryTag(encodedMessage, messageSize, delivery.getTag());
+	        }
+	        else
+	        {
+	            int messageSize = delivery.pending();
+	            prefetchedMessage = new MessageWithDeliveryTag(Util.readMessageFromDelivery(this.receiveLink, delivery), delivery.getTag(), messageSize);
+	        }
+	        
+	        this.currentPrefetechedMessagesCount.incrementAndGet();
+	        this.reservePrefetchedBytes(prefetchedMessage.getEncodedSize());
+	        this.prefetchedMessages.add(prefetchedMessage);
+	        this.returnMessagesToPendingReceives();
+	    }
+	    catch(Exception e)
+	    {
+	        // The service has already deleted the message, so it is lost
+	        TRACE_LOGGER.warn("Reading message from a settled delivery from '{}' failed with unexpected exception. Message is lost.", this.receivePath, e);
+	    }
+	    finally
+	    {
+	        delivery.disposition(Accepted.getInstance());
+	        delivery.settle();
+	    }
+	}
+	
 	@Override
 	public void onReceiveComplete(Delivery delivery)
 	{
 	    this.underlyingFactory.getRetryPolicy().resetRetryCount(this.getClientId());
+	    if(this.isSettledOnReceive)
+	    {
+	        this.onSettledDeliveryReceived(delivery);
+	        return;
+	    }
+	    
 		byte[] deliveryTag = delivery.getTag();
-		String deliveryTagAsString  = StringUtil.convertBytesToString(delivery.getTag());
-		TRACE_LOGGER.debug("Received a delivery '{}' from '{}'", deliveryTagAsString, this.receivePath);
-		if(deliveryTag == null || deliveryTag.length == 0 || !this.tagsToDeliveriesMap.containsKey(deliveryTagAsString))
+		Binary deliveryTagKey = CoreMessageReceiver.toDeliveryTagKey(deliveryTag);
+		TRACE_LOGGER.debug("Received a delivery '{}' from '{}'", deliveryTagKey, this.receivePath);
+		if(deliveryTag == null || deliveryTag.length == 0 || !this.tagsToDeliveriesMap.containsKey(deliveryTagKey))
 		{
 		    TRACE_LOGGER.debug("Received a message from '{}'. Adding to prefecthed messages.", this.receivePath);
 		    try
 		    {
-		        Message message = Util.readMessageFromDelivery(receiveLink, delivery);
+		        this.onFirstMessageAfterFlow();
+		        MessageWithDeliveryTag prefetchedMessage;
+		        if(this.isLazyMessageDecodingEnabled)
+		        {
+		            byte[] encodedMessage = BufferPool.acquire(delivery.pending());
+		            int messageSize = Util.readEncodedMessageFromDelivery(receiveLink, delivery, encodedMessage);
+		            prefetchedMessage = new MessageWithDeliveryTag(encodedMessage, messageSize, deliveryTag);
+		        }
+		        else
+		        {
+		            int messageSize = delivery.pending();
+		            Message message = Util.readMessageFromDelivery(receiveLink, delivery);
+		            this.observeMessageLock(message);
+		            prefetchedMessage = new MessageWithDeliveryTag(message, deliveryTag, messageSize);
+		        }
 	            
-	            if(this.settleModePair.getSenderSettleMode() == SenderSettleMode.SETTLED)
-	            {
-	                // No op. Delivery comes settled from the sender
-	                delivery.disposition(Accepted.getInstance());
-	                delivery.settle();
-	            }
-	            else
-	            {
-	                this.tagsToDeliveriesMap.put(StringUtil.convertBytesToString(delivery.getTag()), delivery);
-	                receiveLink.advance();
-	            }
+	            // Deliveries settled by the sender never get here, they are handled by onSettledDeliveryReceived
+	            this.tagsToDeliveriesMap.put(deliveryTagKey, delivery);
+	            receiveLink.advance();
 	            
 	            // Accuracy of count is not that important. So not making those two operations atomic
                 this.currentPrefetechedMessagesCount.incrementAndGet();
-	            this.prefetchedMessages.add(new MessageWithDeliveryTag(message, delivery.getTag()));
+                this.reservePrefetchedBytes(prefetchedMessage.getEncodedSize());
+	            this.prefetchedMessages.add(prefetchedMessage);
+	            this.returnMessagesToPendingReceives();
 		    }
 		    catch(Exception e)
 		    {
-		        TRACE_LOGGER.warn("Reading message from delivery '{}' from '{}', session '{}' failed with unexpected exception.", deliveryTagAsString, this.receivePath, this.sessionId, e);
+		        TRACE_LOGGER.warn("Reading message from delivery '{}' from '{}', session '{}' failed with unexpected exception.", deliveryTagKey, this.receivePath, this.sessionId, e);
 		        delivery.disposition(Released.getInstance());
                 delivery.settle();
                 return;
@@ -726,24 +1020,24 @@ public class CoreMessageReceiver extends ClientEntity implements IAmqpReceiver,
 		else
 		{
 			DeliveryState remoteState = delivery.getRemoteState();
-			TRACE_LOGGER.debug("Received a delivery '{}' with state '{}' from '{}'", deliveryTagAsString, remoteState, this.receivePath);
+			TRACE_LOGGER.debug("Received a delivery '{}' with state '{}' from '{}'", deliveryTagKey, remoteState, this.receivePath);
 			if(remoteState instanceof Outcome)
 			{
 				Outcome remoteOutcome = (Outcome)remoteState;
-				UpdateStateWorkItem matchingUpdateStateWorkItem = this.pendingUpdateStateRequests.get(deliveryTagAsString);
+				UpdateStateWorkItem matchingUpdateStateWorkItem = this.pendingUpdateStateRequests.get(deliveryTagKey);
 				if(matchingUpdateStateWorkItem != null)
 				{
 					// This comparison is ugly. Using it for the lack of equals operation on Outcome classes
 					if(remoteOutcome.getClass().getName().equals(matchingUpdateStateWorkItem.outcome.getClass().getName()))
 					{
-					    TRACE_LOGGER.debug("Completing a pending updateState operation for delivery '{}' from '{}'", deliveryTagAsString, this.receivePath);
-						this.completePendingUpdateStateWorkItem(delivery, deliveryTagAsString, matchingUpdateStateWorkItem, null);						
+					    TRACE_LOGGER.debug("Completing a pending updateState operation for delivery '{}' from '{}'", deliveryTagKey, this.receivePath);
+						this.completePendingUpdateStateWorkItem(delivery, deliveryTagKey, matchingUpdateStateWorkItem, null);						
 					}
 					else
 					{
 //						if(matchingUpdateStateWorkItem.expectedOutcome instanceof Accepted)
 //						{
-					        TRACE_LOGGER.warn("Received delivery '{}' state '{}' doesn't match expected state '{}'", deliveryTagAsString, remoteState, matchingUpdateStateWorkItem.outcome);
+					        TRACE_LOGGER.warn("Received delivery '{}' state '{}' doesn't match expected state '{}'", deliveryTagKey, remoteState, matchingUpdateStateWorkItem.outcome);
 							// Complete requests
 							if(remoteOutcome instanceof Rejected)
 							{
@@ -760,14 +1054,14 @@ public class CoreMessageReceiver extends ClientEntity implements IAmqpReceiver,
 								Duration retryInterval = this.retryPolicy.getNextRetryInterval(this.getClientId(), exception, matchingUpdateStateWorkItem.getTimeoutTracker().remaining());
 								if (retryInterval == null)
 								{
-								    TRACE_LOGGER.error("Completing pending updateState operation for delivery '{}' with exception", deliveryTagAsString, exception);
-									this.completePendingUpdateStateWorkItem(delivery, deliveryTagAsString, matchingUpdateStateWorkItem, exception);
+								    TRACE_LOGGER.error("Completing pending updateState operation for delivery '{}' with exception", deliveryTagKey, exception);
+									this.completePendingUpdateStateWorkItem(delivery, deliveryTagKey, matchingUpdateStateWorkItem, exception);
 								}
 								else
 								{
 									matchingUpdateStateWorkItem.setLastKnownException(exception);
 									// Retry after retry interval
-									TRACE_LOGGER.debug("Pending updateState operation for delivery '{}' will be retried after '{}'", deliveryTagAsString, retryInterval);
+									TRACE_LOGGER.debug("Pending updateState operation for delivery '{}' will be retried after '{}'", deliveryTagKey, retryInterval);
 									try
 									{
 										this.underlyingFactory.scheduleOnReactorThread((int) retryInterval.toMillis(),
@@ -782,7 +1076,7 @@ public class CoreMessageReceiver extends ClientEntity implements IAmqpReceiver,
 									}
 									catch (IOException ioException)
 									{
-										this.completePendingUpdateStateWorkItem(delivery, deliveryTagAsString, matchingUpdateStateWorkItem,
+										this.completePendingUpdateStateWorkItem(delivery, deliveryTagKey, matchingUpdateStateWorkItem,
 												new ServiceBusException(false, "Operation failed while scheduling a retry on Reactor, see cause for more details.", ioException));
 									}
 								}
@@ -790,14 +1084,14 @@ public class CoreMessageReceiver extends ClientEntity implements IAmqpReceiver,
 							else if (remoteOutcome instanceof Released)
 							{
 							    Exception exception = new OperationCancelledException(remoteOutcome.toString());
-							    TRACE_LOGGER.error("Completing pending updateState operation for delivery '{}' with exception", deliveryTagAsString, exception);
-								this.completePendingUpdateStateWorkItem(delivery, deliveryTagAsString, matchingUpdateStateWorkItem, exception);
+							    TRACE_LOGGER.error("Completing pending updateState operation for delivery '{}' with exception", deliveryTagKey, exception);
+								this.completePendingUpdateStateWorkItem(delivery, deliveryTagKey, matchingUpdateStateWorkItem, exception);
 							}
 							else 
 							{
 							    Exception exception = new ServiceBusException(false, remoteOutcome.toString());
-							    TRACE_LOGGER.error("Completing pending updateState operation for delivery '{}' with exception", deliveryTagAsString, exception);
-								this.completePendingUpdateStateWorkItem(delivery, deliveryTagAsString, matchingUpdateStateWorkItem, exception);
+							    TRACE_LOGGER.error("Completing pending updateState operation for delivery '{}' with exception", deliveryTagKey, exception);
+								this.completePendingUpdateStateWorkItem(delivery, deliveryTagKey, matchingUpdateStateWorkItem, exception);
 							}
 //						}
 					}
@@ -819,10 +1113,11 @@ public class CoreMessageReceiver extends ClientEntity implements IAmqpReceiver,
 	{
 	    this.creditToFlow.set(0);
 	    this.cancelSASTokenRenewTimer();
-	    if(this.settleModePair.getSenderSettleMode() == SenderSettleMode.UNSETTLED)
+	    if(this.settleModePair.getSenderSettleMode() == SenderSettleMode.UNSETTLED || this.getIsClosingOrClosed())
 	    {
 	        this.prefetchedMessages.clear();
 	        this.currentPrefetechedMessagesCount.set(0);
+	        this.releasePrefetchedBytes(this.currentPrefetchedBytes.get());
 	        this.tagsToDeliveriesMap.clear();
 	    }
 
@@ -883,36 +1178,119 @@ public class CoreMessageReceiver extends ClientEntity implements IAmqpReceiver,
     }
 	
 	private void addCredit(ReceiveWorkItem receiveWorkItem)
+	{
+	    try
+	    {
+	        this.flowCredit();
+	    }
+	    catch (IOException ioException)
+	    {
+	        this.pendingReceives.remove(receiveWorkItem);
+	        this.reduceCreditForCompletedReceiveRequest(receiveWorkItem.getMaxMessageCount());
+	        receiveWorkItem.getWork().completeExceptionally(generateDispatacherSchedulingFailedException("completeMessage", ioException));
+	        receiveWorkItem.cancelTimeoutTask(false);
+	    }
+	}
+	
+	private void flowCredit() throws IOException
 	{
 	    // Timed out receive requests and batch receive requests completed with less than maxCount messages might have sent more credit
 	    // than consumed by the receiver resulting in excess credit at the service endpoint.
-	    int creditToFlowForWorkItem = this.creditNeededtoServePendingReceives.get() - (this.receiveLink.getCredit() + this.currentPrefetechedMessagesCount.get() + this.creditToFlow.get()) + this.prefetchCount;
+	    int creditNeeded = this.creditNeededtoServePendingReceives.get() - (this.receiveLink.getCredit() + this.currentPrefetechedMessagesCount.get() + this.creditToFlow.get()) + this.prefetchCount;
+	    int creditToFlowForWorkItem = this.limitCreditByPrefetchMemory(creditNeeded);
 	    if(creditToFlowForWorkItem > 0)
 	    {
 	        int currentTotalCreditToSend = this.creditToFlow.addAndGet(creditToFlowForWorkItem);
-	        if(currentTotalCreditToSend >= this.prefetchCount || currentTotalCreditToSend >= CREDIT_FLOW_BATCH_SIZE)
+	        // Credit cut down by prefetch memory limits is sent right away, as it may never add up to a batch
+	        if(currentTotalCreditToSend >= this.prefetchCount || currentTotalCreditToSend >= CREDIT_FLOW_BATCH_SIZE || creditToFlowForWorkItem < creditNeeded)
 	        {
-	            try
+	            this.underlyingFactory.scheduleOnReactorThread(new DispatchHandler()
 	            {
-	                this.underlyingFactory.scheduleOnReactorThread(new DispatchHandler()
+	                @Override
+	                public void onEvent()
 	                {
-	                    @Override
-	                    public void onEvent()
-	                    {
-	                        // Send credit accumulated so far to make it less chat-ty
-	                        int accumulatedCredit = CoreMessageReceiver.this.creditToFlow.getAndSet(0);
-	                        sendFlow(accumulatedCredit);
-	                    }
-	                });
-	            }
-	            catch (IOException ioException)
-	            {
-	                this.pendingReceives.remove(receiveWorkItem);
-	                this.reduceCreditForCompletedReceiveRequest(receiveWorkItem.getMaxMessageCount());
-	                receiveWorkItem.getWork().completeExceptionally(generateDispatacherSchedulingFailedException("completeMessage", ioException));
-	                receiveWorkItem.cancelTimeoutTask(false);
-	            }
+	                    // Send credit accumulated so far to make it less chat-ty
+	                    int accumulatedCredit = CoreMessageReceiver.this.creditToFlow.getAndSet(0);
+	                    sendFlow(accumulatedCredit);
+	                }
+	            });
+	        }
+	    }
+	}
+	
+	// Credit is issued assuming messages to come are as large as the average message received so far. A receiver with nothing prefetched and no credit
+	// can always get one message, so messages larger than the limits are still received. If the factory's budget is what stops credit, the receiver
+	// flows credit again when other receivers release enough memory.
+	private int limitCreditByPrefetchMemory(int credit)
+	{
+	    long maxBytes = this.maxPrefetchBytes;
+	    if(credit <= 0 || (maxBytes == Long.MAX_VALUE && !this.prefetchMemoryBudget.isLimited()))
+	    {
+	        return credit;
+	    }
+	    
+	    long receiverAvailableBytes = maxBytes - this.currentPrefetchedBytes.get();
+	    long budgetAvailableBytes = this.prefetchMemoryBudget.getAvailableBytes();
+	    int outstandingCredit = this.receiveLink.getCredit() + this.creditToFlow.get();
+	    int averageMessageSize = this.averagePrefetchedMessageSize;
+	    long allowedCredit;
+	    if(averageMessageSize == 0)
+	    {
+	        // Nothing is known about message sizes yet, so ask for one message to find out
+	        allowedCredit = outstandingCredit == 0 ? 1 : 0;
+	    }
+	    else
+	    {
+	        allowedCredit = Math.min(receiverAvailableBytes, budgetAvailableBytes) / averageMessageSize - outstandingCredit;
+	    }
+	    
+	    if(allowedCredit <= 0 && outstandingCredit == 0)
+	    {
+	        if(this.currentPrefetechedMessagesCount.get() == 0)
+	        {
+	            allowedCredit = 1;
 	        }
+	        else if(budgetAvailableBytes < receiverAvailableBytes && this.isWaitingForPrefetchMemory.compareAndSet(false, true))
+	        {
+	            TRACE_LOGGER.debug("Prefetch memory budget used up. Receiver to '{}' waits for memory to be released before asking for more messages.", this.receivePath);
+	            this.prefetchMemoryBudget.waitForAvailableBytes(Math.max(1, averageMessageSize), this::onPrefetchMemoryAvailable);
+	        }
+	    }
+	    
+	    return (int)Math.max(0, Math.min(credit, allowedCredit));
+	}
+	
+	private void onPrefetchMemoryAvailable()
+	{
+	    this.isWaitingForPrefetchMemory.set(false);
+	    if(!this.getIsClosingOrClosed())
+	    {
+	        try
+	        {
+	            this.flowCredit();
+	        }
+	        catch (IOException ioException)
+	        {
+	            TRACE_LOGGER.warn("Flowing credit to '{}' after prefetch memory was released failed.", this.receivePath, ioException);
+	        }
+	    }
+	}
+	
+	private void reservePrefetchedBytes(int messageSize)
+	{
+	    this.currentPrefetchedBytes.addAndGet(messageSize);
+	    this.prefetchMemoryBudget.reserve(messageSize);
+	    // Only the reactor thread updates the average
+	    int averageMessageSize = this.averagePrefetchedMessageSize;
+	    this.averagePrefetchedMessageSize = averageMessageSize == 0 ? Math.max(1, messageSize) : Math.max(1, averageMessageSize + (messageSize - averageMessageSize) / 8);
+	}
+	
+	private void releasePrefetchedBytes(long bytes)
+	{
+	    if(bytes > 0)
+	    {
+	        this.currentPrefetchedBytes.addAndGet(-bytes);
+	        this.prefetchMemoryBudget.release(bytes);
 	    }
 	}
 	
@@ -920,12 +1298,99 @@ public class CoreMessageReceiver extends ClientEntity implements IAmqpReceiver,
 	{
 	    if(!this.isBrowsableSession && credits > 0)
 	    {
+	        if(this.adaptivePrefetchController != null && this.receiveLink.getCredit() == 0 && this.lastFlowWithoutCreditAtNanos == 0)
+	        {
+	            // Time to the next message is a round trip, as the service has nothing in flight for this link
+	            this.lastFlowWithoutCreditAtNanos = System.nanoTime();
+	        }
+	        
 	        this.receiveLink.flow(credits);
 	        TRACE_LOGGER.debug("Sent flow to the service. receiverPath:{}, linkname:{}, updated-link-credit:{}, sentCredits:{}",
 	                this.receivePath, this.receiveLink.getName(), this.receiveLink.getCredit(), credits);
 	    }	    
 	}
 
+	// Called from the reactor thread
+	private void onFirstMessageAfterFlow()
+	{
+	    long flowSentAt = this.lastFlowWithoutCreditAtNanos;
+	    if(flowSentAt != 0)
+	    {
+	        this.lastFlowWithoutCreditAtNanos = 0;
+	        AdaptivePrefetchController controller = this.adaptivePrefetchController;
+	        if(controller != null)
+	        {
+	            controller.onRoundTripMeasured(System.nanoTime() - flowSentAt);
+	        }
+	    }
+	}
+	
+	private void observeMessageLock(Message message)
+	{
+	    AdaptivePrefetchController controller = this.adaptivePrefetchController;
+	    if(controller != null)
+	    {
+	        long lockedUntil = this.getMessageLockedUntilMillis(message);
+	        if(lockedUntil != 0)
+	        {
+	            controller.onMessageLockObserved(lockedUntil - System.currentTimeMillis());
+	        }
+	    }
+	}
+	
+	// Zero if the message is not locked by itself
+	private long getMessageLockedUntilMillis(Message message)
+	{
+	    // Messages from sessions are locked by the session lock, which is renewed separately
+	    if(this.isSessionReceiver || this.isSettledOnReceive || message.getMessageAnnotations() == null || message.getMessageAnnotations().getValue() == null)
+	    {
+	        return 0;
+	    }
+	    
+	    Object lockedUntil = message.getMessageAnnotations().getValue().get(LOCKED_UNTIL_ANNOTATION);
+	    return lockedUntil instanceof Date ? ((Date)lockedUntil).getTime() : 0;
+	}
+	
+	// Called only from the loop returning messages to pending receives
+	private void onMessagesReturned(int messageCount)
+	{
+	    AdaptivePrefetchController controller = this.adaptivePrefetchController;
+	    if(controller == null || !controller.onMessagesReturned(messageCount, System.nanoTime()))
+	    {
+	        return;
+	    }
+	    
+	    synchronized (this.prefetchCountSync)
+	    {
+	        if(this.adaptivePrefetchController != controller)
+	        {
+	            return;
+	        }
+	        
+	        TRACE_LOGGER.debug("Adjusting prefetch count of recieve link to '{}' from '{}' to '{}'", this.receivePath, this.prefetchCount, controller.getTargetPrefetchCount());
+	        this.prefetchCount = controller.getTargetPrefetchCount();
+	    }
+	    
+	    this.flowCreditAfterPrefetchCountChange();
+	}
+	
+	private void flowCreditAfterPrefetchCountChange()
+	{
+	    if(this.receiveLink == null || this.getIsClosingOrClosed())
+	    {
+	        return;
+	    }
+	    
+	    try
+	    {
+	        this.flowCredit();
+	    }
+	    catch (IOException ioException)
+	    {
+	        TRACE_LOGGER.warn("Flowing credit to '{}' after prefetch count changed failed.", this.receivePath, ioException);
+	    }
+	}
+
 	private void scheduleLinkOpenTimeout(final TimeoutTracker timeout)
 	{
 		// timer to signal a timeout if exceeds the operationTimeout on MessagingFactory
@@ -1051,12 +1516,6 @@ public class CoreMessageReceiver extends ClientEntity implements IAmqpReceiver,
             
             this.cancelSASTokenRenewTimer();
             this.closeRequestResponseLink();
-            if (this.updateStateRequestsTimeoutChecker != null) {
-            	this.updateStateRequestsTimeoutChecker.cancel(false);
-            }
-            if (this.returnMessagesLoopRunner != null) {
-            	this.returnMessagesLoopRunner.cancel(false);
-            }
         }
 	}
 	
@@ -1135,34 +1594,34 @@ public class CoreMessageReceiver extends ClientEntity implements IAmqpReceiver,
 	    this.throwIfInUnusableState();
 		CompletableFuture<Void> completeMessageFuture = new CompletableFuture<Void>();
 		
-		String deliveryTagAsString = StringUtil.convertBytesToString(deliveryTag);
-        TRACE_LOGGER.debug("Updating message state of delivery '{}' to '{}'", deliveryTagAsString, outcome);
-        Delivery delivery = CoreMessageReceiver.this.tagsToDeliveriesMap.get(deliveryTagAsString);
+		Binary deliveryTagKey = CoreMessageReceiver.toDeliveryTagKey(deliveryTag);
+        TRACE_LOGGER.debug("Updating message state of delivery '{}' to '{}'", deliveryTagKey, outcome);
+        Delivery delivery = CoreMessageReceiver.this.tagsToDeliveriesMap.get(deliveryTagKey);
         if(delivery == null)
         {
-            TRACE_LOGGER.error("Delivery not found for delivery tag '{}'. Either receive link to '{}' closed with a transient error and reopened or the delivery was already settled by complete/abandon/defer/deadletter.", deliveryTagAsString, this.receivePath);
+            TRACE_LOGGER.error("Delivery not found for delivery tag '{}'. Either receive link to '{}' closed with a transient error and reopened or the delivery was already settled by complete/abandon/defer/deadletter.", deliveryTagKey, this.receivePath);
             completeMessageFuture.completeExceptionally(generateDeliveryNotFoundException());
         }
         else
         {
             final UpdateStateWorkItem workItem = new UpdateStateWorkItem(completeMessageFuture, outcome, CoreMessageReceiver.this.operationTimeout);
-            CoreMessageReceiver.this.pendingUpdateStateRequests.put(deliveryTagAsString, workItem);
+            CoreMessageReceiver.this.pendingUpdateStateRequests.put(deliveryTagKey, workItem);
+            this.scheduleUpdateStateTimeout(deliveryTagKey, workItem);
             
             CoreMessageReceiver.this.ensureLinkIsOpen().thenRun(() -> {
+                PendingDisposition pendingDisposition = new PendingDisposition(delivery, outcome);
+                this.pendingDispositions.offer(pendingDisposition);
                 try
                 {
-                    this.underlyingFactory.scheduleOnReactorThread(new DispatchHandler()
-                    {
-                        @Override
-                        public void onEvent()
-                        { 
-                            delivery.disposition((DeliveryState)outcome);
-                        }
-                    });
+                    this.scheduleDispositionDispatch();
                 }
                 catch (IOException ioException)
                 {
-                    completeMessageFuture.completeExceptionally(generateDispatacherSchedulingFailedException("completeMessage", ioException));
+                    // Disposition may already have been taken by a dispatch scheduled by another call, in which case the outcome from the service completes the future
+                    if(this.pendingDispositions.remove(pendingDisposition))
+                    {
+                        completeMessageFuture.completeExceptionally(generateDispatacherSchedulingFailedException("completeMessage", ioException));
+                    }
                 }
             });
         }		
@@ -1170,6 +1629,58 @@ public class CoreMessageReceiver extends ClientEntity implements IAmqpReceiver,
 		return completeMessageFuture;
 	}
 	
+	// Dispositions requested while a dispatch is waiting for the reactor thread are sent by that dispatch, so handlers completing messages one by one
+	// cost one reactor dispatch per batch of completions rather than one per message.
+	private void scheduleDispositionDispatch() throws IOException
+	{
+	    if(this.isDispositionDispatchScheduled.compareAndSet(false, true))
+	    {
+	        try
+	        {
+	            this.underlyingFactory.scheduleOnReactorThread(new DispatchHandler()
+	            {
+	                @Override
+	                public void onEvent()
+	                {
+	                    CoreMessageReceiver.this.sendPendingDispositions();
+	                }
+	            });
+	        }
+	        catch (IOException ioException)
+	        {
+	            this.isDispositionDispatchScheduled.set(false);
+	            throw ioException;
+	        }
+	    }
+	}
+	
+	// Called from the reactor thread
+	private void sendPendingDispositions()
+	{
+	    // Cleared before draining, so a disposition added after draining is finished schedules another dispatch
+	    this.isDispositionDispatchScheduled.set(false);
+	    int sentCount = 0;
+	    PendingDisposition pendingDisposition;
+	    while(sentCount < MAX_DISPOSITIONS_PER_DISPATCH && (pendingDisposition = this.pendingDispositions.poll()) != null)
+	    {
+	        pendingDisposition.delivery.disposition((DeliveryState)pendingDisposition.outcome);
+	        sentCount++;
+	    }
+	    
+	    TRACE_LOGGER.debug("Sent '{}' dispositions on receive link to '{}'", sentCount, this.receivePath);
+	    if(!this.pendingDispositions.isEmpty())
+	    {
+	        try
+	        {
+	            this.scheduleDispositionDispatch();
+	        }
+	        catch (IOException ioException)
+	        {
+	            TRACE_LOGGER.warn("Scheduling dispositions on receive link to '{}' failed. They will be sent with the next disposition.", this.receivePath, ioException);
+	        }
+	    }
+	}
+	
 	private synchronized CompletableFuture<Void> ensureLinkIsOpen()
 	{
 	    // Send SAS token before opening a link as connection might have been closed and reopened
@@ -1261,9 +1772,30 @@ public class CoreMessageReceiver extends ClientEntity implements IAmqpReceiver,
 		}
 	}
 	
-	private void completePendingUpdateStateWorkItem(Delivery delivery, String deliveryTagAsString, UpdateStateWorkItem workItem, Exception exception)
+	private void scheduleUpdateStateTimeout(Binary deliveryTagKey, UpdateStateWorkItem workItem)
+	{
+	    ScheduledFuture<?> timeoutTask = Timer.schedule(
+	            () -> {
+	                if(CoreMessageReceiver.this.pendingUpdateStateRequests.remove(deliveryTagKey, workItem))
+	                {
+	                    Exception exception = workItem.getLastKnownException();
+	                    if(exception == null)
+	                    {
+	                        exception = new TimeoutException("Request timed out.");
+	                    }
+	                    TRACE_LOGGER.error("UpdateState request timed out. Delivery:{}", deliveryTagKey, exception);
+	                    AsyncUtil.completeFutureExceptionally(workItem.getWork(), exception);
+	                }
+	            },
+	            workItem.getTimeoutTracker().remaining(),
+	            TimerType.CoarseOneTimeRun);
+	    workItem.setTimeoutTask(timeoutTask);
+	}
+	
+	private void completePendingUpdateStateWorkItem(Delivery delivery, Binary deliveryTagKey, UpdateStateWorkItem workItem, Exception exception)
 	{
 		delivery.settle();
+		workItem.cancelTimeoutTask(false);
 		if(exception == null)
 		{  
 			AsyncUtil.completeFuture(workItem.getWork(), null);
@@ -1273,8 +1805,8 @@ public class CoreMessageReceiver extends ClientEntity implements IAmqpReceiver,
 			ExceptionUtil.completeExceptionally(workItem.getWork(), exception, this, true);
 		}	
 		
-		this.tagsToDeliveriesMap.remove(deliveryTagAsString);
-		this.pendingUpdateStateRequests.remove(deliveryTagAsString);
+		this.tagsToDeliveriesMap.remove(deliveryTagKey);
+		this.pendingUpdateStateRequests.remove(deliveryTagKey);
 	}
 	
 	private void clearAllPendingWorkItems(Throwable exception)
@@ -1302,13 +1834,19 @@ public class CoreMessageReceiver extends ClientEntity implements IAmqpReceiver,
 			}
 		}
 		
-		for(Map.Entry<String, UpdateStateWorkItem> pendingUpdate : this.pendingUpdateStateRequests.entrySet())
+		for(Map.Entry<Binary, UpdateStateWorkItem> pendingUpdate : this.pendingUpdateStateRequests.entrySet())
 		{
-			pendingUpdateStateRequests.remove(pendingUpdate.getKey());			
+			pendingUpdateStateRequests.remove(pendingUpdate.getKey());
+			pendingUpdate.getValue().cancelTimeoutTask(false);
 			ExceptionUtil.completeExceptionally(pendingUpdate.getValue().getWork(), exception, this, true);
 		}
 	}
 	
+	private static Binary toDeliveryTagKey(byte[] deliveryTag)
+	{
+		return deliveryTag == null ? new Binary(new byte[0]) : new Binary(deliveryTag);
+	}
+	
 	private static IllegalArgumentException generateDeliveryNotFoundException()
 	{
 		return new IllegalArgumentException("Delivery not found on the receive link.");
@@ -1597,4 +2135,16 @@ public class CoreMessageReceiver extends ClientEntity implements IAmqpReceiver,
 			return CommonRequestResponseOperations.peekMessagesAsync(this.requestResponseLink, this.operationTimeout, fromSequenceNumber, messageCount, sessionId, this.receiveLink.getName());
 		}, MessagingFactory.INTERNAL_THREAD_POOL);
 	}	
+	
+	private static final class PendingDisposition
+	{
+		private final Delivery delivery;
+		private final Outcome outcome;
+
+		PendingDisposition(Delivery delivery, Outcome outcome)
+		{
+			this.delivery = delivery;
+			this.outcome = outcome;
+		}
+	}
 }
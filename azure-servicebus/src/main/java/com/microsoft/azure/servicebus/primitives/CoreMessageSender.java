@@ -10,24 +10,23 @@ import java.time.Instant;
 import java.time.ZonedDateTime;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Comparator;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.PriorityQueue;
-import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.qpid.proton.Proton;
 import org.apache.qpid.proton.amqp.Binary;
 import org.apache.qpid.proton.amqp.Symbol;
 import org.apache.qpid.proton.amqp.UnsignedInteger;
 import org.apache.qpid.proton.amqp.messaging.Accepted;
-import org.apache.qpid.proton.amqp.messaging.Data;
 import org.apache.qpid.proton.amqp.messaging.Rejected;
 import org.apache.qpid.proton.amqp.messaging.Released;
 import org.apache.qpid.proton.amqp.messaging.Source;
@@ -69,12 +68,15 @@ public class CoreMessageSender extends ClientEntity implements IAmqpSender, IErr
 	private final Duration operationTimeout;
 	private final RetryPolicy retryPolicy;
 	private final CompletableFuture<Void> linkClose;
-	private final Object pendingSendLock;
-	private final ConcurrentHashMap<String, SendWorkItem<Void>> pendingSendsData;
-	private final PriorityQueue<WeightedDeliveryTag> pendingSends;
+	private final ConcurrentLongHashMap<SendWorkItem<Void>> pendingSendsData;
+	private final AtomicLong deliveryTagCounter;
+	// Delivery tags waiting for link credit. Retries are sent ahead of fresh sends. Any thread enqueues, only the reactor thread dequeues.
+	private final ConcurrentLinkedQueue<Long> pendingRetrySends;
+	private final ConcurrentLinkedQueue<Long> pendingFreshSends;
 	private final DispatchHandler sendWork;
 	private final MessagingEntityType entityType;
-	private boolean isSendLoopRunning;
+	private final AtomicBoolean isSendLoopRunning;
+	private final PendingSendLimiter pendingSendLimiter;
 
 	private Sender sendLink;
 	private RequestResponseLink requestResponseLink;
@@ -88,6 +90,9 @@ public class CoreMessageSender extends ClientEntity implements IAmqpSender, IErr
 	private int maxMessageSize;
 	private boolean shouldRetryLinkOpenIfConnectionIsClosedAfterCBSTokenSent = true;
 
+	// Auto batching of single message sends, disabled when linger time is zero
+	private final MessageAutoBatcher autoBatcher;
+
 	@Deprecated
 	public static CompletableFuture<CoreMessageSender> create(
 			final MessagingFactory factory,
@@ -203,14 +208,18 @@ public class CoreMessageSender extends ClientEntity implements IAmqpSender, IErr
 		
 		this.retryPolicy = factory.getRetryPolicy();
 
-		this.pendingSendLock = new Object();
-		this.pendingSendsData = new ConcurrentHashMap<String, SendWorkItem<Void>>();
-		this.pendingSends = new PriorityQueue<WeightedDeliveryTag>(1000, new DeliveryTagComparator());
+		this.pendingSendsData = new ConcurrentLongHashMap<SendWorkItem<Void>>();
+		this.deliveryTagCounter = new AtomicLong();
+		this.pendingRetrySends = new ConcurrentLinkedQueue<Long>();
+		this.pendingFreshSends = new ConcurrentLinkedQueue<Long>();
 		this.linkCredit = 0;
 
+		this.autoBatcher = new MessageAutoBatcher(this::createBatch, this::sendLingeringBatchAsync);
+
 		this.linkClose = new CompletableFuture<Void>();
 		this.sendLinkReopenFuture = null;
-		this.isSendLoopRunning = false;
+		this.isSendLoopRunning = new AtomicBoolean(false);
+		this.pendingSendLimiter = new PendingSendLimiter(ClientConstants.DEFAULT_MAX_PENDING_SEND_COUNT, ClientConstants.DEFAULT_MAX_PENDING_SEND_BYTES);
 		this.sendWork = new DispatchHandler()
 		{ 
 			@Override
@@ -226,9 +235,9 @@ public class CoreMessageSender extends ClientEntity implements IAmqpSender, IErr
 		return this.sendPath;
 	}
 	
-	private static String generateRandomDeliveryTag()
+	private long generateDeliveryTag()
 	{
-	    return UUID.randomUUID().toString().replace("-", StringUtil.EMPTY);
+	    return this.deliveryTagCounter.getAndIncrement();
 	}
 	
 	private CompletableFuture<Void> sendCoreAsync(
@@ -237,15 +246,99 @@ public class CoreMessageSender extends ClientEntity implements IAmqpSender, IErr
 			final int messageFormat)
 	{
 	    this.throwIfClosed(this.lastKnownLinkError);
+	    return this.admitAndEnlistSendAsync(bytes, arrayOffset, messageFormat);
+	}
+	
+	// Sends beyond the pending send limits wait here, before they take a delivery tag or a place in the pending sends queues.
+	// Time spent waiting counts towards the operation timeout of the send.
+	private CompletableFuture<Void> admitAndEnlistSendAsync(
+			final byte[] bytes,
+			final int arrayOffset,
+			final int messageFormat)
+	{
+		TimeoutTracker timeoutTracker = TimeoutTracker.create(this.operationTimeout);
+		CompletableFuture<Void> admissionFuture = this.pendingSendLimiter.acquireAsync(arrayOffset);
+		if (admissionFuture.isDone())
+		{
+			return this.enlistNewSendAsync(bytes, arrayOffset, messageFormat, timeoutTracker);
+		}
+		
+		TRACE_LOGGER.debug("Send to '{}' is waiting for pending sends to complete. pendingSendCount:{}, pendingSendBytes:{}",
+				this.sendPath, this.pendingSendLimiter.getInFlightCount(), this.pendingSendLimiter.getInFlightBytes());
+		ScheduledFuture<?> admissionTimeoutTask = Timer.schedule(
+				() -> {
+					if (!admissionFuture.isDone())
+					{
+						TRACE_LOGGER.warn("Send to '{}' timed out waiting for pending sends to complete.", this.sendPath);
+						this.throwSenderTimeout(admissionFuture, null);
+					}
+				},
+				this.operationTimeout,
+				TimerType.CoarseOneTimeRun);
+		
+		CompletableFuture<Void> sendFuture = new CompletableFuture<Void>();
+		admissionFuture.whenComplete((v, admissionEx) -> {
+			if (admissionEx == null)
+			{
+				admissionTimeoutTask.cancel(false);
+				this.enlistNewSendAsync(bytes, arrayOffset, messageFormat, timeoutTracker).whenComplete((v1, sendEx) -> {
+					if (sendEx == null)
+					{
+						sendFuture.complete(null);
+					}
+					else
+					{
+						sendFuture.completeExceptionally(ExceptionUtil.extractAsyncCompletionCause(sendEx));
+					}
+				});
+			}
+			else
+			{
+				BufferPool.release(bytes);
+				sendFuture.completeExceptionally(ExceptionUtil.extractAsyncCompletionCause(admissionEx));
+			}
+		});
+		
+		return sendFuture;
+	}
+	
+	private CompletableFuture<Void> enlistNewSendAsync(
+			final byte[] bytes,
+			final int arrayOffset,
+			final int messageFormat,
+			final TimeoutTracker timeoutTracker)
+	{
 		TRACE_LOGGER.debug("Sending message to '{}'", this.sendPath);
-		String deliveryTag = CoreMessageSender.generateRandomDeliveryTag();
+		long deliveryTag = this.generateDeliveryTag();
 		CompletableFuture<Void> onSendFuture = new CompletableFuture<Void>();
-		SendWorkItem<Void> sendWorkItem = new SendWorkItem<Void>(bytes, arrayOffset, messageFormat, deliveryTag, onSendFuture, this.operationTimeout);
+		// Room taken by the send is given back whatever way it completes, which may admit waiting sends
+		onSendFuture.whenComplete((v, ex) -> this.pendingSendLimiter.release(arrayOffset));
+		SendWorkItem<Void> sendWorkItem = new SendWorkItem<Void>(bytes, arrayOffset, messageFormat, deliveryTag, onSendFuture, timeoutTracker);
 		this.enlistSendRequest(deliveryTag, sendWorkItem, false);
 		this.scheduleSendTimeout(sendWorkItem);
 		return onSendFuture;
 	}
 	
+	public int getMaxPendingSendCount()
+	{
+		return this.pendingSendLimiter.getMaxCount();
+	}
+	
+	public void setMaxPendingSendCount(int maxPendingSendCount)
+	{
+		this.pendingSendLimiter.setLimits(maxPendingSendCount, this.pendingSendLimiter.getMaxBytes());
+	}
+	
+	public long getMaxPendingSendBytes()
+	{
+		return this.pendingSendLimiter.getMaxBytes();
+	}
+	
+	public void setMaxPendingSendBytes(long maxPendingSendBytes)
+	{
+		this.pendingSendLimiter.setLimits(this.pendingSendLimiter.getMaxCount(), maxPendingSendBytes);
+	}
+	
 	private void scheduleSendTimeout(SendWorkItem<Void> sendWorkItem)
 	{
 	    // Timer to timeout the request
@@ -259,37 +352,42 @@ public class CoreMessageSender extends ClientEntity implements IAmqpSender, IErr
                     TRACE_LOGGER.warn("Delivery '{}' to '{}' did not receive ack from service. Throwing timeout.", sendWorkItem.getDeliveryTag(), CoreMessageSender.this.sendPath);
                     CoreMessageSender.this.pendingSendsData.remove(sendWorkItem.getDeliveryTag());
                     CoreMessageSender.this.throwSenderTimeout(sendWorkItem.getWork(), sendWorkItem.getLastKnownException());
-                    // Weighted delivery tag not removed from the pending sends queue, but send loop will ignore it anyway if it is present
+                    // Delivery tag not removed from the pending sends queues, but send loop will ignore it anyway if it is present
                 }
             }
         },
         sendWorkItem.getTimeoutTracker().remaining(),
-        TimerType.OneTimeRun);
+        TimerType.CoarseOneTimeRun);
         sendWorkItem.setTimeoutTask(timeoutTask);
 	}
 	
-	private void enlistSendRequest(String deliveryTag, SendWorkItem<Void> sendWorkItem, boolean isRetrySend)
+	private void enlistSendRequest(long deliveryTag, SendWorkItem<Void> sendWorkItem, boolean isRetrySend)
 	{
-	    synchronized (this.pendingSendLock)
+        this.pendingSendsData.put(deliveryTag, sendWorkItem);
+        if(isRetrySend)
         {
-	        this.pendingSendsData.put(deliveryTag, sendWorkItem);
-            this.pendingSends.offer(new WeightedDeliveryTag(deliveryTag, isRetrySend ? 1 : 0));
-            
-            if(!this.isSendLoopRunning)
+            this.pendingRetrySends.offer(deliveryTag);
+        }
+        else
+        {
+            this.pendingFreshSends.offer(deliveryTag);
+        }
+        
+        // Send loop checks the queues again after it stops, so a send enqueued while it is stopping is not missed
+        if(!this.isSendLoopRunning.get())
+        {
+            try
             {
-                try
-                {
-                    this.underlyingFactory.scheduleOnReactorThread(this.sendWork);
-                }
-                catch (IOException ioException)
-                {
-                    AsyncUtil.completeFutureExceptionally(sendWorkItem.getWork(), new ServiceBusException(false, "Send failed while dispatching to Reactor, see cause for more details.", ioException));
-                }
+                this.underlyingFactory.scheduleOnReactorThread(this.sendWork);
+            }
+            catch (IOException ioException)
+            {
+                AsyncUtil.completeFutureExceptionally(sendWorkItem.getWork(), new ServiceBusException(false, "Send failed while dispatching to Reactor, see cause for more details.", ioException));
             }
         }
 	}
 	
-	private void reSendAsync(String deliveryTag, SendWorkItem<Void> retryingSendWorkItem, boolean reuseDeliveryTag)
+	private void reSendAsync(long deliveryTag, SendWorkItem<Void> retryingSendWorkItem, boolean reuseDeliveryTag)
     {
 	    if(!retryingSendWorkItem.getWork().isDone() && retryingSendWorkItem.cancelTimeoutTask(false))
         {
@@ -298,7 +396,7 @@ public class CoreMessageSender extends ClientEntity implements IAmqpSender, IErr
 	        {
 	            if(!reuseDeliveryTag)
 	            {
-	                deliveryTag = CoreMessageSender.generateRandomDeliveryTag();
+	                deliveryTag = this.generateDeliveryTag();
 	                retryingSendWorkItem.setDeliveryTag(deliveryTag);
 	            }
 	            
@@ -328,37 +426,108 @@ public class CoreMessageSender extends ClientEntity implements IAmqpSender, IErr
 		Message batchMessage = Proton.message();
 		batchMessage.setMessageAnnotations(firstMessage.getMessageAnnotations());
 
-		byte[] bytes = null;
-		int byteArrayOffset = 0;
-		try
+		int batchSizeHint = ClientConstants.MAX_MESSAGING_AMQP_HEADER_SIZE_BYTES;
+		for(Message amqpMessage: messages)
 		{
-			Pair<byte[], Integer> encodedPair = Util.encodeMessageToMaxSizeArray(batchMessage, this.maxMessageSize);
-			bytes = encodedPair.getFirstItem();
-			byteArrayOffset = encodedPair.getSecondItem();
+			if(batchSizeHint >= this.maxMessageSize)
+			{
+				break;
+			}
 			
+			batchSizeHint += Util.getDataBodyLength(amqpMessage);
+		}
+
+		// All messages are encoded straight into their data sections in one shared buffer, so payload bytes are copied only once before proton
+		GrowableWritableBuffer batchBuffer = new GrowableWritableBuffer(batchSizeHint, this.maxMessageSize);
+		try
+		{
+			Util.encodeMessageToBuffer(batchMessage, batchBuffer);
 			for(Message amqpMessage: messages)
 			{
-				Message messageWrappedByData = Proton.message();	
-				encodedPair = Util.encodeMessageToOptimalSizeArray(amqpMessage, this.maxMessageSize);
-				messageWrappedByData.setBody(new Data(new Binary(encodedPair.getFirstItem(), 0, encodedPair.getSecondItem())));
-
-				int encodedSize = Util.encodeMessageToCustomArray(messageWrappedByData, bytes, byteArrayOffset, this.maxMessageSize - byteArrayOffset - 1);
-				byteArrayOffset = byteArrayOffset + encodedSize;
+				Util.encodeMessageToDataSection(amqpMessage, batchBuffer);
 			}
 		}
 		catch(PayloadSizeExceededException ex)
 		{
-		    TRACE_LOGGER.error("Payload size of batch of messages exceeded limit", ex);
+			TRACE_LOGGER.error("Payload size of batch of messages exceeded limit", ex);
+			batchBuffer.release();
 			final CompletableFuture<Void> sendTask = new CompletableFuture<Void>();
 			sendTask.completeExceptionally(ex);
 			return sendTask;
 		}
 
-		return this.sendCoreAsync(bytes, byteArrayOffset, AmqpConstants.AMQP_BATCH_MESSAGE_FORMAT);
+		return this.sendCoreAsync(batchBuffer.getArray(), batchBuffer.position(), AmqpConstants.AMQP_BATCH_MESSAGE_FORMAT);
+	}
+	
+	public CoreMessageBatch createBatch()
+	{
+		return new CoreMessageBatch(this.maxMessageSize, this);
+	}
+	
+	public CompletableFuture<Void> sendAsync(CoreMessageBatch batch)
+	{
+		if (batch == null)
+		{
+			throw new IllegalArgumentException("Batch cannot be null.");
+		}
+		
+		// Batch is sized for the entity of the sender that created it, and may also be sent by that sender concurrently
+		if (!batch.canBeSentBy(this))
+		{
+			throw new IllegalArgumentException("Batch was created by a different sender.");
+		}
+		
+		TRACE_LOGGER.debug("Sending a batch of '{}' messages to '{}'", batch.getCount(), this.sendPath);
+		Pair<byte[], Integer> encodedPair = batch.detachEncodedBytes();
+		return this.sendCoreAsync(encodedPair.getFirstItem(), encodedPair.getSecondItem(), AmqpConstants.AMQP_BATCH_MESSAGE_FORMAT);
+	}
+	
+	// Splits messages into as few batches as possible, so each batch is within the maximum message size and has messages of only one partition and session.
+	// All batches are encoded before any is sent, and then sent together, so they go over the link as fast as credit allows.
+	public CompletableFuture<Void> sendInBatchesAsync(final Iterable<Message> messages)
+	{
+		if (messages == null || IteratorUtil.sizeEquals(messages, 0))
+		{
+			throw new IllegalArgumentException("Sending Empty batch of messages is not allowed.");
+		}
+		
+		this.throwIfClosed(this.lastKnownLinkError);
+		List<CoreMessageBatch> batches;
+		try
+		{
+			batches = CoreMessageBatch.splitIntoBatches(messages, this::createBatch);
+		}
+		catch (PayloadSizeExceededException exception)
+		{
+			TRACE_LOGGER.error("Payload size of a message in the batch exceeded limit", exception);
+			CompletableFuture<Void> sendTask = new CompletableFuture<Void>();
+			sendTask.completeExceptionally(exception);
+			return sendTask;
+		}
+		
+		TRACE_LOGGER.debug("Sending messages to '{}' in '{}' batches", this.sendPath, batches.size());
+		CompletableFuture<?>[] sendFutures = new CompletableFuture<?>[batches.size()];
+		int batchIndex = 0;
+		for (CoreMessageBatch batch : batches)
+		{
+			sendFutures[batchIndex++] = this.sendAsync(batch);
+		}
+		
+		return CompletableFuture.allOf(sendFutures);
 	}
 	
 	public CompletableFuture<Void> sendAsync(Message msg)
 	{
+		if (this.autoBatcher.isEnabled())
+		{
+			this.throwIfClosed(this.lastKnownLinkError);
+			CompletableFuture<Void> lingeringSendFuture = this.autoBatcher.addAsync(msg);
+			if (lingeringSendFuture != null)
+			{
+				return lingeringSendFuture;
+			}
+		}
+		
 		try
 		{
 			Pair<byte[], Integer> encodedPair = Util.encodeMessageToOptimalSizeArray(msg, this.maxMessageSize);
@@ -373,6 +542,24 @@ public class CoreMessageSender extends ClientEntity implements IAmqpSender, IErr
 		}
 	}
 
+	public Duration getAutoBatchingLingerTime()
+	{
+		return this.autoBatcher.getLingerTime();
+	}
+	
+	public void setAutoBatchingLingerTime(Duration lingerTime)
+	{
+		this.autoBatcher.setLingerTime(lingerTime);
+	}
+	
+	private CompletableFuture<Void> sendLingeringBatchAsync(CoreMessageBatch batch)
+	{
+		TRACE_LOGGER.debug("Sending a batch of '{}' lingering messages to '{}'", batch.getCount(), this.sendPath);
+		// Messages were accepted while the sender was open, so send them even if the sender is closing now
+		Pair<byte[], Integer> encodedPair = batch.detachEncodedBytes();
+		return this.admitAndEnlistSendAsync(encodedPair.getFirstItem(), encodedPair.getSecondItem(), AmqpConstants.AMQP_BATCH_MESSAGE_FORMAT);
+	}
+
 	@Override
 	public void onOpenComplete(Exception completionException)
 	{
@@ -395,27 +582,15 @@ public class CoreMessageSender extends ClientEntity implements IAmqpSender, IErr
 			}
 			else
 			{ 
-				synchronized (this.pendingSendLock)
+				if (!this.pendingSendsData.isEmpty())
 				{
-					if (!this.pendingSendsData.isEmpty())
+					for (long unacknowledgedSend : this.pendingSendsData.keys())
 					{
-						LinkedList<String> unacknowledgedSends = new LinkedList<String>();
-						unacknowledgedSends.addAll(this.pendingSendsData.keySet());
-		
-						if (unacknowledgedSends.size() > 0)
+						SendWorkItem<Void> unacknowledgedSendWorkItem = this.pendingSendsData.get(unacknowledgedSend);
+						if (unacknowledgedSendWorkItem != null && unacknowledgedSendWorkItem.isWaitingForAck())
 						{
-							Iterator<String> reverseReader = unacknowledgedSends.iterator();
-							while (reverseReader.hasNext())
-							{
-								String unacknowledgedSend = reverseReader.next();
-								if (this.pendingSendsData.get(unacknowledgedSend).isWaitingForAck())
-								{
-									this.pendingSends.offer(new WeightedDeliveryTag(unacknowledgedSend, 1));
-								}
-							}
+							this.pendingRetrySends.offer(unacknowledgedSend);
 						}
-	
-						unacknowledgedSends.clear();
 					}
 				}
 			}
@@ -478,10 +653,10 @@ public class CoreMessageSender extends ClientEntity implements IAmqpSender, IErr
 			}
 			else
 			{			    
-				final Map.Entry<String, SendWorkItem<Void>> pendingSendEntry = IteratorUtil.getFirst(this.pendingSendsData.entrySet());
-				if (pendingSendEntry != null && pendingSendEntry.getValue() != null)
+				final SendWorkItem<Void> pendingSendWorkItem = IteratorUtil.getFirst(this.pendingSendsData.values());
+				if (pendingSendWorkItem != null)
 				{
-					final TimeoutTracker tracker = pendingSendEntry.getValue().getTimeoutTracker();
+					final TimeoutTracker tracker = pendingSendWorkItem.getTimeoutTracker();
 					if (tracker != null)
 					{
 						final Duration nextRetryInterval = this.retryPolicy.getNextRetryInterval(this.getClientId(), completionException, tracker.remaining());
@@ -500,7 +675,7 @@ public class CoreMessageSender extends ClientEntity implements IAmqpSender, IErr
 	public void onSendComplete(final Delivery delivery)
 	{
 		final DeliveryState outcome = delivery.getRemoteState();
-		final String deliveryTag = new String(delivery.getTag());
+		final long deliveryTag = Util.convertDeliveryTagToLong(delivery.getTag());
 		
 		TRACE_LOGGER.debug("Received ack for delivery. path:{}, linkName:{}, deliveryTag:{}, outcome:{}", CoreMessageSender.this.sendPath, this.sendLink.getName(), deliveryTag, outcome);
 		final SendWorkItem<Void> pendingSendWorkItem = this.pendingSendsData.remove(deliveryTag);
@@ -513,6 +688,7 @@ public class CoreMessageSender extends ClientEntity implements IAmqpSender, IErr
 				this.retryPolicy.resetRetryCount(this.getClientId());
 
 				pendingSendWorkItem.cancelTimeoutTask(false);
+				pendingSendWorkItem.releaseMessage();
 				AsyncUtil.completeFuture(pendingSendWorkItem.getWork(), null);
 			}
 			else if (outcome instanceof Rejected)
@@ -531,6 +707,7 @@ public class CoreMessageSender extends ClientEntity implements IAmqpSender, IErr
 						this.getClientId(), exception, pendingSendWorkItem.getTimeoutTracker().remaining());
 				if (retryInterval == null)
 				{
+					pendingSendWorkItem.releaseMessage();
 					this.cleanupFailedSend(pendingSendWorkItem, exception);
 				}
 				else
@@ -542,10 +719,12 @@ public class CoreMessageSender extends ClientEntity implements IAmqpSender, IErr
 			}
 			else if (outcome instanceof Released)
 			{
+				pendingSendWorkItem.releaseMessage();
 				this.cleanupFailedSend(pendingSendWorkItem, new OperationCancelledException(outcome.toString()));
 			}
 			else 
 			{
+				pendingSendWorkItem.releaseMessage();
 				this.cleanupFailedSend(pendingSendWorkItem, new ServiceBusException(false, outcome.toString()));
 			}
 		}
@@ -557,18 +736,24 @@ public class CoreMessageSender extends ClientEntity implements IAmqpSender, IErr
 	
 	private void clearAllPendingSendsWithException(Throwable failureException)
 	{
-	    synchronized (this.pendingSendLock)
+        // Only sends failed here are removed, so a send enlisted concurrently stays pending and is sent or failed on its own
+        HashSet<Long> failedDeliveryTags = new HashSet<Long>();
+        for (long deliveryTag : this.pendingSendsData.keys())
         {
-            for (Map.Entry<String, SendWorkItem<Void>> pendingSend: this.pendingSendsData.entrySet())
+            SendWorkItem<Void> pendingSend = this.pendingSendsData.remove(deliveryTag);
+            if (pendingSend != null)
             {
-                this.cleanupFailedSend(pendingSend.getValue(), failureException);
+                failedDeliveryTags.add(deliveryTag);
+                this.cleanupFailedSend(pendingSend, failureException);
             }
-
-            this.pendingSendsData.clear();
-            this.pendingSends.clear();
         }
+
+        this.pendingRetrySends.removeIf(failedDeliveryTags::contains);
+        this.pendingFreshSends.removeIf(failedDeliveryTags::contains);
 	}
 	
+	// Doesn't release the encoded message to the BufferPool as it can be called from any thread while the reactor thread is still sending the message.
+	// Arrays of such sends are left to the garbage collector.
 	private void cleanupFailedSend(final SendWorkItem<Void> failedSend, final Throwable exception)
 	{
 		failedSend.cancelTimeoutTask(false);		
@@ -715,8 +900,13 @@ public class CoreMessageSender extends ClientEntity implements IAmqpSender, IErr
 		if (creditIssued <= 0)
 			return;	
 		
-		TRACE_LOGGER.debug("Received flow frame. path:{}, linkName:{}, remoteLinkCredit:{}, pendingSendsWaitingForCredit:{}, pendingSendsWaitingDelivery:{}",
-                    this.sendPath, this.sendLink.getName(), creditIssued, this.pendingSends.size(), this.pendingSendsData.size() - this.pendingSends.size());
+		if (TRACE_LOGGER.isDebugEnabled())
+		{
+		    // Sizes of concurrent queues are computed by traversing them
+		    int pendingSendsWaitingForCredit = this.pendingRetrySends.size() + this.pendingFreshSends.size();
+		    TRACE_LOGGER.debug("Received flow frame. path:{}, linkName:{}, remoteLinkCredit:{}, pendingSendsWaitingForCredit:{}, pendingSendsWaitingDelivery:{}",
+		            this.sendPath, this.sendLink.getName(), creditIssued, pendingSendsWaitingForCredit, this.pendingSendsData.size() - pendingSendsWaitingForCredit);
+		}
 
 		this.linkCredit = this.linkCredit + creditIssued;
 		this.sendWork.onEvent();
@@ -790,16 +980,9 @@ public class CoreMessageSender extends ClientEntity implements IAmqpSender, IErr
 	// actual send on the SenderLink should happen only in this method & should run on Reactor Thread
 	private void processSendWork()
 	{
-	    synchronized (this.pendingSendLock)
+	    if(!this.isSendLoopRunning.compareAndSet(false, true))
 	    {
-	        if(!this.isSendLoopRunning)
-	        {
-	            this.isSendLoopRunning = true;
-	        }
-	        else
-	        {
-	            return;
-	        }
+	        return;
 	    }
 	    
 	    TRACE_LOGGER.debug("Processing pending sends to '{}'. Available link credit '{}'", this.sendPath, this.linkCredit);
@@ -816,34 +999,33 @@ public class CoreMessageSender extends ClientEntity implements IAmqpSender, IErr
                     && sendLinkCurrent.getLocalState() == EndpointState.ACTIVE && sendLinkCurrent.getRemoteState() == EndpointState.ACTIVE
                     && this.linkCredit > 0)
             {
-                final WeightedDeliveryTag deliveryTag;
-                final SendWorkItem<Void> sendData;
-                synchronized (this.pendingSendLock)
+                final Long deliveryTag = this.pollPendingSend();
+                if (deliveryTag == null)
                 {
-                    deliveryTag = this.pendingSends.poll();
-                    if (deliveryTag == null)
+                    TRACE_LOGGER.debug("There are no pending sends to '{}'.", this.sendPath);
+                    this.isSendLoopRunning.set(false);
+                    // A send enqueued after the poll above may have seen the loop running and not scheduled it again
+                    if ((this.pendingRetrySends.isEmpty() && this.pendingFreshSends.isEmpty()) || !this.isSendLoopRunning.compareAndSet(false, true))
                     {
-                        TRACE_LOGGER.debug("There are no pending sends to '{}'.", this.sendPath);
-                        // Must be done inside this synchronized block
-                        this.isSendLoopRunning = false;
                         break;
                     }
-                    else
-                    {
-                        sendData = this.pendingSendsData.get(deliveryTag.getDeliveryTag());
-                        if(sendData == null)
-                        {
-                            TRACE_LOGGER.debug("SendData not found for this delivery. path:{}, linkName:{}, deliveryTag:{}", this.sendPath, this.sendLink.getName(), deliveryTag);
-                            continue;
-                        }
-                    }
+                    
+                    continue;
+                }
+                
+                final SendWorkItem<Void> sendData = this.pendingSendsData.get(deliveryTag);
+                if(sendData == null)
+                {
+                    TRACE_LOGGER.debug("SendData not found for this delivery. path:{}, linkName:{}, deliveryTag:{}", this.sendPath, this.sendLink.getName(), deliveryTag);
+                    continue;
                 }
                 
                 if (sendData.getWork() != null && sendData.getWork().isDone())
                 {
                     // CoreSend could enqueue Sends into PendingSends Queue and can fail the SendCompletableFuture
                     // (when It fails to schedule the ProcessSendWork on reactor Thread)
-                    this.pendingSendsData.remove(sendData);
+                    this.pendingSendsData.remove(deliveryTag);
+                    sendData.releaseMessage();
                     continue;
                 }
                 
@@ -854,9 +1036,9 @@ public class CoreMessageSender extends ClientEntity implements IAmqpSender, IErr
                 
                 try
                 {
-                    delivery = sendLinkCurrent.delivery(deliveryTag.getDeliveryTag().getBytes());
+                    delivery = sendLinkCurrent.delivery(Util.convertLongToDeliveryTag(deliveryTag));
                     delivery.setMessageFormat(sendData.getMessageFormat());
-                    TRACE_LOGGER.debug("Sending message delivery '{}' to '{}'", deliveryTag.getDeliveryTag(), this.sendPath);
+                    TRACE_LOGGER.debug("Sending message delivery '{}' to '{}'", deliveryTag, this.sendPath);
                     sentMsgSize = sendLinkCurrent.send(sendData.getMessage(), 0, sendData.getEncodedMessageSize());
                     assert sentMsgSize == sendData.getEncodedMessageSize() : "Contract of the ProtonJ library for Sender.Send API changed";
     
@@ -884,21 +1066,22 @@ public class CoreMessageSender extends ClientEntity implements IAmqpSender, IErr
                     
                     Exception completionException = sendException != null ? new OperationCancelledException("Send operation failed. Please see cause for more details", sendException)
                             : new OperationCancelledException(String.format(Locale.US, "Send operation failed while advancing delivery(tag: %s) on SendLink(path: %s).", this.sendPath, deliveryTag));
+                    sendData.releaseMessage();
                     AsyncUtil.completeFutureExceptionally(sendData.getWork(), completionException);
                 }
             }
         }
         finally
         {
-            synchronized (this.pendingSendLock)
-            {
-                if(this.isSendLoopRunning)
-                {
-                    this.isSendLoopRunning = false;
-                }
-            }
+            this.isSendLoopRunning.set(false);
         }
 	}
+	
+	private Long pollPendingSend()
+	{
+	    Long deliveryTag = this.pendingRetrySends.poll();
+	    return deliveryTag != null ? deliveryTag : this.pendingFreshSends.poll();
+	}
 
 	private void throwSenderTimeout(CompletableFuture<Void> pendingSendWork, Exception lastKnownException)
 	{
@@ -941,8 +1124,13 @@ public class CoreMessageSender extends ClientEntity implements IAmqpSender, IErr
 	@Override
 	protected CompletableFuture<Void> onClose()
 	{
-		this.closeInternals(true);
-		return this.linkClose;
+		// Messages of the lingering batch were accepted while the sender was open, so the link is closed only after they are sent or fail
+		return this.autoBatcher.flushAsync().handleAsync((v, flushEx) -> {
+			// Sends still waiting for room would only be admitted to a closed link
+			this.pendingSendLimiter.failWaitingSends(new ServiceBusException(false, "Sender was closed before the send could be started."));
+			this.closeInternals(true);
+			return null;
+		}, MessagingFactory.INTERNAL_THREAD_POOL).thenCompose((v) -> this.linkClose);
 	}
 	
 	private void closeInternals(boolean waitForCloseCompletion)
@@ -987,43 +1175,13 @@ public class CoreMessageSender extends ClientEntity implements IAmqpSender, IErr
         }
 	}
 	
-	private static class WeightedDeliveryTag
-	{
-		private final String deliveryTag;
-		private final int priority;
-		
-		WeightedDeliveryTag(final String deliveryTag, final int priority)
-		{
-			this.deliveryTag = deliveryTag;
-			this.priority = priority;
-		}
-		
-		public String getDeliveryTag()
-		{
-			return this.deliveryTag;
-		}
-		
-		public int getPriority()
-		{
-			return this.priority;
-		}
-	}
-	
-	private static class DeliveryTagComparator implements Comparator<WeightedDeliveryTag>
-	{
-		@Override
-		public int compare(WeightedDeliveryTag deliveryTag0, WeightedDeliveryTag deliveryTag1)
-		{
-			return deliveryTag1.getPriority() - deliveryTag0.getPriority();
-		}	
-	}
-	
 	public CompletableFuture<long[]> scheduleMessageAsync(Message[] messages, Duration timeout)
 	{
 	    TRACE_LOGGER.debug("Sending '{}' scheduled message(s) to '{}'", messages.length, this.sendPath);
 		return this.createRequestResponseLink().thenComposeAsync((v) -> {
 			HashMap requestBodyMap = new HashMap();
 			Collection<HashMap> messageList = new LinkedList<HashMap>();
+			Collection<byte[]> encodedMessages = new LinkedList<byte[]>();
 			for(Message message : messages)
 			{
 				HashMap messageEntry = new HashMap();
@@ -1032,10 +1190,12 @@ public class CoreMessageSender extends ClientEntity implements IAmqpSender, IErr
 				try
 				{
 					encodedPair = Util.encodeMessageToOptimalSizeArray(message, this.maxMessageSize);
+					encodedMessages.add(encodedPair.getFirstItem());
 				}
 				catch(PayloadSizeExceededException exception)
 				{
 					TRACE_LOGGER.error("Payload size of message exceeded limit", exception);
+					encodedMessages.forEach(BufferPool::release);
 					final CompletableFuture<long[]> scheduleMessagesTask = new CompletableFuture<long[]>();
 					scheduleMessagesTask.completeExceptionally(exception);
 					return scheduleMessagesTask;
@@ -1061,6 +1221,9 @@ public class CoreMessageSender extends ClientEntity implements IAmqpSender, IErr
 			requestBodyMap.put(ClientConstants.REQUEST_RESPONSE_MESSAGES, messageList);
 			Message requestMessage = RequestResponseUtils.createRequestMessageFromPropertyBag(ClientConstants.REQUEST_RESPONSE_SCHEDULE_MESSAGE_OPERATION, requestBodyMap, Util.adjustServerTimeout(timeout), this.sendLink.getName());
 			CompletableFuture<Message> responseFuture = this.requestResponseLink.requestAysnc(requestMessage, timeout);
+			// Request message is encoded again on retries, so encoded messages are held until a response is received.
+			// Timed out requests may still be encoded on the reactor thread, their arrays are left to the garbage collector.
+			responseFuture.thenRun(() -> encodedMessages.forEach(BufferPool::release));
 			return responseFuture.thenComposeAsync((responseMessage) -> {
 				CompletableFuture<long[]> returningFuture = new CompletableFuture<long[]>();
 				int statusCode = RequestResponseUtils.getResponseStatusCode(responseMessage);
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+package com.microsoft.azure.servicebus.primitives;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import org.apache.qpid.proton.codec.ReadableBuffer;
+import org.apache.qpid.proton.codec.WritableBuffer;
+
+/**
+ * A WritableBuffer backed by an array from {@link BufferPool} which grows as proton-j encoder writes to it, up to a maximum capacity.
+ * Lets messages be encoded in a single pass without estimating their encoded size upfront.
+ * Writing beyond maximum capacity throws {@link BufferOverflowException}, just like a fixed size buffer.
+ */
+final class GrowableWritableBuffer implements WritableBuffer
+{
+	private final int maxCapacity;
+	private byte[] array;
+	private int position;
+
+	GrowableWritableBuffer(int initialCapacity, int maxCapacity)
+	{
+		this.maxCapacity = maxCapacity;
+		this.array = BufferPool.acquire(Math.min(initialCapacity, maxCapacity));
+		this.position = 0;
+	}
+
+	byte[] getArray()
+	{
+		return this.array;
+	}
+
+	int getMaxCapacity()
+	{
+		return this.maxCapacity;
+	}
+
+	// Returns the backing array to the pool. Buffer must not be used after this.
+	void release()
+	{
+		byte[] arrayToRelease = this.array;
+		this.array = null;
+		BufferPool.release(arrayToRelease);
+	}
+
+	private void ensureCapacity(int requiredCapacity)
+	{
+		if(requiredCapacity > this.array.length)
+		{
+			if(requiredCapacity > this.maxCapacity)
+			{
+				throw new BufferOverflowException();
+			}
+
+			int newCapacity = Math.max(requiredCapacity, (int)Math.min((long)this.array.length << 1, this.maxCapacity));
+			byte[] newArray = BufferPool.acquire(newCapacity);
+			// Encoder may move position backwards to fill in sizes, so copy everything and not just up to the current position
+			System.arraycopy(this.array, 0, newArray, 0, this.array.length);
+			BufferPool.release(this.array);
+			this.array = newArray;
+		}
+	}
+
+	@Override
+	public void ensureRemaining(int requiredRemaining)
+	{
+		this.ensureCapacity(this.position + requiredRemaining);
+	}
+
+	@Override
+	public void put(byte b)
+	{
+		this.ensureCapacity(this.position + Byte.BYTES);
+		this.array[this.position++] = b;
+	}
+
+	@Override
+	public void putShort(short value)
+	{
+		this.ensureCapacity(this.position + Short.BYTES);
+		this.array[this.position++] = (byte)(value >> 8);
+		this.array[this.position++] = (byte)value;
+	}
+
+	@Override
+	public void putInt(int value)
+	{
+		this.ensureCapacity(this.position + Integer.BYTES);
+		this.array[this.position++] = (byte)(value >> 24);
+		this.array[this.position++] = (byte)(value >> 16);
+		this.array[this.position++] = (byte)(value >> 8);
+		this.array[this.position++] = (byte)value;
+	}
+
+	@Override
+	public void putLong(long value)
+	{
+		this.ensureCapacity(this.position + Long.BYTES);
+		for(int shift = 56; shift >= 0; shift -= 8)
+		{
+			this.array[this.position++] = (byte)(value >> shift);
+		}
+	}
+
+	@Override
+	public void putFloat(float value)
+	{
+		this.putInt(Float.floatToRawIntBits(value));
+	}
+
+	@Override
+	public void putDouble(double value)
+	{
+		this.putLong(Double.doubleToRawLongBits(value));
+	}
+
+	@Override
+	public void put(byte[] src, int offset, int length)
+	{
+		this.ensureCapacity(this.position + length);
+		System.arraycopy(src, offset, this.array, this.position, length);
+		this.position += length;
+	}
+
+	@Override
+	public void put(ByteBuffer payload)
+	{
+		int length = payload.remaining();
+		this.ensureCapacity(this.position + length);
+		payload.get(this.array, this.position, length);
+		this.position += length;
+	}
+
+	@Override
+	public void put(ReadableBuffer payload)
+	{
+		int length = payload.remaining();
+		this.ensureCapacity(this.position + length);
+		payload.get(this.array, this.position, length);
+		this.position += length;
+	}
+
+	@Override
+	public boolean hasRemaining()
+	{
+		return this.position < this.maxCapacity;
+	}
+
+	@Override
+	public int remaining()
+	{
+		return this.maxCapacity - this.position;
+	}
+
+	@Override
+	public int position()
+	{
+		return this.position;
+	}
+
+	@Override
+	public void position(int position)
+	{
+		if(position < 0 || position > this.maxCapacity)
+		{
+			throw new IllegalArgumentException("Position should be between 0 and maximum capacity.");
+		}
+
+		this.ensureCapacity(position);
+		this.position = position;
+	}
+
+	@Override
+	public int limit()
+	{
+		return this.maxCapacity;
+	}
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+package com.microsoft.azure.servicebus.primitives;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A timer for large numbers of coarse grained timeouts, like per operation timeouts that are almost always cancelled before they expire.
+ * Timeouts are kept in a wheel of buckets that is advanced every tick, so scheduling and cancelling a timeout are constant time operations
+ * and cancelled timeouts are removed from the wheel on the next tick. A timeout may expire up to one tick later than requested, but never earlier.
+ * Expired tasks are run on the executor that ticks the wheel.
+ */
+final class HashedWheelTimer
+{
+	private static final Logger TRACE_LOGGER = LoggerFactory.getLogger(HashedWheelTimer.class);
+
+	private final ScheduledExecutorService executor;
+	private final long tickDurationInNanos;
+	private final Bucket[] wheel;
+	private final int mask;
+	private final long startTime;
+	// Any thread adds and cancels timeouts, only the tick moves them in and out of the wheel
+	private final ConcurrentLinkedQueue<WheelTimeout> newTimeouts;
+	private final ConcurrentLinkedQueue<WheelTimeout> cancelledTimeouts;
+	private final ScheduledFuture<?> tickTask;
+	private long tick;
+
+	HashedWheelTimer(ScheduledExecutorService executor, Duration tickDuration, int wheelSize)
+	{
+		if(wheelSize <= 0 || Integer.bitCount(wheelSize) != 1)
+		{
+			throw new IllegalArgumentException("Wheel size must be a power of 2.");
+		}
+
+		this.executor = executor;
+		this.tickDurationInNanos = tickDuration.toNanos();
+		this.wheel = new Bucket[wheelSize];
+		for(int i=0; i<wheelSize; i++)
+		{
+			this.wheel[i] = new Bucket();
+		}
+
+		this.mask = wheelSize - 1;
+		this.startTime = System.nanoTime();
+		this.newTimeouts = new ConcurrentLinkedQueue<WheelTimeout>();
+		this.cancelledTimeouts = new ConcurrentLinkedQueue<WheelTimeout>();
+		this.tick = 0;
+		this.tickTask = executor.scheduleAtFixedRate(this::onTick, this.tickDurationInNanos, this.tickDurationInNanos, TimeUnit.NANOSECONDS);
+	}
+
+	ScheduledFuture<?> newTimeout(Runnable task, Duration delay)
+	{
+		long deadline = this.currentTime() + Math.max(0, delay.toNanos());
+		WheelTimeout timeout = new WheelTimeout(task, deadline);
+		this.newTimeouts.offer(timeout);
+		return timeout;
+	}
+
+	void stop()
+	{
+		this.tickTask.cancel(false);
+	}
+
+	private long currentTime()
+	{
+		return System.nanoTime() - this.startTime;
+	}
+
+	private void onTick()
+	{
+		try
+		{
+			long currentTime = this.currentTime();
+			// Ticks may fall behind when the executor is busy, so process every bucket whose time has passed
+			while((this.tick + 1) * this.tickDurationInNanos <= currentTime)
+			{
+				this.removeCancelledTimeouts();
+				this.transferNewTimeouts();
+				this.expireTimeouts(this.wheel[(int)(this.tick & this.mask)]);
+				this.tick++;
+			}
+		}
+		catch(Throwable e)
+		{
+			// Must not throw, or the executor stops ticking the wheel
+			TRACE_LOGGER.error("Advancing timer wheel failed.", e);
+		}
+	}
+
+	private void removeCancelledTimeouts()
+	{
+		WheelTimeout timeout;
+		while((timeout = this.cancelledTimeouts.poll()) != null)
+		{
+			if(timeout.bucket != null)
+			{
+				timeout.bucket.remove(timeout);
+			}
+		}
+	}
+
+	private void transferNewTimeouts()
+	{
+		WheelTimeout timeout;
+		while((timeout = this.newTimeouts.poll()) != null)
+		{
+			if(timeout.isCancelled())
+			{
+				continue;
+			}
+
+			long expiryTick = timeout.deadline / this.tickDurationInNanos;
+			timeout.remainingRounds = (expiryTick - this.tick) / this.wheel.length;
+			// Timeouts whose time has already passed go into the current bucket
+			this.wheel[(int)(Math.max(expiryTick, this.tick) & this.mask)].add(timeout);
+		}
+	}
+
+	private void expireTimeouts(Bucket bucket)
+	{
+		WheelTimeout timeout = bucket.head;
+		while(timeout != null)
+		{
+			WheelTimeout next = timeout.next;
+			if(timeout.remainingRounds <= 0)
+			{
+				bucket.remove(timeout);
+				timeout.expire();
+			}
+			else if(timeout.isCancelled())
+			{
+				bucket.remove(timeout);
+			}
+			else
+			{
+				timeout.remainingRounds--;
+			}
+
+			timeout = next;
+		}
+	}
+
+	private static final class Bucket
+	{
+		private WheelTimeout head;
+		private WheelTimeout tail;
+
+		void add(WheelTimeout timeout)
+		{
+			timeout.bucket = this;
+			if(this.head == null)
+			{
+				this.head = this.tail = timeout;
+			}
+			else
+			{
+				this.tail.next = timeout;
+				timeout.prev = this.tail;
+				this.tail = timeout;
+			}
+		}
+
+		void remove(WheelTimeout timeout)
+		{
+			if(timeout.prev == null)
+			{
+				this.head = timeout.next;
+			}
+			else
+			{
+				timeout.prev.next = timeout.next;
+			}
+
+			if(timeout.next == null)
+			{
+				this.tail = timeout.prev;
+			}
+			else
+			{
+				timeout.next.prev = timeout.prev;
+			}
+
+			timeout.prev = null;
+			timeout.next = null;
+			timeout.bucket = null;
+		}
+	}
+
+	private final class WheelTimeout implements ScheduledFuture<Void>
+	{
+		private static final int STATE_PENDING = 0;
+		private static final int STATE_CANCELLED = 1;
+		private static final int STATE_EXPIRED = 2;
+
+		private final Runnable task;
+		private final long deadline;
+		private final AtomicInteger state;
+		private final CompletableFuture<Void> completion;
+		// Accessed only by the tick
+		private long remainingRounds;
+		private Bucket bucket;
+		private WheelTimeout prev;
+		private WheelTimeout next;
+
+		WheelTimeout(Runnable task, long deadline)
+		{
+			this.task = task;
+			this.deadline = deadline;
+			this.state = new AtomicInteger(STATE_PENDING);
+			this.completion = new CompletableFuture<Void>();
+		}
+
+		void expire()
+		{
+			if(this.state.compareAndSet(STATE_PENDING, STATE_EXPIRED))
+			{
+				HashedWheelTimer.this.executor.execute(() -> {
+					try
+					{
+						this.task.run();
+						this.completion.complete(null);
+					}
+					catch(Throwable e)
+					{
+						this.completion.completeExceptionally(e);
+					}
+				});
+			}
+		}
+
+		// Task is never interrupted, as it is not started until the timeout expires and cannot be cancelled after that
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning)
+		{
+			if(this.state.compareAndSet(STATE_PENDING, STATE_CANCELLED))
+			{
+				HashedWheelTimer.this.cancelledTimeouts.offer(this);
+				this.completion.cancel(false);
+				return true;
+			}
+
+			return false;
+		}
+
+		@Override
+		public boolean isCancelled()
+		{
+			return this.state.get() == STATE_CANCELLED;
+		}
+
+		@Override
+		public boolean isDone()
+		{
+			return this.completion.isDone();
+		}
+
+		@Override
+		public Void get() throws InterruptedException, ExecutionException
+		{
+			return this.completion.get();
+		}
+
+		@Override
+		public Void get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException
+		{
+			return this.completion.get(timeout, unit);
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit)
+		{
+			return unit.convert(this.deadline - HashedWheelTimer.this.currentTime(), TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed other)
+		{
+			return Long.compare(this.getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+		}
+	}
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+package com.microsoft.azure.servicebus.primitives;
+
+import java.time.Duration;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.qpid.proton.amqp.Symbol;
+import org.apache.qpid.proton.message.Message;
+
+/**
+ * Batches messages sent one at a time. A message waits in the lingering batch until the linger time elapses, the batch fills up,
+ * or a message that can't go into the same batch arrives, and then the whole batch is sent. Each message's send completes when its batch is sent.
+ * Auto batching is disabled when linger time is zero.
+ */
+final class MessageAutoBatcher
+{
+	private final Object syncLock;
+	private final Supplier<CoreMessageBatch> batchFactory;
+	private final Function<CoreMessageBatch, CompletableFuture<Void>> batchSender;
+	private volatile Duration lingerTime;
+	private CoreMessageBatch lingeringBatch;
+	private Message lingeringBatchFirstMessage;
+	private LinkedList<CompletableFuture<Void>> lingeringSendFutures;
+	private ScheduledFuture<?> lingerTimeoutTask;
+	// Batches flushed under syncLock, sent in order after the lock is released
+	private final ConcurrentLinkedQueue<FlushedBatch> flushedBatches;
+	private final AtomicBoolean isSendingFlushedBatches;
+
+	MessageAutoBatcher(Supplier<CoreMessageBatch> batchFactory, Function<CoreMessageBatch, CompletableFuture<Void>> batchSender)
+	{
+		this.syncLock = new Object();
+		this.batchFactory = batchFactory;
+		this.batchSender = batchSender;
+		this.lingerTime = Duration.ZERO;
+		this.flushedBatches = new ConcurrentLinkedQueue<FlushedBatch>();
+		this.isSendingFlushedBatches = new AtomicBoolean(false);
+	}
+
+	Duration getLingerTime()
+	{
+		return this.lingerTime;
+	}
+
+	boolean isEnabled()
+	{
+		return !this.lingerTime.isZero();
+	}
+
+	void setLingerTime(Duration lingerTime)
+	{
+		if(lingerTime == null || lingerTime.isNegative())
+		{
+			throw new IllegalArgumentException("Linger time cannot be null or negative.");
+		}
+
+		synchronized (this.syncLock)
+		{
+			this.lingerTime = lingerTime;
+			if(lingerTime.isZero())
+			{
+				this.flushLingeringBatch();
+			}
+		}
+
+		this.sendFlushedBatches();
+	}
+
+	// Returns null if the message can't go into a batch, so it is sent on its own
+	CompletableFuture<Void> addAsync(Message msg)
+	{
+		CompletableFuture<Void> sendFuture = null;
+		synchronized (this.syncLock)
+		{
+			if(!this.lingerTime.isZero())
+			{
+				boolean isAdded = this.lingeringBatch != null && canBeBatchedTogether(this.lingeringBatchFirstMessage, msg) && this.lingeringBatch.tryAdd(msg);
+				if(!isAdded)
+				{
+					this.flushLingeringBatch();
+					CoreMessageBatch batch = this.batchFactory.get();
+					if(batch.tryAdd(msg))
+					{
+						this.lingeringBatch = batch;
+						this.lingeringBatchFirstMessage = msg;
+						this.lingeringSendFutures = new LinkedList<CompletableFuture<Void>>();
+						this.lingerTimeoutTask = Timer.schedule(() -> this.onLingerTimeElapsed(batch), this.lingerTime, TimerType.OneTimeRun);
+						isAdded = true;
+					}
+				}
+
+				if(isAdded)
+				{
+					sendFuture = new CompletableFuture<Void>();
+					this.lingeringSendFutures.add(sendFuture);
+				}
+			}
+		}
+
+		this.sendFlushedBatches();
+		return sendFuture;
+	}
+
+	// Sends the lingering batch now. Returned future completes when the sends of its messages complete, successfully or not.
+	CompletableFuture<Void> flushAsync()
+	{
+		LinkedList<CompletableFuture<Void>> flushedSendFutures;
+		synchronized (this.syncLock)
+		{
+			flushedSendFutures = this.flushLingeringBatch();
+		}
+
+		this.sendFlushedBatches();
+		if(flushedSendFutures == null)
+		{
+			return CompletableFuture.completedFuture(null);
+		}
+
+		return CompletableFuture.allOf(flushedSendFutures.toArray(new CompletableFuture<?>[0])).handle((v, ex) -> null);
+	}
+
+	private void onLingerTimeElapsed(CoreMessageBatch batch)
+	{
+		synchronized (this.syncLock)
+		{
+			// Batch may have been flushed already because it filled up
+			if(this.lingeringBatch == batch)
+			{
+				this.flushLingeringBatch();
+			}
+		}
+
+		this.sendFlushedBatches();
+	}
+
+	// Must be called while holding syncLock. The batch is only detached here and sent by sendFlushedBatches once the lock is released,
+	// so sends and their completions don't run under the lock. Returns the send futures of the flushed messages, or null if there was no batch.
+	private LinkedList<CompletableFuture<Void>> flushLingeringBatch()
+	{
+		if(this.lingeringBatch == null)
+		{
+			return null;
+		}
+
+		CoreMessageBatch batch = this.lingeringBatch;
+		LinkedList<CompletableFuture<Void>> sendFutures = this.lingeringSendFutures;
+		this.lingeringBatch = null;
+		this.lingeringBatchFirstMessage = null;
+		this.lingeringSendFutures = null;
+		this.lingerTimeoutTask.cancel(false);
+		this.lingerTimeoutTask = null;
+
+		this.flushedBatches.offer(new FlushedBatch(batch, sendFutures));
+		return sendFutures;
+	}
+
+	// Flushed batches are sent in the order they were flushed, by one thread at a time
+	private void sendFlushedBatches()
+	{
+		while(!this.flushedBatches.isEmpty() && this.isSendingFlushedBatches.compareAndSet(false, true))
+		{
+			FlushedBatch flushedBatch;
+			while((flushedBatch = this.flushedBatches.poll()) != null)
+			{
+				this.sendFlushedBatch(flushedBatch.batch, flushedBatch.sendFutures);
+			}
+
+			// A batch flushed after the poll above may have seen the sending thread busy, so the queue is checked again
+			this.isSendingFlushedBatches.set(false);
+		}
+	}
+
+	private void sendFlushedBatch(CoreMessageBatch batch, LinkedList<CompletableFuture<Void>> sendFutures)
+	{
+		CompletableFuture<Void> batchSendFuture;
+		try
+		{
+			batchSendFuture = this.batchSender.apply(batch);
+		}
+		catch(RuntimeException e)
+		{
+			batchSendFuture = new CompletableFuture<Void>();
+			batchSendFuture.completeExceptionally(e);
+		}
+
+		batchSendFuture.whenComplete((v, sendEx) -> {
+			for(CompletableFuture<Void> sendFuture : sendFutures)
+			{
+				if(sendEx == null)
+				{
+					sendFuture.complete(null);
+				}
+				else
+				{
+					sendFuture.completeExceptionally(ExceptionUtil.extractAsyncCompletionCause(sendEx));
+				}
+			}
+		});
+	}
+
+	// Batch envelope carries the annotations of its first message, like partition key, and a batch can't span sessions.
+	private static boolean canBeBatchedTogether(Message firstMessage, Message message)
+	{
+		Map<Symbol, Object> firstMessageAnnotations = firstMessage.getMessageAnnotations() == null ? null : firstMessage.getMessageAnnotations().getValue();
+		Map<Symbol, Object> messageAnnotations = message.getMessageAnnotations() == null ? null : message.getMessageAnnotations().getValue();
+		return Objects.equals(firstMessageAnnotations, messageAnnotations) && Objects.equals(firstMessage.getGroupId(), message.getGroupId());
+	}
+
+	private static final class FlushedBatch
+	{
+		private final CoreMessageBatch batch;
+		private final LinkedList<CompletableFuture<Void>> sendFutures;
+
+		FlushedBatch(CoreMessageBatch batch, LinkedList<CompletableFuture<Void>> sendFutures)
+		{
+			this.batch = batch;
+			this.sendFutures = sendFutures;
+		}
+	}
+}
@@ -3,20 +3,74 @@ package com.microsoft.azure.servicebus.primitives;
 import org.apache.qpid.proton.message.Message;
 
 public class MessageWithDeliveryTag {
-	private final Message message;
+	private volatile Message message;
 	private final byte[] deliveryTag;	
+	private final int encodedSize;
+	private byte[] encodedMessage; // Borrowed from BufferPool, null once decoded
+	private final long receivedAtMillis; // Zero if not received on a receive link
 
 	public MessageWithDeliveryTag(Message message, byte[] deliveryTag)
 	{
 		this.message = message;
-		this.deliveryTag = deliveryTag;				
+		this.deliveryTag = deliveryTag;
+		this.encodedSize = 0;
+		this.encodedMessage = null;
+		this.receivedAtMillis = 0;
+	}
+	
+	MessageWithDeliveryTag(Message message, byte[] deliveryTag, int encodedSize)
+	{
+		this.message = message;
+		this.deliveryTag = deliveryTag;
+		this.encodedSize = encodedSize;
+		this.encodedMessage = null;
+		this.receivedAtMillis = System.currentTimeMillis();
+	}
+	
+	// Message is decoded on first access, and the array holding the encoded message is then returned to BufferPool.
+	// An array of a message never decoded, like one still prefetched when its receiver is closed, is left to the garbage collector.
+	MessageWithDeliveryTag(byte[] encodedMessage, int encodedSize, byte[] deliveryTag)
+	{
+		this.message = null;
+		this.deliveryTag = deliveryTag;
+		this.encodedSize = encodedSize;
+		this.encodedMessage = encodedMessage;
+		this.receivedAtMillis = System.currentTimeMillis();
 	}
 	
 	public Message getMessage() {
-		return message;
+		Message decodedMessage = this.message;
+		if (decodedMessage == null) {
+			synchronized (this) {
+				decodedMessage = this.message;
+				if (decodedMessage == null) {
+					byte[] encodedMessageToRelease = this.encodedMessage;
+					decodedMessage = Util.decodeMessage(encodedMessageToRelease, this.encodedSize);
+					this.message = decodedMessage;
+					this.encodedMessage = null;
+					// Decoded message doesn't refer to the encoded message
+					BufferPool.release(encodedMessageToRelease);
+				}
+			}
+		}
+		
+		return decodedMessage;
 	}
 
 	public byte[] getDeliveryTag() {
 		return deliveryTag;
-	}	
+	}
+	
+	// Size of the message as received, counted against prefetch memory limits while the message is prefetched
+	int getEncodedSize() {
+		return encodedSize;
+	}
+	
+	long getReceivedAtMillis() {
+		return receivedAtMillis;
+	}
+	
+	boolean isDecoded() {
+		return this.message != null;
+	}
 }
@@ -73,11 +73,13 @@ public class MessagingFactory extends ClientEntity implements IAmqpConnection
 	private Throwable lastCBSLinkCreationException = null;
 	
 	private final ClientSettings clientSettings;
+	private final PrefetchMemoryBudget prefetchMemoryBudget;
 	
 	private MessagingFactory(URI namespaceEndpointUri, ClientSettings clientSettings)
 	{
 	    super("MessagingFactory".concat(StringUtil.getShortRandomString()));
 	    this.clientSettings = clientSettings;
+	    this.prefetchMemoryBudget = new PrefetchMemoryBudget(clientSettings.getPrefetchMemoryBudgetInBytes());
 	    
 	    this.hostName = namespaceEndpointUri.getHost();
 	    this.registeredLinks = new LinkedList<Link>();
@@ -179,6 +181,12 @@ public class MessagingFactory extends ClientEntity implements IAmqpConnection
 		return this.clientSettings.getRetryPolicy();
 	}
 	
+	// Shared by all receivers created from this factory
+	PrefetchMemoryBudget getPrefetchMemoryBudget()
+	{
+	    return this.prefetchMemoryBudget;
+	}
+	
 	public ClientSettings getClientSetttings()
 	{
 	    return this.clientSettings;
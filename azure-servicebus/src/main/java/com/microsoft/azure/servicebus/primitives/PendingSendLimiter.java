@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+package com.microsoft.azure.servicebus.primitives;
+
+import java.util.ArrayDeque;
+import java.util.LinkedList;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Bounds the number and total encoded size of sends a sender has in flight. Sends beyond the limits wait for admission in the order they arrive,
+ * and are admitted as in-flight sends complete. A send larger than the byte limit is admitted when no other send is in flight, so it never waits forever.
+ */
+final class PendingSendLimiter
+{
+	private final Object syncLock;
+	private final ArrayDeque<Admission> waitingAdmissions;
+	private int maxCount;
+	private long maxBytes;
+	private int inFlightCount;
+	private long inFlightBytes;
+
+	PendingSendLimiter(int maxCount, long maxBytes)
+	{
+		this.syncLock = new Object();
+		this.waitingAdmissions = new ArrayDeque<Admission>();
+		this.setLimits(maxCount, maxBytes);
+	}
+
+	int getMaxCount()
+	{
+		synchronized (this.syncLock)
+		{
+			return this.maxCount;
+		}
+	}
+
+	long getMaxBytes()
+	{
+		synchronized (this.syncLock)
+		{
+			return this.maxBytes;
+		}
+	}
+
+	void setLimits(int maxCount, long maxBytes)
+	{
+		if(maxCount <= 0 || maxBytes <= 0)
+		{
+			throw new IllegalArgumentException("Maximum pending send count and bytes must be positive.");
+		}
+
+		LinkedList<Admission> admitted;
+		synchronized (this.syncLock)
+		{
+			this.maxCount = maxCount;
+			this.maxBytes = maxBytes;
+			// Raised limits may let waiting sends in
+			admitted = this.admitWaitingSends();
+		}
+
+		completeAdmissions(admitted);
+	}
+
+	int getInFlightCount()
+	{
+		synchronized (this.syncLock)
+		{
+			return this.inFlightCount;
+		}
+	}
+
+	long getInFlightBytes()
+	{
+		synchronized (this.syncLock)
+		{
+			return this.inFlightBytes;
+		}
+	}
+
+	int getWaitingCount()
+	{
+		synchronized (this.syncLock)
+		{
+			return this.waitingAdmissions.size();
+		}
+	}
+
+	/**
+	 * Acquires room for a send of the given size.
+	 * @param sizeInBytes encoded size of the send
+	 * @return a future that is already completed if the send is admitted right away, or completes when the send is admitted.
+	 * Completing the returned future by any other means withdraws the send from the waiting sends.
+	 */
+	CompletableFuture<Void> acquireAsync(int sizeInBytes)
+	{
+		synchronized (this.syncLock)
+		{
+			// Sends that arrive while others are waiting join the back of the line, so waiting sends are not starved
+			if(this.waitingAdmissions.isEmpty() && this.canAdmit(sizeInBytes))
+			{
+				this.inFlightCount++;
+				this.inFlightBytes += sizeInBytes;
+				return CompletableFuture.completedFuture(null);
+			}
+
+			Admission admission = new Admission(sizeInBytes);
+			this.waitingAdmissions.offer(admission);
+			return admission.future;
+		}
+	}
+
+	// Must be called exactly once for each admitted send, when the send completes
+	void release(int sizeInBytes)
+	{
+		LinkedList<Admission> admitted;
+		synchronized (this.syncLock)
+		{
+			this.inFlightCount--;
+			this.inFlightBytes -= sizeInBytes;
+			admitted = this.admitWaitingSends();
+		}
+
+		completeAdmissions(admitted);
+	}
+
+	// Fails all waiting sends, like when the sender is closed
+	void failWaitingSends(Throwable exception)
+	{
+		LinkedList<Admission> failed;
+		synchronized (this.syncLock)
+		{
+			failed = new LinkedList<Admission>(this.waitingAdmissions);
+			this.waitingAdmissions.clear();
+		}
+
+		for(Admission admission : failed)
+		{
+			AsyncUtil.completeFutureExceptionally(admission.future, exception);
+		}
+	}
+
+	private boolean canAdmit(int sizeInBytes)
+	{
+		if(this.inFlightCount == 0)
+		{
+			return true;
+		}
+
+		return this.inFlightCount < this.maxCount && this.inFlightBytes + sizeInBytes <= this.maxBytes;
+	}
+
+	// Must be called while holding syncLock. Admitted futures are completed outside the lock, as completing them starts the sends.
+	private LinkedList<Admission> admitWaitingSends()
+	{
+		LinkedList<Admission> admitted = null;
+		Admission admission;
+		while((admission = this.waitingAdmissions.peek()) != null)
+		{
+			if(admission.future.isDone())
+			{
+				// Timed out or cancelled while waiting
+				this.waitingAdmissions.poll();
+				continue;
+			}
+
+			if(!this.canAdmit(admission.sizeInBytes))
+			{
+				break;
+			}
+
+			this.waitingAdmissions.poll();
+			this.inFlightCount++;
+			this.inFlightBytes += admission.sizeInBytes;
+			if(admitted == null)
+			{
+				admitted = new LinkedList<Admission>();
+			}
+
+			admitted.add(admission);
+		}
+
+		return admitted;
+	}
+
+	private void completeAdmissions(LinkedList<Admission> admitted)
+	{
+		if(admitted == null)
+		{
+			return;
+		}
+
+		for(Admission admission : admitted)
+		{
+			if(!admission.future.complete(null))
+			{
+				// Send gave up waiting just as it was admitted
+				this.release(admission.sizeInBytes);
+			}
+		}
+	}
+
+	private static final class Admission
+	{
+		private final int sizeInBytes;
+		private final CompletableFuture<Void> future;
+
+		Admission(int sizeInBytes)
+		{
+			this.sizeInBytes = sizeInBytes;
+			this.future = new CompletableFuture<Void>();
+		}
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+package com.microsoft.azure.servicebus.primitives;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Memory shared by the prefetched messages of all receivers created from a messaging factory. Receivers reserve the encoded size of each prefetched message
+ * and release it when the message is handed over to the application. Receivers that can't issue credit because the budget is used up wait to be notified
+ * when memory is released.
+ */
+final class PrefetchMemoryBudget
+{
+	private final long maxBytes;
+	private final AtomicLong usedBytes;
+	private final ConcurrentLinkedQueue<Waiter> waiters;
+
+	PrefetchMemoryBudget(long maxBytes)
+	{
+		if(maxBytes <= 0)
+		{
+			throw new IllegalArgumentException("Prefetch memory budget must be positive.");
+		}
+
+		this.maxBytes = maxBytes;
+		this.usedBytes = new AtomicLong();
+		this.waiters = new ConcurrentLinkedQueue<Waiter>();
+	}
+
+	boolean isLimited()
+	{
+		return this.maxBytes != Long.MAX_VALUE;
+	}
+
+	long getMaxBytes()
+	{
+		return this.maxBytes;
+	}
+
+	long getUsedBytes()
+	{
+		return this.usedBytes.get();
+	}
+
+	long getAvailableBytes()
+	{
+		return this.maxBytes - this.usedBytes.get();
+	}
+
+	void reserve(long bytes)
+	{
+		this.usedBytes.addAndGet(bytes);
+	}
+
+	void release(long bytes)
+	{
+		this.usedBytes.addAndGet(-bytes);
+		this.notifyWaiters();
+	}
+
+	// Waiter is run once, when at least the given number of bytes is available, on the thread that releases memory, so it must be short.
+	// Waiters are notified in the order they started waiting.
+	void waitForAvailableBytes(long bytes, Runnable waiter)
+	{
+		this.waiters.offer(new Waiter(bytes, waiter));
+		// Memory may have been released after the caller found the budget used up, but before the waiter was added
+		this.notifyWaiters();
+	}
+
+	private void notifyWaiters()
+	{
+		Waiter waiter;
+		while((waiter = this.waiters.peek()) != null && this.getAvailableBytes() >= waiter.bytes)
+		{
+			if(this.waiters.remove(waiter))
+			{
+				waiter.runnable.run();
+			}
+		}
+	}
+
+	private static final class Waiter
+	{
+		private final long bytes;
+		private final Runnable runnable;
+
+		Waiter(long bytes, Runnable runnable)
+		{
+			this.bytes = bytes;
+			this.runnable = runnable;
+		}
+	}
+}
@@ -9,9 +9,9 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.qpid.proton.amqp.Symbol;
 import org.apache.qpid.proton.amqp.UnsignedInteger;
@@ -44,14 +44,15 @@ import com.microsoft.azure.servicebus.amqp.SessionHandler;
 
 class RequestResponseLink extends ClientEntity{
 	private static final Logger TRACE_LOGGER = LoggerFactory.getLogger(RequestResponseLink.class);
+	private static final String REQUEST_ID_PREFIX = "request:";
 	
 	private final Object recreateLinksLock;
 	private final MessagingFactory underlyingFactory;
 	private final String linkPath;
 	private final String sasTokenAudienceURI;
 	private final CompletableFuture<RequestResponseLink> createFuture;
-	private final ConcurrentHashMap<String, RequestResponseWorkItem> pendingRequests;
-    private final AtomicInteger requestCounter;
+	private final ConcurrentLongHashMap<RequestResponseWorkItem> pendingRequests;
+    private final AtomicLong requestCounter;
     private final String replyTo;
     
     private ScheduledFuture<?> sasTokenRenewTimerFuture;
@@ -158,8 +159,8 @@ class RequestResponseLink extends ClientEntity{
 		this.sasTokenAudienceURI = sasTokenAudienceURI;
 		this.amqpSender = new InternalSender(linkName + ":internalSender", this, null);
 		this.amqpReceiver = new InternalReceiver(linkName + ":interalReceiver", this);
-		this.pendingRequests = new ConcurrentHashMap<>();
-		this.requestCounter = new AtomicInteger();
+		this.pendingRequests = new ConcurrentLongHashMap<RequestResponseWorkItem>();
+		this.requestCounter = new AtomicLong();
 		this.replyTo = UUID.randomUUID().toString();
 		this.createFuture = new CompletableFuture<RequestResponseLink>();
 		this.entityType = entityType;
@@ -442,8 +443,8 @@ class RequestResponseLink extends ClientEntity{
 		
 		CompletableFuture<Message> responseFuture = new CompletableFuture<Message>();
 		RequestResponseWorkItem workItem = new RequestResponseWorkItem(requestMessage, responseFuture, timeout);
-		String requestId = "request:" +  this.requestCounter.incrementAndGet();
-		requestMessage.setMessageId(requestId);
+		long requestId = this.requestCounter.incrementAndGet();
+		requestMessage.setMessageId(REQUEST_ID_PREFIX + requestId);
 		requestMessage.setReplyTo(this.replyTo);
 		this.pendingRequests.put(requestId, workItem);
 		workItem.setTimeoutTask(this.scheduleRequestTimeout(requestId, timeout));
@@ -460,7 +461,25 @@ class RequestResponseLink extends ClientEntity{
 		return responseFuture;
 	}
 	
-	private ScheduledFuture<?> scheduleRequestTimeout(String requestId, Duration timeout)
+	// Returns -1 if correlation id is not a request id generated by this link
+	private static long parseRequestId(Object correlationId)
+	{
+		if(correlationId instanceof String && ((String)correlationId).startsWith(REQUEST_ID_PREFIX))
+		{
+			try
+			{
+				return Long.parseLong(((String)correlationId).substring(REQUEST_ID_PREFIX.length()));
+			}
+			catch(NumberFormatException e)
+			{
+				return -1;
+			}
+		}
+		
+		return -1;
+	}
+	
+	private ScheduledFuture<?> scheduleRequestTimeout(long requestId, Duration timeout)
 	{
 		return Timer.schedule(new Runnable() {
 				public void run()
@@ -470,11 +489,11 @@ class RequestResponseLink extends ClientEntity{
 					boolean isRetriedWorkItem = completedWorkItem.getLastKnownException() != null;
 					RequestResponseLink.this.amqpSender.removeEnqueuedRequest(requestId, isRetriedWorkItem);
 				}
-			}, timeout, TimerType.OneTimeRun);
+			}, timeout, TimerType.CoarseOneTimeRun);
 	}
 	
 	
-	private RequestResponseWorkItem exceptionallyCompleteRequest(String requestId, Exception exception, boolean useLastKnownException)
+	private RequestResponseWorkItem exceptionallyCompleteRequest(long requestId, Exception exception, boolean useLastKnownException)
 	{
 		RequestResponseWorkItem workItem = this.pendingRequests.remove(requestId);
 		if(workItem != null)
@@ -493,7 +512,7 @@ class RequestResponseLink extends ClientEntity{
 		return workItem;
 	}
 	
-	private RequestResponseWorkItem completeRequestWithResponse(String requestId, Message responseMessage)
+	private RequestResponseWorkItem completeRequestWithResponse(long requestId, Message responseMessage)
 	{
 		RequestResponseWorkItem workItem = this.pendingRequests.get(requestId);
 		if(workItem != null)
@@ -725,15 +744,16 @@ class RequestResponseLink extends ClientEntity{
 		    // Return response in a separate thread so reactor thread is free to handle reactor events
 		    final Message finalResponseMessage = responseMessage;
 		    MessagingFactory.INTERNAL_THREAD_POOL.submit(() -> {
-		        String requestMessageId = (String)finalResponseMessage.getCorrelationId();
-		        if(requestMessageId != null)
+		        Object requestMessageId = finalResponseMessage.getCorrelationId();
+		        long requestId = RequestResponseLink.parseRequestId(requestMessageId);
+		        if(requestId >= 0)
 	            {
-	                TRACE_LOGGER.debug("RequestRespnseLink received response for request with id :{}", requestMessageId);
-	                this.parent.completeRequestWithResponse(requestMessageId, finalResponseMessage);
+	                TRACE_LOGGER.debug("RequestRespnseLink received response for request with id :{}", requestId);
+	                this.parent.completeRequestWithResponse(requestId, finalResponseMessage);
 	            }
 	            else
 	            {
-	                TRACE_LOGGER.warn("RequestRespnseLink received a message with null correlationId");
+	                TRACE_LOGGER.warn("RequestRespnseLink received a message with null or unknown correlationId :{}", requestMessageId);
 	            }
 		    });
 		}
@@ -752,12 +772,13 @@ class RequestResponseLink extends ClientEntity{
 		private CompletableFuture<Void> openFuture;
 		private CompletableFuture<Void> closeFuture;
 		private AtomicInteger availableCredit;
-		private LinkedList<String> pendingFreshSends;
-		private LinkedList<String> pendingRetrySends;
+		private LinkedList<Long> pendingFreshSends;
+		private LinkedList<Long> pendingRetrySends;
 		private Object pendingSendsSyncLock;
 		private boolean isSendLoopRunning;
 		private int maxMessageSize;
 		private int linkGeneration;
+		private long deliveryTagCounter;
 
 		protected InternalSender(String clientId, RequestResponseLink parent, InternalSender senderToBeCopied) {
 			super(clientId);			
@@ -885,7 +906,7 @@ class RequestResponseLink extends ClientEntity{
 			}
 		}
 		
-		public void sendRequest(String requestId, boolean isRetry)
+		public void sendRequest(long requestId, boolean isRetry)
 		{
 			synchronized(this.pendingSendsSyncLock)
 			{
@@ -917,18 +938,18 @@ class RequestResponseLink extends ClientEntity{
             }
 		}
 		
-		public void removeEnqueuedRequest(String requestId, boolean isRetry)
+		public void removeEnqueuedRequest(long requestId, boolean isRetry)
 		{
 			synchronized(this.pendingSendsSyncLock)
 			{
 				// Collections are more likely to be very small. So remove() shouldn't be a problem.
 				if(isRetry)
 				{
-					this.pendingRetrySends.remove(requestId);
+					this.pendingRetrySends.remove(Long.valueOf(requestId));
 				}
 				else
 				{
-					this.pendingFreshSends.remove(requestId);
+					this.pendingFreshSends.remove(Long.valueOf(requestId));
 				}				
 			}
 		}
@@ -972,7 +993,7 @@ class RequestResponseLink extends ClientEntity{
             {
                 while(this.sendLink != null && this.sendLink.getLocalState() == EndpointState.ACTIVE && this.sendLink.getRemoteState() == EndpointState.ACTIVE && this.availableCredit.get() > 0)
                 {
-                	String requestIdToBeSent = null;					
+                	Long requestIdToBeSent = null;					
                     synchronized(pendingSendsSyncLock)
                     {
                         // First send retries and then fresh ones
@@ -993,7 +1014,8 @@ class RequestResponseLink extends ClientEntity{
                     RequestResponseWorkItem requestToBeSent = this.parent.pendingRequests.get(requestIdToBeSent);
                     if(requestToBeSent != null)
                     {
-                    	Delivery delivery = this.sendLink.delivery(UUID.randomUUID().toString().getBytes());
+                    	// Requests are settled on send, so tags only need to be unique on this link
+                    	Delivery delivery = this.sendLink.delivery(Util.convertLongToDeliveryTag(this.deliveryTagCounter++));
                         delivery.setMessageFormat(DeliveryImpl.DEFAULT_MESSAGE_FORMAT);
                     
                         Pair<byte[], Integer> encodedPair = null;
@@ -1019,6 +1041,14 @@ class RequestResponseLink extends ClientEntity{
                             TRACE_LOGGER.error("RequestResonseLink {} failed to send request with request id:{}.", this.parent.linkPath, requestIdToBeSent, e);
                             this.parent.exceptionallyCompleteRequest(requestIdToBeSent, e, false);
                         }
+                        finally
+                        {
+                            // Proton copies the bytes on send. Retries encode the request again.
+                            if(encodedPair != null)
+                            {
+                                BufferPool.release(encodedPair.getFirstItem());
+                            }
+                        }
                     }
                     else
                     {
@@ -13,21 +13,21 @@ class SendWorkItem<T> extends WorkItem<T>
 	private int messageFormat;
 	private int encodedMessageSize;
 	private boolean waitingForAck;
-	private String deliveryTag;
+	private long deliveryTag;
 	
-	public SendWorkItem(byte[] amqpMessage, int encodedMessageSize, int messageFormat, String deliveryTag, CompletableFuture<T> completableFuture, Duration timeout)
+	public SendWorkItem(byte[] amqpMessage, int encodedMessageSize, int messageFormat, long deliveryTag, CompletableFuture<T> completableFuture, Duration timeout)
 	{
 		super(completableFuture, timeout);
 		this.initialize(amqpMessage, encodedMessageSize, messageFormat, deliveryTag);
 	}
 
-	public SendWorkItem(byte[] amqpMessage, int encodedMessageSize, int messageFormat, String deliveryTag, CompletableFuture<T> completableFuture, TimeoutTracker timeout)
+	public SendWorkItem(byte[] amqpMessage, int encodedMessageSize, int messageFormat, long deliveryTag, CompletableFuture<T> completableFuture, TimeoutTracker timeout)
 	{
 		super(completableFuture, timeout);
 		this.initialize(amqpMessage, encodedMessageSize, messageFormat, deliveryTag);
 	}
 
-	private void initialize(byte[] amqpMessage, int encodedMessageSize, int messageFormat, String deliveryTag)
+	private void initialize(byte[] amqpMessage, int encodedMessageSize, int messageFormat, long deliveryTag)
 	{
 		this.amqpMessage = amqpMessage;
 		this.messageFormat = messageFormat;
@@ -40,6 +40,14 @@ class SendWorkItem<T> extends WorkItem<T>
 		return this.amqpMessage;
 	}
 
+	// Returns the encoded message array to the BufferPool. Must be called only once the delivery is settled, as retries resend the same array.
+	public void releaseMessage()
+	{
+		byte[] messageToRelease = this.amqpMessage;
+		this.amqpMessage = null;
+		BufferPool.release(messageToRelease);
+	}
+
 	public int getEncodedMessageSize()
 	{
 		return this.encodedMessageSize;
@@ -60,12 +68,12 @@ class SendWorkItem<T> extends WorkItem<T>
 		return this.waitingForAck;
 	}
 	
-	public String getDeliveryTag()
+	public long getDeliveryTag()
 	{
 	    return this.deliveryTag;
 	}
 	
-	public void setDeliveryTag(String deliveryTag)
+	public void setDeliveryTag(long deliveryTag)
 	{
 	    this.deliveryTag = deliveryTag;
 	}
@@ -20,7 +20,11 @@ import org.slf4j.LoggerFactory;
  */
 final public class Timer
 {
+	private static final Duration WHEEL_TICK_DURATION = Duration.ofMillis(10);
+	private static final int WHEEL_SIZE = 1024;
+	
 	private static ScheduledExecutorService executor = null;
+	private static HashedWheelTimer wheelTimer = null;
 
 	private static final Logger TRACE_LOGGER = LoggerFactory.getLogger(Timer.class);
 	private static final HashSet<String> references = new HashSet<String>();
@@ -42,6 +46,9 @@ final public class Timer
 		case RepeatRun:
 			return executor.scheduleWithFixedDelay(runnable, runFrequency.toMillis(), runFrequency.toMillis(), TimeUnit.MILLISECONDS);
 
+		case CoarseOneTimeRun:
+			return wheelTimer.newTimeout(runnable, runFrequency);
+
 		default:
 			throw new UnsupportedOperationException("Unsupported timer pattern.");
 		}
@@ -57,6 +64,7 @@ final public class Timer
 				TRACE_LOGGER.debug("Starting ScheduledThreadPoolExecutor with coreThreadPoolSize:{}", corePoolSize);
 				
 				executor = Executors.newScheduledThreadPool(corePoolSize);
+				wheelTimer = new HashedWheelTimer(executor, WHEEL_TICK_DURATION, WHEEL_SIZE);
 			}
 
 			references.add(clientId);
@@ -70,6 +78,7 @@ final public class Timer
 			if (references.remove(clientId) && references.size() == 0 && executor != null)
 			{				
 				TRACE_LOGGER.debug("Shuting down ScheduledThreadPoolExecutor");
+				wheelTimer.stop();
 				executor.shutdownNow();
 			}
 		}
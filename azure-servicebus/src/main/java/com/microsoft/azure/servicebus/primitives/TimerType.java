@@ -7,5 +7,7 @@ package com.microsoft.azure.servicebus.primitives;
 public enum TimerType
 {
 	OneTimeRun,
-	RepeatRun
+	RepeatRun,
+	// One time run on a hashed wheel, for high volume timeouts that don't need to be precise and are usually cancelled
+	CoarseOneTimeRun
 }
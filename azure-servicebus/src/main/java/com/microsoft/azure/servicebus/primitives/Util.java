@@ -33,6 +33,7 @@ import org.apache.qpid.proton.amqp.messaging.ApplicationProperties;
 import org.apache.qpid.proton.amqp.messaging.Data;
 import org.apache.qpid.proton.amqp.messaging.MessageAnnotations;
 import org.apache.qpid.proton.amqp.messaging.Section;
+import org.apache.qpid.proton.codec.ReadableBuffer;
 import org.apache.qpid.proton.engine.Delivery;
 import org.apache.qpid.proton.engine.Link;
 import org.apache.qpid.proton.engine.Receiver;
@@ -47,6 +48,11 @@ public class Util
 {
 	private static final long EPOCHINDOTNETTICKS = 621355968000000000l;
 	private static final int GUIDSIZE = 16;
+	// Format codes from AMQP 1.0 types spec, used for writing data sections directly
+	private static final byte AMQP_DESCRIBED_TYPE_CONSTRUCTOR = 0x00;
+	private static final byte AMQP_SMALLULONG_FORMAT_CODE = 0x53;
+	private static final byte AMQP_VBIN32_FORMAT_CODE = (byte)0xb0;
+	private static final byte AMQP_DATA_SECTION_DESCRIPTOR = 0x75;
 	
 	private Util()
 	{
@@ -295,6 +301,37 @@ public class Util
 		return dotNetBytes;
 	}
 	
+	// Delivery tags generated by the client are counter values, written big endian with leading zero bytes dropped. Keeps tags short on the wire and cheap to look up.
+	static byte[] convertLongToDeliveryTag(long tagValue)
+	{
+		int length = Math.max(1, Long.BYTES - Long.numberOfLeadingZeros(tagValue) / Byte.SIZE);
+		byte[] deliveryTag = new byte[length];
+		for(int i=length-1; i>=0; i--)
+		{
+			deliveryTag[i] = (byte)tagValue;
+			tagValue >>>= Byte.SIZE;
+		}
+		
+		return deliveryTag;
+	}
+	
+	// Returns -1 if the tag is not one generated by convertLongToDeliveryTag
+	static long convertDeliveryTagToLong(byte[] deliveryTag)
+	{
+		if(deliveryTag == null || deliveryTag.length == 0 || deliveryTag.length > Long.BYTES)
+		{
+			return -1;
+		}
+		
+		long tagValue = 0;
+		for(byte tagByte : deliveryTag)
+		{
+			tagValue = (tagValue << Byte.SIZE) | (tagByte & 0xFF);
+		}
+		
+		return tagValue < 0 ? -1 : tagValue;
+	}
+	
 	private static int getPayloadSize(Message msg)
 	{
 		if (msg == null || msg.getBody() == null)
@@ -353,21 +390,79 @@ public class Util
 		return annotationsSize + applicationPropertiesSize + payloadSize;
 	}
 	
+	// Encodes in a single pass into a buffer that grows as needed, so the result is exact regardless of what types the message carries.
+	// Returned array is borrowed from BufferPool. Callers should release it to the pool once the encoded bytes are no longer needed.
 	static Pair<byte[], Integer> encodeMessageToOptimalSizeArray(Message message, int maxMessageSize) throws PayloadSizeExceededException
 	{
-		int payloadSize = Util.getDataSerializedSize(message);
-		int allocationSize = Math.min(payloadSize + ClientConstants.MAX_MESSAGING_AMQP_HEADER_SIZE_BYTES, maxMessageSize);
-		byte[] encodedBytes = new byte[allocationSize];
-		int encodedSize = encodeMessageToCustomArray(message, encodedBytes, 0, allocationSize);
-		return new Pair<byte[], Integer>(encodedBytes, encodedSize);
+		GrowableWritableBuffer encodingBuffer = new GrowableWritableBuffer(getEncodedSizeHint(message), maxMessageSize);
+		try
+		{
+			int encodedSize = encodeMessageToBuffer(message, encodingBuffer);
+			return new Pair<byte[], Integer>(encodingBuffer.getArray(), encodedSize);
+		}
+		catch(PayloadSizeExceededException exception)
+		{
+			encodingBuffer.release();
+			throw exception;
+		}
+	}
+	
+	static int encodeMessageToBuffer(Message message, GrowableWritableBuffer buffer) throws PayloadSizeExceededException
+	{
+		try
+		{
+			return message.encode(buffer);
+		}
+		catch(BufferOverflowException exception)
+		{
+			throw new PayloadSizeExceededException(String.format("Size of the payload exceeded Maximum message size: %s KB", buffer.getMaxCapacity() / 1024), exception);
+		}
+	}
+	
+	// Only a starting capacity for the encoding buffer, it doesn't need to be accurate. Binary body dominates the size of most messages.
+	static int getEncodedSizeHint(Message message)
+	{
+		return ClientConstants.MAX_MESSAGING_AMQP_HEADER_SIZE_BYTES + getDataBodyLength(message);
 	}
 	
-	static Pair<byte[], Integer> encodeMessageToMaxSizeArray(Message message, int maxMessageSize) throws PayloadSizeExceededException
+	static int getDataBodyLength(Message message)
 	{
-		// May be we should reduce memory allocations. Use a pool of byte arrays or something
-		byte[] encodedBytes = new byte[maxMessageSize];
-		int encodedSize = encodeMessageToCustomArray(message, encodedBytes, 0, maxMessageSize);
-		return new Pair<byte[], Integer>(encodedBytes, encodedSize);
+		Section bodySection = message.getBody();
+		if(bodySection instanceof Data && ((Data)bodySection).getValue() != null)
+		{
+			return ((Data)bodySection).getValue().getLength();
+		}
+		
+		return 0;
+	}
+	
+	// Encodes the message as the binary value of a Data section, directly at the current position of the buffer.
+	// Equivalent to encoding a message with body new Data(new Binary(encodedInnerMessage)), without encoding the inner message into a separate array first.
+	// Length is always written as vbin32 because it is only known after the inner message is encoded.
+	// If the section doesn't fit, buffer position is restored to where it was, so the buffer is still usable.
+	static int encodeMessageToDataSection(Message message, GrowableWritableBuffer buffer) throws PayloadSizeExceededException
+	{
+		int sectionStart = buffer.position();
+		try
+		{
+			buffer.put(AMQP_DESCRIBED_TYPE_CONSTRUCTOR);
+			buffer.put(AMQP_SMALLULONG_FORMAT_CODE);
+			buffer.put(AMQP_DATA_SECTION_DESCRIPTOR);
+			buffer.put(AMQP_VBIN32_FORMAT_CODE);
+			int lengthPosition = buffer.position();
+			buffer.putInt(0);
+			int encodedSize = message.encode(buffer);
+			int sectionEnd = buffer.position();
+			buffer.position(lengthPosition);
+			buffer.putInt(encodedSize);
+			buffer.position(sectionEnd);
+			return sectionEnd - sectionStart;
+		}
+		catch(BufferOverflowException exception)
+		{
+			buffer.position(sectionStart);
+			throw new PayloadSizeExceededException(String.format("Size of the payload exceeded Maximum message size: %s KB", buffer.getMaxCapacity() / 1024), exception);
+		}
 	}
 	
 	static int encodeMessageToCustomArray(Message message, byte[] encodedBytes, int offset, int length) throws PayloadSizeExceededException
@@ -389,16 +484,28 @@ public class Util
 	}
 	
 	// This is not super stable for some reason
+	// Decodes the message straight from the buffers proton received the delivery into, without copying the encoded message first.
+	// Decoded binary data like message body gets its own array, so nothing refers to proton's buffers once this method returns.
 	static Message readMessageFromDelivery(Receiver receiveLink, Delivery delivery)
 	{
-	    int msgSize = delivery.pending();
-        byte[] buffer = new byte[msgSize];
-        
-        int read = receiveLink.recv(buffer, 0, msgSize);
-        
-        Message message = Proton.message();
-        message.decode(buffer, 0, read);
-        return message;	    
+	    ReadableBuffer encodedMessage = receiveLink.recv();
+	    Message message = Proton.message();
+	    message.decode(encodedMessage);
+	    return message;
+	}
+	
+	// Copies the encoded message out of the delivery into an array borrowed from BufferPool, which may be longer than the message.
+	// Returns the number of bytes copied. Callers should release the array to the pool once the message is decoded.
+	static int readEncodedMessageFromDelivery(Receiver receiveLink, Delivery delivery, byte[] buffer)
+	{
+	    return Math.max(0, receiveLink.recv(buffer, 0, delivery.pending()));
+	}
+	
+	static Message decodeMessage(byte[] encodedMessage, int length)
+	{
+	    Message message = Proton.message();
+        message.decode(encodedMessage, 0, length);
+        return message;
 	}
 
     public static URI convertNamespaceToEndPointURI(String namespaceName)
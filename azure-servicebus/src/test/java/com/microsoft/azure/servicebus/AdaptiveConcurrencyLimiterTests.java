@@ -0,0 +1,184 @@
+package com.microsoft.azure.servicebus;
+
+import java.time.Duration;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AdaptiveConcurrencyLimiterTests {
+	private static final long LATENCY = 1000000;
+
+	@Test
+	public void limitStartsAtMinimumAndGrowsByOnePerRound()
+	{
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 10);
+		Assert.assertEquals("Limit didn't start at the minimum", 2, limiter.getLimit());
+
+		Assert.assertFalse("Limit changed before the round ended", limiter.onCallCompleted(LATENCY, false));
+		Assert.assertTrue("Limit didn't change at the end of the round", limiter.onCallCompleted(LATENCY, false));
+		Assert.assertEquals("Limit didn't grow by one", 3, limiter.getLimit());
+
+		completeRound(limiter, LATENCY, 0);
+		Assert.assertEquals("Limit didn't grow by one", 4, limiter.getLimit());
+	}
+
+	@Test
+	public void optionsRejectMinimumBelowOne()
+	{
+		try
+		{
+			new MessageHandlerOptions(0, 10, true, Duration.ofMinutes(5), Duration.ofMinutes(1), null);
+			Assert.fail("Minimum number of concurrent calls below one accepted");
+		}
+		catch (IllegalArgumentException e)
+		{
+			// Expected
+		}
+	}
+
+	@Test
+	public void optionsRejectMinimumAboveMaximum()
+	{
+		try
+		{
+			new MessageHandlerOptions(5, 2, true, Duration.ofMinutes(5), Duration.ofMinutes(1), null);
+			Assert.fail("Minimum number of concurrent calls above the maximum accepted");
+		}
+		catch (IllegalArgumentException e)
+		{
+			// Expected
+		}
+	}
+
+	@Test
+	public void optionsWithEqualMinimumAndMaximumAreFixed()
+	{
+		MessageHandlerOptions options = new MessageHandlerOptions(4, 4, true, Duration.ofMinutes(5), Duration.ofMinutes(1), null);
+		Assert.assertFalse("Options with equal minimum and maximum are adaptive", options.isAdaptiveConcurrency());
+		Assert.assertTrue("Options with a lower minimum are not adaptive", new MessageHandlerOptions(1, 4, true, Duration.ofMinutes(5), Duration.ofMinutes(1), null).isAdaptiveConcurrency());
+	}
+
+	@Test
+	public void limitDoesNotGrowBeyondMaximum()
+	{
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 3);
+		for (int i = 0; i < 10; i++)
+		{
+			completeRound(limiter, LATENCY, 0);
+		}
+		Assert.assertEquals("Limit grew beyond the maximum", 3, limiter.getLimit());
+	}
+
+	@Test
+	public void limitIsCutWhenLatencyGrows()
+	{
+		AdaptiveConcurrencyLimiter limiter = growLimit(10);
+		completeRound(limiter, (long) (LATENCY * AdaptiveConcurrencyLimiter.LATENCY_TOLERANCE * 2), 0);
+		Assert.assertEquals("Limit wasn't cut when latency grew", 7, limiter.getLimit());
+		Assert.assertEquals("Baseline latency didn't stay close to the lowest latency", LATENCY, limiter.getBaselineLatencyInNanos(), LATENCY);
+	}
+
+	@Test
+	public void limitIsCutWhenCallsFail()
+	{
+		AdaptiveConcurrencyLimiter limiter = growLimit(10);
+		completeRound(limiter, LATENCY, 3);
+		Assert.assertEquals("Limit wasn't cut when calls failed", 7, limiter.getLimit());
+
+		// Failures within the tolerated error rate don't cut the limit
+		completeRound(limiter, LATENCY, 1);
+		Assert.assertEquals("Limit was cut for tolerated failures", 8, limiter.getLimit());
+	}
+
+	@Test
+	public void fastFailuresDoNotLowerBaseline()
+	{
+		AdaptiveConcurrencyLimiter limiter = growLimit(10);
+		int callCount = limiter.getLimit();
+		for (int i = 0; i < callCount; i++)
+		{
+			limiter.onCallCompleted(LATENCY / 10, true);
+		}
+		Assert.assertEquals("Limit wasn't cut when calls failed", 7, limiter.getLimit());
+		Assert.assertEquals("Baseline latency lowered by failed calls", LATENCY, limiter.getBaselineLatencyInNanos(), 1);
+
+		completeRound(limiter, LATENCY, 0);
+		Assert.assertEquals("Limit didn't grow after calls recovered", 8, limiter.getLimit());
+	}
+
+	@Test
+	public void overloadedRoundDoesNotMoveBaseline()
+	{
+		AdaptiveConcurrencyLimiter limiter = growLimit(10);
+		limiter.onServerBusy();
+		completeRound(limiter, LATENCY / 10, 0);
+		Assert.assertEquals("Baseline latency moved by an overloaded round", LATENCY, limiter.getBaselineLatencyInNanos(), 1);
+	}
+
+	@Test
+	public void limitIsCutWhenServerIsBusy()
+	{
+		AdaptiveConcurrencyLimiter limiter = growLimit(10);
+		limiter.onServerBusy();
+		completeRound(limiter, LATENCY, 0);
+		Assert.assertEquals("Limit wasn't cut when server was busy", 7, limiter.getLimit());
+
+		completeRound(limiter, LATENCY, 0);
+		Assert.assertEquals("Server busy signal wasn't cleared at the end of the round", 8, limiter.getLimit());
+	}
+
+	@Test
+	public void limitIsNotCutBelowMinimum()
+	{
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 10);
+		for (int i = 0; i < 5; i++)
+		{
+			limiter.onServerBusy();
+			completeRound(limiter, LATENCY, 0);
+		}
+		Assert.assertEquals("Limit was cut below the minimum", 2, limiter.getLimit());
+	}
+
+	@Test
+	public void invalidLimitsAreRejected()
+	{
+		try
+		{
+			new AdaptiveConcurrencyLimiter(0, 10);
+			Assert.fail("Minimum of zero concurrent calls was accepted.");
+		}
+		catch(IllegalArgumentException e)
+		{
+			// passed
+		}
+
+		try
+		{
+			new AdaptiveConcurrencyLimiter(5, 4);
+			Assert.fail("Minimum above maximum concurrent calls was accepted.");
+		}
+		catch(IllegalArgumentException e)
+		{
+			// passed
+		}
+	}
+
+	private static AdaptiveConcurrencyLimiter growLimit(int limit)
+	{
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, limit);
+		while (limiter.getLimit() < limit)
+		{
+			completeRound(limiter, LATENCY, 0);
+		}
+		return limiter;
+	}
+
+	private static void completeRound(AdaptiveConcurrencyLimiter limiter, long latencyInNanos, int failedCallCount)
+	{
+		int callCount = limiter.getLimit();
+		for (int i = 0; i < callCount; i++)
+		{
+			limiter.onCallCompleted(latencyInNanos, i < failedCallCount);
+		}
+	}
+}
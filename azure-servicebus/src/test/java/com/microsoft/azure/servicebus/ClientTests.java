@@ -135,6 +135,13 @@ public abstract class ClientTests extends Tests{
         MessageAndSessionPumpTests.testMessagePumpAutoComplete(this.sendClient, this.receiveClient);
     }
     
+    @Test
+    public void testMessagePumpKeyOrdered() throws InterruptedException, ServiceBusException
+    {
+        this.createClients(ReceiveMode.PEEKLOCK);
+        MessageAndSessionPumpTests.testMessagePumpKeyOrdered(this.sendClient, this.receiveClient);
+    }
+    
     @Test
     public void testReceiveAndDeleteMessagePump() throws InterruptedException, ServiceBusException
     {
@@ -5,8 +5,11 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
@@ -104,6 +107,69 @@ public class MessageAndSessionPumpTests {
 		Thread.sleep(1000);
 	}
 	
+	public static void testMessagePumpKeyOrdered(IMessageSender sender, IMessageAndSessionPump messagePump) throws InterruptedException, ServiceBusException
+	{
+		int numKeys = 3;
+		int numMessagesPerKey = 4;
+		for(int i=0; i<numMessagesPerKey; i++)
+		{
+			for(int j=0; j<numKeys; j++)
+			{
+				Message message = new Message("AMQPMessage");
+				message.setCorrelationId("key" + j);
+				message.setLabel(Integer.toString(i));
+				sender.send(message);
+			}
+		}
+		
+		CountDownLatch messageCountDownLatch = new CountDownLatch(numKeys * numMessagesPerKey);
+		MaxConcurrencyCounter concurrencyCounter = new MaxConcurrencyCounter();
+		Map<String, List<Integer>> handledIndexesByKey = new ConcurrentHashMap<>();
+		Set<String> keysBeingHandled = ConcurrentHashMap.newKeySet();
+		List<String> orderingViolations = Collections.synchronizedList(new ArrayList<>());
+		messagePump.registerMessageHandler(new IMessageHandler() {
+			@Override
+			public CompletableFuture<Void> onMessageAsync(IMessage message)
+			{
+				concurrencyCounter.incrementCount();
+				if(!keysBeingHandled.add(message.getCorrelationId()))
+				{
+					orderingViolations.add("Messages with key " + message.getCorrelationId() + " handled concurrently");
+				}
+				try
+				{
+					Thread.sleep(200);
+				}
+				catch(InterruptedException e)
+				{
+				}
+				handledIndexesByKey.computeIfAbsent(message.getCorrelationId(), (k) -> Collections.synchronizedList(new ArrayList<>())).add(Integer.parseInt(message.getLabel()));
+				keysBeingHandled.remove(message.getCorrelationId());
+				concurrencyCounter.decrementCount();
+				messageCountDownLatch.countDown();
+				return CompletableFuture.completedFuture(null);
+			}
+			
+			@Override
+			public void notifyException(Throwable exception, ExceptionPhase phase)
+			{
+			}
+		}, new MessageHandlerOptions(DEFAULT_MAX_CONCURRENT_CALLS, true, Duration.ofMinutes(10), Duration.ofMinutes(1), IMessage::getCorrelationId), EXECUTOR_SERVICE);
+		
+		Assert.assertTrue("All messages not pumped even after waiting for 2 minutes.", messageCountDownLatch.await(2, TimeUnit.MINUTES));
+		Assert.assertTrue(String.join(", ", orderingViolations), orderingViolations.isEmpty());
+		for(List<Integer> handledIndexes : handledIndexesByKey.values())
+		{
+			for(int i=0; i<handledIndexes.size(); i++)
+			{
+				Assert.assertEquals("Messages with the same key not handled in order", i, handledIndexes.get(i).intValue());
+			}
+		}
+		Assert.assertTrue("Messages with different keys not handled concurrently.", concurrencyCounter.getMaxConcurrencyCount() > 1);
+		// So completes will pass before links are closed by teardown
+		Thread.sleep(1000);
+	}
+	
 	public static void testRegisterAnotherHandlerAfterMessageHandler(IMessageAndSessionPump messagePump) throws InterruptedException, ServiceBusException
 	{
 		CountingMessageHandler messageHandler = new CountingMessageHandler(messagePump, true, 1, false, Duration.ofMinutes(1));
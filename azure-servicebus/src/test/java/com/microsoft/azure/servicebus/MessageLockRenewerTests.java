@@ -0,0 +1,261 @@
+package com.microsoft.azure.servicebus;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.microsoft.azure.servicebus.primitives.MessageLockLostException;
+import com.microsoft.azure.servicebus.primitives.ServerBusyException;
+
+public class MessageLockRenewerTests {
+
+	@Test
+	public void thirtySecondLockRenewedTenSecondsBeforeExpiry()
+	{
+		Instant now = Instant.now();
+		Instant lockedUntilUtc = now.plusSeconds(30);
+		Assert.assertEquals("Lock not renewed ten seconds before expiry", lockedUntilUtc.minusSeconds(10), MessageLockRenewer.getNextRenewalAt(now, lockedUntilUtc));
+	}
+
+	@Test
+	public void shortLockRenewedHalfWayThrough()
+	{
+		Instant now = Instant.now();
+		Assert.assertEquals("Short lock not renewed half way through", now.plusSeconds(5), MessageLockRenewer.getNextRenewalAt(now, now.plusSeconds(10)));
+	}
+
+	@Test
+	public void expiredLockAssumedToHaveMinimumValidity()
+	{
+		Instant now = Instant.now();
+		Assert.assertEquals("Expired lock not renewed soon", now.plusSeconds(2), MessageLockRenewer.getNextRenewalAt(now, now.minusSeconds(1)));
+	}
+
+	@Test
+	public void renewalTimeDoesNotMoveAsLockRunsDown()
+	{
+		Message message = new Message("lock renewal");
+		Instant lockedUntilUtc = Instant.now().plusSeconds(30);
+		message.setLockedUntilUtc(lockedUntilUtc);
+
+		MessageLockRenewer.Registration registration = new MessageLockRenewer.Registration(message, lockedUntilUtc.plus(Duration.ofMinutes(5)), null);
+		Instant nextRenewalAt = registration.getNextRenewalAt();
+		Assert.assertFalse("Lock due for renewal too late", nextRenewalAt.isAfter(lockedUntilUtc.minusSeconds(10)));
+
+		// Computing it again with 15 seconds left would move it to 7.5 seconds before expiry, so the registration keeps the time computed when the lock was taken
+		Assert.assertTrue("Recomputed renewal time didn't move towards expiry", MessageLockRenewer.getNextRenewalAt(lockedUntilUtc.minusSeconds(15), lockedUntilUtc).isAfter(nextRenewalAt));
+		Assert.assertEquals("Renewal time moved as the lock ran down", nextRenewalAt, registration.getNextRenewalAt());
+	}
+
+	@Test
+	public void dueLocksRenewedTogether() throws Exception
+	{
+		FakeReceiver receiver = new FakeReceiver();
+		MessageLockRenewer renewer = new MessageLockRenewer(receiver);
+		Instant now = Instant.now();
+		MessageLockRenewer.Registration firstDue = register(renewer, now.plusSeconds(4), null);
+		MessageLockRenewer.Registration secondDue = register(renewer, now.plusSeconds(5), null);
+		register(renewer, now.plusSeconds(60), null);
+
+		renewer.renewDueLocks(now.plusSeconds(2));
+		Assert.assertEquals("Due locks not renewed with one request", 1, receiver.renewals.size());
+		Set<UUID> expectedLockTokens = new HashSet<>();
+		expectedLockTokens.add(firstDue.getMessage().getLockToken());
+		expectedLockTokens.add(secondDue.getMessage().getLockToken());
+		Assert.assertEquals("Renewed locks are not the due ones", expectedLockTokens, new HashSet<>(receiver.renewals.get(0)));
+	}
+
+	@Test
+	public void renewedLockScheduledFromNewExpiry() throws Exception
+	{
+		FakeReceiver receiver = new FakeReceiver();
+		MessageLockRenewer renewer = new MessageLockRenewer(receiver);
+		Instant now = Instant.now();
+		MessageLockRenewer.Registration registration = register(renewer, now.plusSeconds(4), null);
+
+		renewer.renewDueLocks(now.plusSeconds(2));
+		Instant renewedLockedUntilUtc = registration.getMessage().getLockedUntilUtc();
+		waitFor(() -> !registration.getNextRenewalAt().isBefore(now.plusSeconds(10)));
+		Assert.assertFalse("Next renewal not computed from the renewed lock", registration.getNextRenewalAt().isBefore(renewedLockedUntilUtc.minusSeconds(11)));
+
+		// Renewal in flight or just renewed, so not due again
+		renewer.renewDueLocks(now.plusSeconds(2));
+		Assert.assertEquals("Renewed lock renewed again before it was due", 1, receiver.renewals.size());
+	}
+
+	@Test
+	public void lockHeldBeyondRenewalDurationNotRenewed()
+	{
+		FakeReceiver receiver = new FakeReceiver();
+		MessageLockRenewer renewer = new MessageLockRenewer(receiver);
+		Instant now = Instant.now();
+		Message message = createMessage(now.plusSeconds(4));
+		renewer.addRegistration(new MessageLockRenewer.Registration(message, now.plusSeconds(3), null));
+
+		renewer.renewDueLocks(now.plusSeconds(2));
+		Assert.assertEquals("Lock renewed beyond the maximum renewal duration", 0, receiver.renewals.size());
+	}
+
+	@Test
+	public void failedBatchRenewedOneByOne() throws Exception
+	{
+		FakeReceiver receiver = new FakeReceiver();
+		MessageLockRenewer renewer = new MessageLockRenewer(receiver);
+		Instant now = Instant.now();
+		CompletableFuture<Throwable> lostLockFailure = new CompletableFuture<>();
+		CompletableFuture<Throwable> validLockFailure = new CompletableFuture<>();
+		MessageLockRenewer.Registration lostLock = register(renewer, now.plusSeconds(4), lostLockFailure::complete);
+		MessageLockRenewer.Registration validLock = register(renewer, now.plusSeconds(4), validLockFailure::complete);
+		receiver.lostLockTokens.add(lostLock.getMessage().getLockToken());
+
+		renewer.renewDueLocks(now.plusSeconds(2));
+		Assert.assertTrue("Lost lock not reported", lostLockFailure.get(5, TimeUnit.SECONDS) instanceof MessageLockLostException);
+		waitFor(() -> !validLock.getNextRenewalAt().isBefore(now.plusSeconds(10)));
+		Assert.assertEquals("Locks not renewed one by one after the batch failed", 3, receiver.getRenewalCount());
+		Assert.assertFalse("Valid lock reported as failed", validLockFailure.isDone());
+
+		// Lost lock is no longer renewed
+		renewer.renewDueLocks(now.plusSeconds(30));
+		Assert.assertEquals("Lost lock renewed again", 4, receiver.getRenewalCount());
+	}
+
+	@Test
+	public void transientFailureRetriesBatchLater() throws Exception
+	{
+		FakeReceiver receiver = new FakeReceiver();
+		MessageLockRenewer renewer = new MessageLockRenewer(receiver);
+		Instant now = Instant.now();
+		CompletableFuture<Throwable> firstFailure = new CompletableFuture<>();
+		CompletableFuture<Throwable> secondFailure = new CompletableFuture<>();
+		MessageLockRenewer.Registration first = register(renewer, now.plusSeconds(20), firstFailure::complete);
+		MessageLockRenewer.Registration second = register(renewer, now.plusSeconds(20), secondFailure::complete);
+		receiver.isBusy = true;
+
+		renewer.renewDueLocks(now.plusSeconds(10));
+		Assert.assertTrue("Transient failure not reported", firstFailure.get(5, TimeUnit.SECONDS) instanceof ServerBusyException);
+		Assert.assertTrue("Transient failure not reported", secondFailure.get(5, TimeUnit.SECONDS) instanceof ServerBusyException);
+		Assert.assertEquals("Locks renewed one by one after a transient failure", 1, receiver.getRenewalCount());
+
+		// Retried after a backoff, not on the next check
+		Assert.assertTrue("Renewal not backed off after a transient failure", first.getNextRenewalAt().isAfter(Instant.now()));
+		renewer.renewDueLocks(Instant.now());
+		Assert.assertEquals("Renewal retried without backing off", 1, receiver.getRenewalCount());
+
+		receiver.isBusy = false;
+		renewer.renewDueLocks(Instant.now().plusSeconds(3));
+		Assert.assertEquals("Backed off locks not retried together", 2, receiver.getRenewalCount());
+		Assert.assertEquals("Backed off locks not retried together", 2, receiver.renewals.get(1).size());
+		waitFor(() -> !second.getNextRenewalAt().isBefore(now.plusSeconds(30)));
+		Assert.assertFalse("Next renewal not computed from the renewed lock", second.getNextRenewalAt().isBefore(now.plusSeconds(30)));
+	}
+
+	@Test
+	public void retryBackoffDoublesUpToMaximum()
+	{
+		Instant now = Instant.now();
+		Instant lockedUntilUtc = now.plusSeconds(60);
+		Assert.assertEquals("First retry not backed off by two seconds", now.plusSeconds(2), MessageLockRenewer.getRetryRenewalAt(now, lockedUntilUtc, 1));
+		Assert.assertEquals("Backoff not doubled", now.plusSeconds(4), MessageLockRenewer.getRetryRenewalAt(now, lockedUntilUtc, 2));
+		Assert.assertEquals("Backoff not doubled", now.plusSeconds(8), MessageLockRenewer.getRetryRenewalAt(now, lockedUntilUtc, 3));
+		Assert.assertEquals("Backoff not capped", now.plusSeconds(8), MessageLockRenewer.getRetryRenewalAt(now, lockedUntilUtc, 10));
+	}
+
+	@Test
+	public void retryBackoffStaysBeforeLockExpiry()
+	{
+		Instant now = Instant.now();
+		Assert.assertEquals("Retry not moved before lock expiry", now.plusSeconds(2), MessageLockRenewer.getRetryRenewalAt(now, now.plusSeconds(3), 10));
+		Assert.assertEquals("Retry of expired lock not backed off", now.plusSeconds(8), MessageLockRenewer.getRetryRenewalAt(now, now.minusSeconds(1), 10));
+	}
+
+	private static void waitFor(BooleanSupplier condition) throws InterruptedException
+	{
+		long waitUntilNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!condition.getAsBoolean() && System.nanoTime() < waitUntilNanos)
+		{
+			Thread.sleep(10);
+		}
+	}
+
+	private static Message createMessage(Instant lockedUntilUtc)
+	{
+		Message message = new Message("lock renewal");
+		message.setLockToken(UUID.randomUUID());
+		message.setLockedUntilUtc(lockedUntilUtc);
+		return message;
+	}
+
+	private static MessageLockRenewer.Registration register(MessageLockRenewer renewer, Instant lockedUntilUtc, Consumer<Throwable> onRenewFailure)
+	{
+		MessageLockRenewer.Registration registration = new MessageLockRenewer.Registration(createMessage(lockedUntilUtc), lockedUntilUtc.plus(Duration.ofMinutes(5)), onRenewFailure);
+		renewer.addRegistration(registration);
+		return registration;
+	}
+
+	// Receiver that is never connected, and renews locks by 30 seconds unless they are lost or it is busy
+	private static final class FakeReceiver extends MessageReceiver
+	{
+		private final List<List<UUID>> renewals = new ArrayList<>();
+		private final Set<UUID> lostLockTokens = new HashSet<>();
+		private volatile boolean isBusy;
+
+		FakeReceiver()
+		{
+			super(null, "entity", null, ReceiveMode.PEEKLOCK);
+		}
+
+		synchronized int getRenewalCount()
+		{
+			return this.renewals.size();
+		}
+
+		@Override
+		public synchronized CompletableFuture<Collection<Instant>> renewMessageLockBatchAsync(Collection<? extends IMessage> messages)
+		{
+			List<UUID> lockTokens = new ArrayList<>();
+			for (IMessage message : messages)
+			{
+				lockTokens.add(message.getLockToken());
+			}
+			this.renewals.add(lockTokens);
+
+			CompletableFuture<Collection<Instant>> renewFuture = new CompletableFuture<>();
+			if (this.isBusy)
+			{
+				renewFuture.completeExceptionally(new ServerBusyException());
+				return renewFuture;
+			}
+
+			for (UUID lockToken : lockTokens)
+			{
+				if (this.lostLockTokens.contains(lockToken))
+				{
+					renewFuture.completeExceptionally(new MessageLockLostException("Lock lost"));
+					return renewFuture;
+				}
+			}
+
+			List<Instant> lockedUntilUtcs = new ArrayList<>();
+			for (IMessage message : messages)
+			{
+				Instant lockedUntilUtc = message.getLockedUntilUtc().plusSeconds(30);
+				((Message) message).setLockedUntilUtc(lockedUntilUtc);
+				lockedUntilUtcs.add(lockedUntilUtc);
+			}
+			renewFuture.complete(lockedUntilUtcs);
+			return renewFuture;
+		}
+	}
+}
@@ -0,0 +1,277 @@
+package com.microsoft.azure.servicebus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.microsoft.azure.servicebus.primitives.ServiceBusException;
+
+public class MessagePublisherTests {
+
+	@Test
+	public void nothingReceivedUntilRequested()
+	{
+		FakeReceiver receiver = new FakeReceiver();
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		new MessagePublisher(receiver).subscribe(subscriber);
+		Assert.assertEquals("Messages received before the subscriber asked for them", 0, receiver.receives.size());
+
+		subscriber.subscription.request(3);
+		Assert.assertEquals("Receive not started when messages were requested", 1, receiver.receives.size());
+		Assert.assertEquals("Receive asked for a different number of messages than requested", 3, receiver.receives.get(0).maxMessageCount);
+	}
+
+	@Test
+	public void receivedMessagesDeliveredUpToDemand()
+	{
+		FakeReceiver receiver = new FakeReceiver();
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		new MessagePublisher(receiver).subscribe(subscriber);
+
+		subscriber.subscription.request(3);
+		receiver.completeReceive(0, createMessages(3));
+		Assert.assertEquals("Received messages not delivered", 3, subscriber.messages.size());
+		Assert.assertEquals("Receive started without outstanding demand", 1, receiver.receives.size());
+	}
+
+	@Test
+	public void remainingDemandReceivedAfterPartialReceive()
+	{
+		FakeReceiver receiver = new FakeReceiver();
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		new MessagePublisher(receiver).subscribe(subscriber);
+
+		subscriber.subscription.request(5);
+		receiver.completeReceive(0, createMessages(2));
+		Assert.assertEquals("Received messages not delivered", 2, subscriber.messages.size());
+		Assert.assertEquals("Remaining demand not received", 2, receiver.receives.size());
+		Assert.assertEquals("Next receive asked for more than remaining demand", 3, receiver.receives.get(1).maxMessageCount);
+	}
+
+	@Test
+	public void onlyOneReceiveInFlight()
+	{
+		FakeReceiver receiver = new FakeReceiver();
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		new MessagePublisher(receiver).subscribe(subscriber);
+
+		subscriber.subscription.request(1);
+		subscriber.subscription.request(1);
+		Assert.assertEquals("More than one receive started at a time", 1, receiver.receives.size());
+
+		receiver.completeReceive(0, createMessages(1));
+		Assert.assertEquals("Demand added during a receive not received after it", 2, receiver.receives.size());
+		Assert.assertEquals("Next receive asked for more than remaining demand", 1, receiver.receives.get(1).maxMessageCount);
+	}
+
+	@Test
+	public void unboundedDemandReceivedInLimitedBatches()
+	{
+		FakeReceiver receiver = new FakeReceiver();
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		new MessagePublisher(receiver).subscribe(subscriber);
+
+		subscriber.subscription.request(Long.MAX_VALUE);
+		Assert.assertEquals("Unbounded demand not received in limited batches", 100, receiver.receives.get(0).maxMessageCount);
+
+		receiver.completeReceive(0, createMessages(100));
+		subscriber.subscription.request(Long.MAX_VALUE);
+		Assert.assertEquals("Unbounded demand decreased by delivered messages", 100, receiver.receives.get(1).maxMessageCount);
+	}
+
+	@Test
+	public void emptyReceiveStartsNextReceive()
+	{
+		FakeReceiver receiver = new FakeReceiver();
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		new MessagePublisher(receiver).subscribe(subscriber);
+
+		subscriber.subscription.request(2);
+		receiver.completeReceive(0, null);
+		Assert.assertEquals("Receive not started again after no messages arrived", 2, receiver.receives.size());
+		Assert.assertEquals("Next receive asked for a different number of messages", 2, receiver.receives.get(1).maxMessageCount);
+	}
+
+	@Test
+	public void messagesReceivedAfterCancelAreAbandoned()
+	{
+		FakeReceiver receiver = new FakeReceiver();
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		new MessagePublisher(receiver).subscribe(subscriber);
+
+		subscriber.subscription.request(2);
+		subscriber.subscription.cancel();
+		List<IMessage> messages = createMessages(2);
+		receiver.completeReceive(0, messages);
+		Assert.assertEquals("Messages delivered after cancel", 0, subscriber.messages.size());
+		Assert.assertEquals("Undelivered messages not abandoned", Arrays.asList(messages.get(0).getLockToken(), messages.get(1).getLockToken()), receiver.abandonedLockTokens);
+		Assert.assertEquals("Receive started after cancel", 1, receiver.receives.size());
+	}
+
+	@Test
+	public void receiveFailureEndsSubscription()
+	{
+		FakeReceiver receiver = new FakeReceiver();
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		new MessagePublisher(receiver).subscribe(subscriber);
+
+		subscriber.subscription.request(2);
+		IllegalStateException receiveException = new IllegalStateException("Receiver closed");
+		receiver.receives.get(0).future.completeExceptionally(receiveException);
+		Assert.assertSame("Receive failure not signaled to subscriber", receiveException, subscriber.error);
+
+		subscriber.subscription.request(2);
+		Assert.assertEquals("Receive started after subscription ended", 1, receiver.receives.size());
+	}
+
+	@Test
+	public void nonPositiveRequestEndsSubscription()
+	{
+		FakeReceiver receiver = new FakeReceiver();
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		new MessagePublisher(receiver).subscribe(subscriber);
+
+		subscriber.subscription.request(0);
+		Assert.assertTrue("Non positive request not signaled as an error", subscriber.error instanceof IllegalArgumentException);
+		Assert.assertEquals("Receive started after an invalid request", 0, receiver.receives.size());
+	}
+
+	@Test
+	public void secondSubscriberRejected()
+	{
+		FakeReceiver receiver = new FakeReceiver();
+		MessagePublisher publisher = new MessagePublisher(receiver);
+		publisher.subscribe(new RecordingSubscriber());
+		RecordingSubscriber secondSubscriber = new RecordingSubscriber();
+		publisher.subscribe(secondSubscriber);
+
+		Assert.assertTrue("Second subscriber not rejected", secondSubscriber.error instanceof IllegalStateException);
+		secondSubscriber.subscription.request(1);
+		Assert.assertEquals("Rejected subscriber started a receive", 0, receiver.receives.size());
+	}
+
+	@Test
+	public void newSubscriberAcceptedAfterReceiveFailure()
+	{
+		FakeReceiver receiver = new FakeReceiver();
+		MessagePublisher publisher = new MessagePublisher(receiver);
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		publisher.subscribe(subscriber);
+		subscriber.subscription.request(2);
+		receiver.receives.get(0).future.completeExceptionally(new ServiceBusException(true, "Link detached"));
+
+		RecordingSubscriber newSubscriber = new RecordingSubscriber();
+		publisher.subscribe(newSubscriber);
+		Assert.assertNull("New subscriber rejected after the subscription failed", newSubscriber.error);
+		newSubscriber.subscription.request(2);
+		Assert.assertEquals("New subscriber didn't receive", 2, receiver.receives.size());
+		receiver.completeReceive(1, createMessages(2));
+		Assert.assertEquals("Messages not delivered to new subscriber", 2, newSubscriber.messages.size());
+	}
+
+	@Test
+	public void newSubscriberAcceptedAfterCancel()
+	{
+		FakeReceiver receiver = new FakeReceiver();
+		MessagePublisher publisher = new MessagePublisher(receiver);
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		publisher.subscribe(subscriber);
+		subscriber.subscription.cancel();
+
+		RecordingSubscriber newSubscriber = new RecordingSubscriber();
+		publisher.subscribe(newSubscriber);
+		Assert.assertNull("New subscriber rejected after the subscription was cancelled", newSubscriber.error);
+	}
+
+	private static List<IMessage> createMessages(int messageCount)
+	{
+		List<IMessage> messages = new ArrayList<>();
+		for (int i = 0; i < messageCount; i++)
+		{
+			Message message = new Message("publisher");
+			message.setLockToken(UUID.randomUUID());
+			messages.add(message);
+		}
+		return messages;
+	}
+
+	private static final class PendingReceive
+	{
+		private final int maxMessageCount;
+		private final CompletableFuture<Collection<IMessage>> future;
+
+		PendingReceive(int maxMessageCount)
+		{
+			this.maxMessageCount = maxMessageCount;
+			this.future = new CompletableFuture<>();
+		}
+	}
+
+	// Receiver that is never connected, whose receives are completed by the test
+	private static final class FakeReceiver extends MessageReceiver
+	{
+		private final List<PendingReceive> receives = new ArrayList<>();
+		private final List<UUID> abandonedLockTokens = new ArrayList<>();
+
+		FakeReceiver()
+		{
+			super(null, "entity", null, ReceiveMode.PEEKLOCK);
+		}
+
+		void completeReceive(int receiveIndex, Collection<IMessage> messages)
+		{
+			this.receives.get(receiveIndex).future.complete(messages);
+		}
+
+		@Override
+		public CompletableFuture<Collection<IMessage>> receiveBatchAsync(int maxMessageCount)
+		{
+			PendingReceive receive = new PendingReceive(maxMessageCount);
+			this.receives.add(receive);
+			return receive.future;
+		}
+
+		@Override
+		public CompletableFuture<Void> abandonAsync(UUID lockToken)
+		{
+			this.abandonedLockTokens.add(lockToken);
+			return CompletableFuture.completedFuture(null);
+		}
+	}
+
+	private static final class RecordingSubscriber implements IMessageSubscriber
+	{
+		private final List<IMessage> messages = new ArrayList<>();
+		private IMessageSubscription subscription;
+		private Throwable error;
+
+		@Override
+		public void onSubscribe(IMessageSubscription subscription)
+		{
+			this.subscription = subscription;
+		}
+
+		@Override
+		public void onNext(IMessage message)
+		{
+			this.messages.add(message);
+		}
+
+		@Override
+		public void onError(Throwable throwable)
+		{
+			this.error = throwable;
+		}
+
+		@Override
+		public void onComplete()
+		{
+		}
+	}
+}
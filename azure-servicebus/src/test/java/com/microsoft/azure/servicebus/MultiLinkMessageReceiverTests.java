@@ -0,0 +1,155 @@
+package com.microsoft.azure.servicebus;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MultiLinkMessageReceiverTests {
+
+	@Test
+	public void receivesGoToLinksInTurnWithoutPrefetchedMessages()
+	{
+		FakeLinkReceiver[] links = createLinks(3);
+		MultiLinkMessageReceiver receiver = new MultiLinkMessageReceiver("entity", ReceiveMode.PEEKLOCK, links);
+		for (int i = 0; i < 6; i++)
+		{
+			receiver.receiveAsync(Duration.ofSeconds(1));
+		}
+
+		for (FakeLinkReceiver link : links)
+		{
+			Assert.assertEquals("Receives not spread over links in turn", 2, link.receiveCount);
+		}
+	}
+
+	@Test
+	public void receivesPreferLinkWithPrefetchedMessages()
+	{
+		FakeLinkReceiver[] links = createLinks(3);
+		links[2].prefetchedMessageCount = 5;
+		MultiLinkMessageReceiver receiver = new MultiLinkMessageReceiver("entity", ReceiveMode.PEEKLOCK, links);
+		for (int i = 0; i < 3; i++)
+		{
+			receiver.receiveAsync(Duration.ofSeconds(1));
+		}
+		receiver.receiveBatchAsync(10, Duration.ofSeconds(1));
+
+		Assert.assertEquals("Receive went to a link without prefetched messages", 0, links[0].receiveCount + links[1].receiveCount);
+		Assert.assertEquals("Receives didn't go to the link with prefetched messages", 4, links[2].receiveCount);
+	}
+
+	@Test
+	public void settlementsGoToLinkMessageWasReceivedOn() throws Exception
+	{
+		FakeLinkReceiver[] links = createLinks(2);
+		MultiLinkMessageReceiver receiver = new MultiLinkMessageReceiver("entity", ReceiveMode.PEEKLOCK, links);
+		IMessage firstMessage = links[0].addMessage(Instant.now().plusSeconds(30));
+		IMessage secondMessage = links[1].addMessage(Instant.now().plusSeconds(30));
+		Assert.assertSame("First message not received", firstMessage, receiver.receiveAsync(Duration.ofSeconds(1)).get());
+		Assert.assertSame("Second message not received", secondMessage, receiver.receiveAsync(Duration.ofSeconds(1)).get());
+		Assert.assertEquals("Lock tokens of received messages not tracked", 2, receiver.getTrackedLockTokenCount());
+
+		// Settled in the opposite order from how they were received
+		receiver.completeAsync(secondMessage.getLockToken()).get();
+		receiver.completeAsync(firstMessage.getLockToken()).get();
+		Assert.assertEquals("Message not completed on the link it was received on", firstMessage.getLockToken(), links[0].settledLockTokens.get(0));
+		Assert.assertEquals("Message not completed on the link it was received on", secondMessage.getLockToken(), links[1].settledLockTokens.get(0));
+		Assert.assertEquals("Lock tokens of settled messages still tracked", 0, receiver.getTrackedLockTokenCount());
+	}
+
+	@Test
+	public void unknownLockTokenGoesToFirstLink() throws Exception
+	{
+		FakeLinkReceiver[] links = createLinks(2);
+		MultiLinkMessageReceiver receiver = new MultiLinkMessageReceiver("entity", ReceiveMode.PEEKLOCK, links);
+		UUID unknownLockToken = UUID.randomUUID();
+		receiver.completeAsync(unknownLockToken).get();
+		Assert.assertEquals("Unknown lock token not handed to the first link", unknownLockToken, links[0].settledLockTokens.get(0));
+	}
+
+	@Test
+	public void expiredLockTokensArePruned() throws Exception
+	{
+		FakeLinkReceiver[] links = createLinks(1);
+		MultiLinkMessageReceiver receiver = new MultiLinkMessageReceiver("entity", ReceiveMode.PEEKLOCK, links);
+		Instant now = Instant.now();
+		links[0].addMessage(now.minusSeconds(1));
+		links[0].addMessage(now.plusSeconds(30));
+		Assert.assertEquals("Messages not received", 2, receiver.receiveBatchAsync(2, Duration.ofSeconds(1)).get().size());
+
+		receiver.pruneLockTokens(now);
+		Assert.assertEquals("Expired lock token not pruned, or valid one pruned", 1, receiver.getTrackedLockTokenCount());
+	}
+
+	private static FakeLinkReceiver[] createLinks(int linkCount)
+	{
+		FakeLinkReceiver[] links = new FakeLinkReceiver[linkCount];
+		for (int i = 0; i < linkCount; i++)
+		{
+			links[i] = new FakeLinkReceiver();
+		}
+		return links;
+	}
+
+	// Link receiver that is never connected, and returns messages added to it
+	private static final class FakeLinkReceiver extends MessageReceiver
+	{
+		private final List<IMessage> messages = new ArrayList<>();
+		private final List<UUID> settledLockTokens = new ArrayList<>();
+		private int prefetchedMessageCount;
+		private int receiveCount;
+
+		FakeLinkReceiver()
+		{
+			super(null, "entity", null, ReceiveMode.PEEKLOCK);
+		}
+
+		IMessage addMessage(Instant lockedUntilUtc)
+		{
+			Message message = new Message("multi link");
+			message.setLockToken(UUID.randomUUID());
+			message.setLockedUntilUtc(lockedUntilUtc);
+			this.messages.add(message);
+			return message;
+		}
+
+		@Override
+		int getPrefetchedMessageCount()
+		{
+			return this.prefetchedMessageCount;
+		}
+
+		@Override
+		public CompletableFuture<IMessage> receiveAsync(Duration serverWaitTime)
+		{
+			this.receiveCount++;
+			return CompletableFuture.completedFuture(this.messages.isEmpty() ? null : this.messages.remove(0));
+		}
+
+		@Override
+		public CompletableFuture<Collection<IMessage>> receiveBatchAsync(int maxMessageCount, Duration serverWaitTime)
+		{
+			this.receiveCount++;
+			List<IMessage> receivedMessages = new ArrayList<>();
+			while (!this.messages.isEmpty() && receivedMessages.size() < maxMessageCount)
+			{
+				receivedMessages.add(this.messages.remove(0));
+			}
+			return CompletableFuture.completedFuture(receivedMessages.isEmpty() ? null : receivedMessages);
+		}
+
+		@Override
+		public CompletableFuture<Void> completeAsync(UUID lockToken)
+		{
+			this.settledLockTokens.add(lockToken);
+			return CompletableFuture.completedFuture(null);
+		}
+	}
+}
@@ -145,6 +145,27 @@ public abstract class SendReceiveTests extends Tests {
 		TestCommons.testBasicReceiveBatchAndDelete(this.sender, this.sessionId, this.receiver, this.isEntityPartitioned());
 	}
 	
+	@Test
+	public void testSendFullMessageBatchAndReceive() throws InterruptedException, ServiceBusException, ExecutionException
+	{
+		this.receiver = ClientFactory.createMessageReceiverFromEntityPath(factory, this.receiveEntityPath, ReceiveMode.RECEIVEANDDELETE);
+		TestCommons.testSendFullMessageBatchAndReceive(this.sender, this.sessionId, this.receiver, this.isEntityPartitioned());
+	}
+	
+	@Test
+	public void testAutoBatchedSendAndReceive() throws InterruptedException, ServiceBusException, ExecutionException
+	{
+		this.receiver = ClientFactory.createMessageReceiverFromEntityPath(factory, this.receiveEntityPath, ReceiveMode.RECEIVEANDDELETE);
+		TestCommons.testAutoBatchedSendAndReceive(this.sender, this.sessionId, this.receiver);
+	}
+	
+	@Test
+	public void testSendInBatchesAndReceive() throws InterruptedException, ServiceBusException, ExecutionException
+	{
+		this.receiver = ClientFactory.createMessageReceiverFromEntityPath(factory, this.receiveEntityPath, ReceiveMode.RECEIVEANDDELETE);
+		TestCommons.testSendInBatchesAndReceive(this.sender, this.sessionId, this.receiver);
+	}
+	
 	@Test
 	public void testBasicReceiveAndComplete() throws InterruptedException, ServiceBusException, ExecutionException
 	{
@@ -152,6 +173,13 @@ public abstract class SendReceiveTests extends Tests {
 		TestCommons.testBasicReceiveAndComplete(this.sender, this.sessionId, this.receiver);
 	}
 	
+	@Test
+	public void testPublishedMessagesLimitedByDemand() throws InterruptedException, ServiceBusException, ExecutionException
+	{
+		this.receiver = ClientFactory.createMessageReceiverFromEntityPath(factory, this.receiveEntityPath, ReceiveMode.PEEKLOCK);
+		TestCommons.testPublishedMessagesLimitedByDemand(this.sender, this.sessionId, this.receiver);
+	}
+	
 	@Test
 	public void testBasicReceiveAndCompleteMessageWithProperties() throws InterruptedException, ServiceBusException, ExecutionException
 	{
@@ -187,6 +215,13 @@ public abstract class SendReceiveTests extends Tests {
 		TestCommons.testBasicReceiveAndRenewLockBatch(this.sender, this.sessionId, this.receiver, this.isEntityPartitioned());
 	}
 	
+	@Test
+	public void testRegisteredMessageLocksRenewed() throws InterruptedException, ServiceBusException, ExecutionException
+	{
+		this.receiver = ClientFactory.createMessageReceiverFromEntityPath(factory, this.receiveEntityPath, ReceiveMode.PEEKLOCK);
+		TestCommons.testRegisteredMessageLocksRenewed(this.sender, this.sessionId, this.receiver);
+	}
+	
 	@Test
 	public void testBasicReceiveBatchAndComplete() throws InterruptedException, ServiceBusException, ExecutionException
 	{
@@ -194,6 +229,13 @@ public abstract class SendReceiveTests extends Tests {
 		TestCommons.testBasicReceiveBatchAndComplete(this.sender, this.sessionId, this.receiver, this.isEntityPartitioned());
 	}
 	
+	@Test
+	public void testMultiLinkReceiveBatchAndComplete() throws InterruptedException, ServiceBusException, ExecutionException
+	{
+		this.receiver = ClientFactory.createMultiLinkMessageReceiverFromEntityPath(TestUtils.getNamespaceEndpointURI(), this.receiveEntityPath, TestUtils.getClientSettings(), ReceiveMode.PEEKLOCK, 3, true);
+		TestCommons.testBasicReceiveBatchAndComplete(this.sender, this.sessionId, this.receiver, this.isEntityPartitioned());
+	}
+	
 	@Test
 	public void testSendSceduledMessageAndReceive() throws InterruptedException, ServiceBusException
 	{	
@@ -13,6 +13,8 @@ import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Assert;
 
@@ -168,6 +170,109 @@ public class TestCommons {
 		Assert.assertNull("Messages received again", receivedMessages);
 	}
 		
+	public static void testSendFullMessageBatchAndReceive(IMessageSender sender, String sessionId, IMessageReceiver receiver, boolean isEntityPartitioned) throws InterruptedException, ServiceBusException, ExecutionException
+	{
+		MessageBatch batch = sender.createBatch();
+		while(true)
+		{
+			Message message = new Message(new byte[1024]);
+			if(sessionId != null)
+			{
+				message.setSessionId(sessionId);
+			}
+			else if(isEntityPartitioned)
+			{
+				message.setPartitionKey("batchpartitionkey");
+			}
+			
+			if(!batch.tryAdd(message))
+			{
+				break;
+			}
+		}
+		
+		int numMessages = batch.getCount();
+		Assert.assertTrue("Batch not filled with multiple messages", numMessages > 1);
+		Assert.assertTrue("Batch larger than maximum size", batch.getSizeInBytes() <= batch.getMaxSizeInBytes());
+		sender.sendMessageBatch(batch);
+		
+		int totalReceivedMessages = 0;
+		Collection<IMessage> receivedMessages = receiver.receiveBatch(numMessages);
+		while(receivedMessages != null && receivedMessages.size() > 0)
+		{
+			totalReceivedMessages += receivedMessages.size();
+			receivedMessages = receiver.receiveBatch(numMessages);
+		}
+		
+		Assert.assertEquals("All messages not received", numMessages, totalReceivedMessages);
+	}
+		
+	public static void testAutoBatchedSendAndReceive(IMessageSender sender, String sessionId, IMessageReceiver receiver) throws InterruptedException, ServiceBusException, ExecutionException
+	{
+		int numMessages = 20;
+		sender.setAutoBatchingLingerTime(Duration.ofMillis(100));
+		try
+		{
+			List<CompletableFuture<Void>> sendFutures = new ArrayList<CompletableFuture<Void>>();
+			for(int i=0; i<numMessages; i++)
+			{
+				Message message = new Message("AMQP message");
+				if(sessionId != null)
+				{
+					message.setSessionId(sessionId);
+				}
+				sendFutures.add(sender.sendAsync(message));
+			}
+			CompletableFuture.allOf(sendFutures.toArray(new CompletableFuture<?>[0])).get();
+		}
+		finally
+		{
+			sender.setAutoBatchingLingerTime(Duration.ZERO);
+		}
+		
+		int totalReceivedMessages = 0;
+		Collection<IMessage> receivedMessages = receiver.receiveBatch(numMessages);
+		while(receivedMessages != null && receivedMessages.size() > 0)
+		{
+			totalReceivedMessages += receivedMessages.size();
+			receivedMessages = receiver.receiveBatch(numMessages);
+		}
+		
+		Assert.assertEquals("All messages not received", numMessages, totalReceivedMessages);
+	}
+	
+	public static void testSendInBatchesAndReceive(IMessageSender sender, String sessionId, IMessageReceiver receiver) throws InterruptedException, ServiceBusException, ExecutionException
+	{
+		// Messages with different partition keys, and more than fit in one batch
+		int numMessages = 100;
+		List<Message> messages = new ArrayList<Message>();
+		for(int i=0; i<numMessages; i++)
+		{
+			Message message = new Message(new byte[10 * 1024]);
+			if(sessionId == null)
+			{
+				message.setPartitionKey("partition" + (i % 3));
+			}
+			else
+			{
+				message.setSessionId(sessionId);
+			}
+			messages.add(message);
+		}
+		
+		sender.sendInBatches(messages);
+		
+		int totalReceivedMessages = 0;
+		Collection<IMessage> receivedMessages = receiver.receiveBatch(numMessages);
+		while(receivedMessages != null && receivedMessages.size() > 0)
+		{
+			totalReceivedMessages += receivedMessages.size();
+			receivedMessages = receiver.receiveBatch(numMessages);
+		}
+		
+		Assert.assertEquals("All messages not received", numMessages, totalReceivedMessages);
+	}
+		
 	public static void testBasicReceiveAndComplete(IMessageSender sender, String sessionId, IMessageReceiver receiver) throws InterruptedException, ServiceBusException, ExecutionException
 	{		
 		String messageId = UUID.randomUUID().toString();
@@ -187,6 +292,66 @@ public class TestCommons {
 		Assert.assertNull("Message was not properly completed", receivedMessage);
 	}
 	
+	public static void testPublishedMessagesLimitedByDemand(IMessageSender sender, String sessionId, IMessageReceiver receiver) throws InterruptedException, ServiceBusException, ExecutionException
+	{
+		int numMessages = 3;
+		for(int i = 0; i < numMessages; i++)
+		{
+			Message message = new Message("AMQP message");
+			if(sessionId != null)
+			{
+				message.setSessionId(sessionId);
+			}
+			sender.send(message);
+		}
+
+		LinkedBlockingQueue<IMessage> publishedMessages = new LinkedBlockingQueue<IMessage>();
+		CompletableFuture<IMessageSubscription> subscriptionFuture = new CompletableFuture<IMessageSubscription>();
+		new MessagePublisher(receiver).subscribe(new IMessageSubscriber() {
+			@Override
+			public void onSubscribe(IMessageSubscription subscription)
+			{
+				subscriptionFuture.complete(subscription);
+			}
+
+			@Override
+			public void onNext(IMessage message)
+			{
+				publishedMessages.add(message);
+			}
+
+			@Override
+			public void onError(Throwable throwable)
+			{
+			}
+
+			@Override
+			public void onComplete()
+			{
+			}
+		});
+
+		IMessageSubscription subscription = subscriptionFuture.get();
+		Thread.sleep(SHORT_WAIT_TIME.toMillis());
+		Assert.assertTrue("Messages published before being requested", publishedMessages.isEmpty());
+
+		subscription.request(2);
+		for(int i = 0; i < 2; i++)
+		{
+			IMessage publishedMessage = publishedMessages.poll(30, TimeUnit.SECONDS);
+			Assert.assertNotNull("Requested message not published", publishedMessage);
+			receiver.complete(publishedMessage.getLockToken());
+		}
+		Thread.sleep(SHORT_WAIT_TIME.toMillis());
+		Assert.assertTrue("More messages published than requested", publishedMessages.isEmpty());
+
+		subscription.request(1);
+		IMessage publishedMessage = publishedMessages.poll(30, TimeUnit.SECONDS);
+		Assert.assertNotNull("Requested message not published", publishedMessage);
+		receiver.complete(publishedMessage.getLockToken());
+		subscription.cancel();
+	}
+	
 	public static void testBasicReceiveAndCompleteMessageWithProperties(IMessageSender sender, String sessionId, IMessageReceiver receiver) throws InterruptedException, ServiceBusException, ExecutionException
 	{		
 		String messageId = UUID.randomUUID().toString();
@@ -277,6 +442,54 @@ public class TestCommons {
 		receiver.complete(receivedMessage.getLockToken());
 	}
 		
+	public static void testRegisteredMessageLocksRenewed(IMessageSender sender, String sessionId, IMessageReceiver receiver) throws InterruptedException, ServiceBusException, ExecutionException
+	{
+		int numMessages = 2;
+		for(int i = 0; i < numMessages; i++)
+		{
+			Message message = new Message("AMQP message");
+			if(sessionId != null)
+			{
+				message.setSessionId(sessionId);
+			}
+			sender.send(message);
+		}
+
+		ArrayList<IMessage> receivedMessages = new ArrayList<>();
+		while(receivedMessages.size() < numMessages)
+		{
+			IMessage receivedMessage = receiver.receive();
+			Assert.assertNotNull("Message not received", receivedMessage);
+			receivedMessages.add(receivedMessage);
+		}
+
+		ArrayList<Instant> initialLockTimes = new ArrayList<>();
+		for(IMessage message : receivedMessages)
+		{
+			initialLockTimes.add(message.getLockedUntilUtc());
+			receiver.registerMessageLockRenewal(message, Duration.ofMinutes(5));
+		}
+
+		// Locks are renewed shortly before they expire, so waiting at most as long as the lock duration
+		Instant waitUntil = Instant.now().plus(Duration.ofMinutes(2));
+		boolean allRenewed = false;
+		while(!allRenewed && Instant.now().isBefore(waitUntil))
+		{
+			Thread.sleep(1000);
+			allRenewed = true;
+			for(int i = 0; i < numMessages; i++)
+			{
+				allRenewed &= receivedMessages.get(i).getLockedUntilUtc().isAfter(initialLockTimes.get(i));
+			}
+		}
+		Assert.assertTrue("Registered message locks not renewed", allRenewed);
+
+		for(IMessage message : receivedMessages)
+		{
+			receiver.complete(message.getLockToken());
+		}
+	}
+	
 	public static void testBasicReceiveAndRenewLockBatch(IMessageSender sender, String sessionId, IMessageReceiver receiver, boolean isEntityPartitioned) throws InterruptedException, ServiceBusException, ExecutionException
 	{		
 		int numMessages = 2;
@@ -0,0 +1,69 @@
+package com.microsoft.azure.servicebus.primitives;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AdaptivePrefetchControllerTests {
+	private static final long WINDOW = AdaptivePrefetchController.ADJUSTMENT_INTERVAL_IN_NANOS;
+
+	@Test
+	public void testPrefetchGrowsWithDrainRateAndRoundTrip()
+	{
+		AdaptivePrefetchController controller = new AdaptivePrefetchController(1000, 0);
+		Assert.assertEquals("Tuning doesn't start from one message", 1, controller.getTargetPrefetchCount());
+		controller.onRoundTripMeasured(TimeUnit.MILLISECONDS.toNanos(100));
+
+		Assert.assertFalse("Target changed before the adjustment interval elapsed", controller.onMessagesReturned(50, WINDOW / 2));
+		// 100 messages in 200 milliseconds is 500 messages a second, 50 messages in a round trip
+		Assert.assertTrue("Target didn't change", controller.onMessagesReturned(50, WINDOW));
+		Assert.assertEquals("Target doesn't cover two round trips", 101, controller.getTargetPrefetchCount());
+	}
+
+	@Test
+	public void testPrefetchBoundedByMaxAndLockDuration()
+	{
+		AdaptivePrefetchController controller = new AdaptivePrefetchController(50, 0);
+		controller.onRoundTripMeasured(TimeUnit.MILLISECONDS.toNanos(100));
+		controller.onMessagesReturned(100, WINDOW);
+		Assert.assertEquals("Target exceeds maximum prefetch count", 50, controller.getTargetPrefetchCount());
+
+		controller.setMaxPrefetchCount(1000);
+		// At 500 messages a second, 40 milliseconds of lock time is enough for 10 messages to be taken within half of it
+		controller.onMessageLockObserved(40);
+		Assert.assertEquals("First lock not taken as lock duration", 40, controller.getLockDurationInMillis());
+		controller.onMessagesReturned(100, 2 * WINDOW);
+		Assert.assertEquals("Target not bounded by lock duration", 10, controller.getTargetPrefetchCount());
+	}
+
+	@Test
+	public void testShortLockDoesNotHoldPrefetchDown()
+	{
+		AdaptivePrefetchController controller = new AdaptivePrefetchController(1000, 0);
+		controller.onMessageLockObserved(60000);
+		controller.onMessageLockObserved(40);
+		Assert.assertTrue("Single short lock not taken into account", controller.getLockDurationInMillis() < 60000);
+		for(int i = 0; i < 50; i++)
+		{
+			controller.onMessageLockObserved(60000);
+		}
+		Assert.assertTrue("Lock duration didn't recover from a single short lock", controller.getLockDurationInMillis() > 59000);
+	}
+
+	@Test
+	public void testPrefetchShrinksWhenDrainSlowsDown()
+	{
+		AdaptivePrefetchController controller = new AdaptivePrefetchController(1000, 0);
+		controller.onRoundTripMeasured(TimeUnit.MILLISECONDS.toNanos(100));
+		controller.onMessagesReturned(100, WINDOW);
+		int fastTarget = controller.getTargetPrefetchCount();
+		for(int i = 2; i < 20; i++)
+		{
+			controller.onMessagesReturned(1, i * WINDOW);
+		}
+
+		Assert.assertTrue("Target didn't shrink", controller.getTargetPrefetchCount() < fastTarget / 10);
+		Assert.assertTrue("Target below one message", controller.getTargetPrefetchCount() >= 1);
+	}
+}
@@ -0,0 +1,45 @@
+package com.microsoft.azure.servicebus.primitives;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BufferPoolTests {
+	@Test
+	public void testAcquireRoundsUpToSizeClass()
+	{
+		Assert.assertEquals("Small requests should get the smallest size class", BufferPool.MIN_POOLED_ARRAY_SIZE, BufferPool.acquire(10).length);
+		Assert.assertEquals("Request should be rounded up to next power of two", 4096, BufferPool.acquire(3000).length);
+		Assert.assertEquals("Exact size class request should not be rounded up", 8192, BufferPool.acquire(8192).length);
+		Assert.assertEquals("Requests larger than the largest size class should get exact size", BufferPool.MAX_POOLED_ARRAY_SIZE + 1, BufferPool.acquire(BufferPool.MAX_POOLED_ARRAY_SIZE + 1).length);
+	}
+
+	@Test
+	public void testReleasedArrayIsReused()
+	{
+		byte[] buffer = BufferPool.acquire(20000);
+		int retainedCount = BufferPool.getRetainedCount(buffer.length);
+		BufferPool.release(buffer);
+		Assert.assertEquals("Released array not retained", retainedCount + 1, BufferPool.getRetainedCount(buffer.length));
+		Assert.assertEquals("Pooled array of wrong size returned", buffer.length, BufferPool.acquire(17000).length);
+		Assert.assertEquals("Pooled array not reused", retainedCount, BufferPool.getRetainedCount(buffer.length));
+	}
+
+	@Test
+	public void testRetentionIsBounded()
+	{
+		int maxRetainedCount = BufferPool.MAX_RETAINED_BYTES_PER_SIZE_CLASS / BufferPool.MAX_POOLED_ARRAY_SIZE;
+		for(int i=0; i<maxRetainedCount * 2; i++)
+		{
+			BufferPool.release(new byte[BufferPool.MAX_POOLED_ARRAY_SIZE]);
+		}
+
+		Assert.assertEquals("Pool retained more arrays than allowed", maxRetainedCount, BufferPool.getRetainedCount(BufferPool.MAX_POOLED_ARRAY_SIZE));
+	}
+
+	@Test
+	public void testArraysNotMatchingSizeClassAreNotPooled()
+	{
+		BufferPool.release(new byte[5000]);
+		Assert.assertNotEquals("Array of non size class length returned from the pool", 5000, BufferPool.acquire(5000).length);
+	}
+}
@@ -0,0 +1,79 @@
+package com.microsoft.azure.servicebus.primitives;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConcurrentLongHashMapTests {
+	@Test
+	public void testPutGetRemove()
+	{
+		ConcurrentLongHashMap<String> map = new ConcurrentLongHashMap<String>();
+		Assert.assertNull("Value returned for a new key", map.put(1, "one"));
+		Assert.assertEquals("Previous value not returned", "one", map.put(1, "uno"));
+		Assert.assertEquals("Value not updated", "uno", map.get(1));
+		Assert.assertNull("Value returned for a missing key", map.get(2));
+		Assert.assertEquals("Size not correct", 1, map.size());
+		Assert.assertEquals("Removed value not returned", "uno", map.remove(1));
+		Assert.assertNull("Value returned for a removed key", map.get(1));
+		Assert.assertTrue("Map not empty after removing all keys", map.isEmpty());
+	}
+
+	@Test
+	public void testMatchesHashMapUnderRandomOperations()
+	{
+		// Small key range forces collisions, removals in the middle of probe sequences and several resizes
+		ConcurrentLongHashMap<Long> map = new ConcurrentLongHashMap<Long>();
+		Map<Long, Long> expected = new HashMap<Long, Long>();
+		Random random = new Random(1234);
+		for(int i=0; i<100000; i++)
+		{
+			long key = random.nextInt(5000);
+			if(random.nextInt(3) == 0)
+			{
+				Assert.assertEquals("Removed value doesn't match", expected.remove(key), map.remove(key));
+			}
+			else
+			{
+				Assert.assertEquals("Previous value doesn't match", expected.put(key, (long)i), map.put(key, (long)i));
+			}
+		}
+
+		Assert.assertEquals("Size doesn't match", expected.size(), map.size());
+		for(Map.Entry<Long, Long> entry : expected.entrySet())
+		{
+			Assert.assertEquals("Value doesn't match", entry.getValue(), map.get(entry.getKey()));
+		}
+
+		long[] keys = map.keys();
+		Arrays.sort(keys);
+		long[] expectedKeys = expected.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+		Assert.assertArrayEquals("Keys don't match", expectedKeys, keys);
+		Assert.assertEquals("Values count doesn't match", expected.size(), map.values().size());
+	}
+
+	@Test
+	public void testClear()
+	{
+		ConcurrentLongHashMap<String> map = new ConcurrentLongHashMap<String>();
+		for(long i=0; i<1000; i++)
+		{
+			map.put(i, "value");
+		}
+
+		map.clear();
+		Assert.assertTrue("Map not empty after clear", map.isEmpty());
+		Assert.assertEquals("Keys returned after clear", 0, map.keys().length);
+		Assert.assertNull("Value returned after clear", map.get(10));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNullValueNotAllowed()
+	{
+		new ConcurrentLongHashMap<String>().put(1, null);
+	}
+}
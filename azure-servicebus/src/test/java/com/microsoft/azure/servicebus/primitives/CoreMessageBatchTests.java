@@ -0,0 +1,149 @@
+package com.microsoft.azure.servicebus.primitives;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.Symbol;
+import org.apache.qpid.proton.amqp.messaging.Data;
+import org.apache.qpid.proton.amqp.messaging.MessageAnnotations;
+import org.apache.qpid.proton.message.Message;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CoreMessageBatchTests {
+	private static Message createMessage(int bodySize)
+	{
+		Message message = Proton.message();
+		message.setBody(new Data(new Binary(new byte[bodySize])));
+		return message;
+	}
+
+	private static Message createMessage(int bodySize, String partitionKey, String sessionId)
+	{
+		Message message = createMessage(bodySize);
+		if(partitionKey != null)
+		{
+			Map<Symbol, Object> annotations = new HashMap<Symbol, Object>();
+			annotations.put(Symbol.valueOf("x-opt-partition-key"), partitionKey);
+			message.setMessageAnnotations(new MessageAnnotations(annotations));
+		}
+		message.setGroupId(sessionId);
+		return message;
+	}
+
+	@Test
+	public void testBatchIsFilledUpToMaxSize()
+	{
+		int maxSize = 64 * 1024;
+		CoreMessageBatch batch = new CoreMessageBatch(maxSize);
+		int previousSize = 0;
+		while(batch.tryAdd(createMessage(1000)))
+		{
+			Assert.assertTrue("Batch size didn't grow", batch.getSizeInBytes() > previousSize);
+			previousSize = batch.getSizeInBytes();
+		}
+
+		Assert.assertTrue("Batch not filled", batch.getCount() > 50);
+		Assert.assertTrue("Batch larger than max size", batch.getSizeInBytes() <= maxSize);
+		Assert.assertEquals("Rejected message changed the batch size", previousSize, batch.getSizeInBytes());
+		Assert.assertTrue("Smaller message not added to a batch with room for it", batch.tryAdd(createMessage(10)));
+	}
+
+	@Test
+	public void testFirstMessageTooLarge()
+	{
+		CoreMessageBatch batch = new CoreMessageBatch(1024);
+		Assert.assertFalse("Message larger than max size added", batch.tryAdd(createMessage(2000)));
+		Assert.assertEquals("Batch not empty", 0, batch.getCount());
+		Assert.assertEquals("Empty batch has non zero size", 0, batch.getSizeInBytes());
+		Assert.assertTrue("Message not added to empty batch", batch.tryAdd(createMessage(10)));
+	}
+
+	@Test
+	public void testSentBatchCannotBeReused()
+	{
+		CoreMessageBatch batch = new CoreMessageBatch(1024);
+		batch.tryAdd(createMessage(10));
+		Pair<byte[], Integer> encodedPair = batch.detachEncodedBytes();
+		Assert.assertEquals("Encoded size doesn't match batch size", batch.getSizeInBytes(), encodedPair.getSecondItem().intValue());
+		try
+		{
+			batch.tryAdd(createMessage(10));
+			Assert.fail("Message added to a sent batch");
+		}
+		catch(IllegalStateException e)
+		{
+			// Expected
+		}
+	}
+
+	@Test
+	public void testBatchCanOnlyBeSentByItsCreator()
+	{
+		Object creator = new Object();
+		CoreMessageBatch batch = new CoreMessageBatch(1024, creator);
+		Assert.assertTrue("Batch can't be sent by its creator", batch.canBeSentBy(creator));
+		Assert.assertFalse("Batch can be sent by a different sender", batch.canBeSentBy(new Object()));
+	}
+
+	@Test
+	public void testMessagesSplitByPartitionAndSession() throws PayloadSizeExceededException
+	{
+		List<Message> messages = new ArrayList<Message>();
+		messages.add(createMessage(10, "p1", null));
+		messages.add(createMessage(10, "p2", null));
+		messages.add(createMessage(10, "p1", null));
+		messages.add(createMessage(10, null, "s1"));
+		messages.add(createMessage(10, null, "s1"));
+		messages.add(createMessage(10, null, null));
+
+		List<CoreMessageBatch> batches = CoreMessageBatch.splitIntoBatches(messages, () -> new CoreMessageBatch(64 * 1024));
+		Assert.assertEquals("Messages not grouped by partition and session", 4, batches.size());
+		Assert.assertEquals("Messages of first partition not batched together", 2, batches.get(0).getCount());
+		Assert.assertEquals("Messages of second partition not in their own batch", 1, batches.get(1).getCount());
+		Assert.assertEquals("Messages of session not batched together", 2, batches.get(2).getCount());
+		Assert.assertEquals("Messages without partition or session not in their own batch", 1, batches.get(3).getCount());
+	}
+
+	@Test
+	public void testMessagesSplitWhenBatchIsFull() throws PayloadSizeExceededException
+	{
+		List<Message> messages = new ArrayList<Message>();
+		for(int i = 0; i < 10; i++)
+		{
+			messages.add(createMessage(300));
+		}
+
+		List<CoreMessageBatch> batches = CoreMessageBatch.splitIntoBatches(messages, () -> new CoreMessageBatch(1024));
+		int messageCount = 0;
+		for(CoreMessageBatch batch : batches)
+		{
+			Assert.assertTrue("Batch larger than max size", batch.getSizeInBytes() <= 1024);
+			Assert.assertTrue("Batch not filled before starting the next one", batch == batches.get(batches.size() - 1) || batch.getCount() >= 2);
+			messageCount += batch.getCount();
+		}
+		Assert.assertTrue("Messages not split into several batches", batches.size() > 1);
+		Assert.assertEquals("Messages lost while splitting", 10, messageCount);
+	}
+
+	@Test
+	public void testMessageTooLargeForBatchFailsSplit()
+	{
+		List<Message> messages = new ArrayList<Message>();
+		messages.add(createMessage(10));
+		messages.add(createMessage(2000));
+		try
+		{
+			CoreMessageBatch.splitIntoBatches(messages, () -> new CoreMessageBatch(1024));
+			Assert.fail("Message larger than max size split into a batch");
+		}
+		catch(PayloadSizeExceededException e)
+		{
+			// Expected
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package com.microsoft.azure.servicebus.primitives;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HashedWheelTimerTests {
+	private ScheduledExecutorService executor;
+	private HashedWheelTimer timer;
+
+	@Before
+	public void setup()
+	{
+		this.executor = Executors.newScheduledThreadPool(2);
+		// Small wheel, so timeouts in tests span several rounds
+		this.timer = new HashedWheelTimer(this.executor, Duration.ofMillis(10), 8);
+	}
+
+	@After
+	public void tearDown()
+	{
+		this.timer.stop();
+		this.executor.shutdownNow();
+	}
+
+	@Test
+	public void testTimeoutNeverExpiresEarly() throws InterruptedException
+	{
+		long[] delays = new long[] {0, 5, 30, 200};
+		CountDownLatch latch = new CountDownLatch(delays.length);
+		AtomicInteger earlyExpiries = new AtomicInteger();
+		for(long delay : delays)
+		{
+			long startTime = System.nanoTime();
+			this.timer.newTimeout(() -> {
+				if(System.nanoTime() - startTime < TimeUnit.MILLISECONDS.toNanos(delay))
+				{
+					earlyExpiries.incrementAndGet();
+				}
+				latch.countDown();
+			}, Duration.ofMillis(delay));
+		}
+
+		Assert.assertTrue("Timeouts didn't expire", latch.await(5, TimeUnit.SECONDS));
+		Assert.assertEquals("Timeouts expired before their delay", 0, earlyExpiries.get());
+	}
+
+	@Test
+	public void testCancelledTimeoutDoesNotExpire() throws InterruptedException
+	{
+		AtomicInteger expiries = new AtomicInteger();
+		ScheduledFuture<?> cancelledTimeout = this.timer.newTimeout(() -> expiries.incrementAndGet(), Duration.ofMillis(50));
+		Assert.assertTrue("Pending timeout not cancelled", cancelledTimeout.cancel(false));
+		Assert.assertTrue("Cancelled timeout not reported as cancelled", cancelledTimeout.isCancelled());
+		Assert.assertFalse("Timeout cancelled twice", cancelledTimeout.cancel(false));
+
+		CountDownLatch latch = new CountDownLatch(1);
+		ScheduledFuture<?> expiredTimeout = this.timer.newTimeout(() -> latch.countDown(), Duration.ofMillis(150));
+		Assert.assertTrue("Timeout didn't expire", latch.await(5, TimeUnit.SECONDS));
+		Assert.assertFalse("Expired timeout cancelled", expiredTimeout.cancel(false));
+		Assert.assertEquals("Cancelled timeout expired", 0, expiries.get());
+	}
+}
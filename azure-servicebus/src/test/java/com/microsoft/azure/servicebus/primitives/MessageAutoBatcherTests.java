@@ -0,0 +1,173 @@
+package com.microsoft.azure.servicebus.primitives;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.messaging.Data;
+import org.apache.qpid.proton.message.Message;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MessageAutoBatcherTests {
+	private static final String TIMER_CLIENT_ID = "MessageAutoBatcherTests";
+
+	private List<CoreMessageBatch> sentBatches;
+	private CompletableFuture<Void> batchSendFuture;
+
+	@Before
+	public void setup()
+	{
+		Timer.register(TIMER_CLIENT_ID);
+		this.sentBatches = new ArrayList<CoreMessageBatch>();
+		this.batchSendFuture = CompletableFuture.completedFuture(null);
+	}
+
+	@After
+	public void tearDown()
+	{
+		Timer.unregister(TIMER_CLIENT_ID);
+	}
+
+	private MessageAutoBatcher createBatcher(int maxBatchSize, Duration lingerTime)
+	{
+		MessageAutoBatcher batcher = new MessageAutoBatcher(() -> new CoreMessageBatch(maxBatchSize), (batch) -> {
+			synchronized (this.sentBatches)
+			{
+				this.sentBatches.add(batch);
+			}
+			return this.batchSendFuture;
+		});
+		batcher.setLingerTime(lingerTime);
+		return batcher;
+	}
+
+	private static Message createMessage(int bodySize, String sessionId)
+	{
+		Message message = Proton.message();
+		message.setBody(new Data(new Binary(new byte[bodySize])));
+		message.setGroupId(sessionId);
+		return message;
+	}
+
+	private int getSentBatchCount()
+	{
+		synchronized (this.sentBatches)
+		{
+			return this.sentBatches.size();
+		}
+	}
+
+	@Test
+	public void testMessagesSentTogetherAfterLingerTime() throws InterruptedException, ExecutionException
+	{
+		MessageAutoBatcher batcher = this.createBatcher(64 * 1024, Duration.ofMillis(200));
+		long startNanos = System.nanoTime();
+		List<CompletableFuture<Void>> sendFutures = new ArrayList<CompletableFuture<Void>>();
+		for(int i = 0; i < 3; i++)
+		{
+			sendFutures.add(batcher.addAsync(createMessage(10, null)));
+		}
+
+		Assert.assertEquals("Batch sent before linger time elapsed", 0, this.getSentBatchCount());
+		CompletableFuture.allOf(sendFutures.toArray(new CompletableFuture<?>[0])).get();
+		Assert.assertTrue("Sends completed before linger time elapsed", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) >= 200);
+		Assert.assertEquals("Lingering messages not sent as one batch", 1, this.getSentBatchCount());
+		Assert.assertEquals("Not all lingering messages sent in the batch", 3, this.sentBatches.get(0).getCount());
+	}
+
+	@Test
+	public void testFullBatchSentWithoutWaitingForLingerTime()
+	{
+		MessageAutoBatcher batcher = this.createBatcher(1024, Duration.ofMinutes(1));
+		List<CompletableFuture<Void>> sendFutures = new ArrayList<CompletableFuture<Void>>();
+		while(this.getSentBatchCount() == 0)
+		{
+			sendFutures.add(batcher.addAsync(createMessage(300, null)));
+		}
+
+		CompletableFuture<Void> lastSendFuture = sendFutures.remove(sendFutures.size() - 1);
+		for(CompletableFuture<Void> sendFuture : sendFutures)
+		{
+			Assert.assertTrue("Send of message in the full batch not completed", sendFuture.isDone());
+		}
+		Assert.assertFalse("Message that didn't fit the full batch not lingering in a new batch", lastSendFuture.isDone());
+		Assert.assertEquals("Full batch doesn't have all messages that fit", sendFutures.size(), this.sentBatches.get(0).getCount());
+	}
+
+	@Test
+	public void testMessageOfOtherSessionFlushesLingeringBatch()
+	{
+		MessageAutoBatcher batcher = this.createBatcher(64 * 1024, Duration.ofMinutes(1));
+		CompletableFuture<Void> firstSendFuture = batcher.addAsync(createMessage(10, "session1"));
+		CompletableFuture<Void> secondSendFuture = batcher.addAsync(createMessage(10, "session2"));
+
+		Assert.assertTrue("Lingering batch not sent when a message of another session arrived", firstSendFuture.isDone());
+		Assert.assertFalse("Message of another session not lingering in a new batch", secondSendFuture.isDone());
+		Assert.assertEquals("Messages of different sessions batched together", 1, this.sentBatches.get(0).getCount());
+	}
+
+	@Test
+	public void testDisablingSendsLingeringBatch()
+	{
+		MessageAutoBatcher batcher = this.createBatcher(64 * 1024, Duration.ofMinutes(1));
+		CompletableFuture<Void> sendFuture = batcher.addAsync(createMessage(10, null));
+		batcher.setLingerTime(Duration.ZERO);
+
+		Assert.assertTrue("Lingering batch not sent when auto batching was disabled", sendFuture.isDone());
+		Assert.assertFalse("Auto batching still enabled", batcher.isEnabled());
+		Assert.assertNull("Message added to a batch while auto batching is disabled", batcher.addAsync(createMessage(10, null)));
+	}
+
+	@Test
+	public void testMessageTooLargeForBatchNotAdded()
+	{
+		MessageAutoBatcher batcher = this.createBatcher(1024, Duration.ofMinutes(1));
+		Assert.assertNull("Message larger than a batch added to the batch", batcher.addAsync(createMessage(2000, null)));
+	}
+
+	@Test
+	public void testFlushCompletesWhenBatchSendCompletes()
+	{
+		this.batchSendFuture = new CompletableFuture<Void>();
+		MessageAutoBatcher batcher = this.createBatcher(64 * 1024, Duration.ofMinutes(1));
+		CompletableFuture<Void> firstSendFuture = batcher.addAsync(createMessage(10, null));
+		CompletableFuture<Void> secondSendFuture = batcher.addAsync(createMessage(10, null));
+		CompletableFuture<Void> flushFuture = batcher.flushAsync();
+
+		Assert.assertEquals("Lingering batch not sent on flush", 1, this.getSentBatchCount());
+		Assert.assertFalse("Flush completed before the batch send completed", flushFuture.isDone());
+
+		ServiceBusException sendException = new ServiceBusException(true, "Send failed");
+		this.batchSendFuture.completeExceptionally(sendException);
+		Assert.assertTrue("Flush not completed when the batch send failed", flushFuture.isDone() && !flushFuture.isCompletedExceptionally());
+		for(CompletableFuture<Void> sendFuture : Arrays.asList(firstSendFuture, secondSendFuture))
+		{
+			try
+			{
+				sendFuture.get();
+				Assert.fail("Send of a message in the failed batch succeeded");
+			}
+			catch(InterruptedException | ExecutionException e)
+			{
+				Assert.assertSame("Send failed with a different exception than the batch", sendException, e.getCause());
+			}
+		}
+	}
+
+	@Test
+	public void testFlushWithoutLingeringBatchCompletes()
+	{
+		MessageAutoBatcher batcher = this.createBatcher(64 * 1024, Duration.ofMinutes(1));
+		Assert.assertTrue("Flush without a lingering batch not completed", batcher.flushAsync().isDone());
+		Assert.assertEquals("Batch sent without any messages", 0, this.getSentBatchCount());
+	}
+}
@@ -0,0 +1,88 @@
+package com.microsoft.azure.servicebus.primitives;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PendingSendLimiterTests {
+	@Test
+	public void testSendsBeyondCountLimitWaitInOrder()
+	{
+		PendingSendLimiter limiter = new PendingSendLimiter(2, Long.MAX_VALUE);
+		Assert.assertTrue("Send within limit not admitted", limiter.acquireAsync(10).isDone());
+		Assert.assertTrue("Send within limit not admitted", limiter.acquireAsync(10).isDone());
+		CompletableFuture<Void> firstWaitingSend = limiter.acquireAsync(10);
+		CompletableFuture<Void> secondWaitingSend = limiter.acquireAsync(10);
+		Assert.assertFalse("Send beyond limit admitted", firstWaitingSend.isDone());
+		Assert.assertEquals("Waiting sends count not correct", 2, limiter.getWaitingCount());
+
+		limiter.release(10);
+		Assert.assertTrue("Waiting send not admitted after a send completed", firstWaitingSend.isDone());
+		Assert.assertFalse("Waiting sends admitted out of order", secondWaitingSend.isDone());
+		Assert.assertEquals("In flight count not correct", 2, limiter.getInFlightCount());
+	}
+
+	@Test
+	public void testDefaultLimitsAdmitAllSends()
+	{
+		PendingSendLimiter limiter = new PendingSendLimiter(ClientConstants.DEFAULT_MAX_PENDING_SEND_COUNT, ClientConstants.DEFAULT_MAX_PENDING_SEND_BYTES);
+		for (int i = 0; i < 1000; i++)
+		{
+			Assert.assertTrue("Send not admitted with default limits", limiter.acquireAsync(ClientConstants.MAX_MESSAGE_LENGTH_BYTES).isDone());
+		}
+		Assert.assertEquals("Sends waiting with default limits", 0, limiter.getWaitingCount());
+	}
+
+	@Test
+	public void testSendsBeyondByteLimitWait()
+	{
+		PendingSendLimiter limiter = new PendingSendLimiter(100, 1000);
+		Assert.assertTrue("Send within limit not admitted", limiter.acquireAsync(600).isDone());
+		CompletableFuture<Void> waitingSend = limiter.acquireAsync(600);
+		Assert.assertFalse("Send beyond byte limit admitted", waitingSend.isDone());
+		// Smaller sends don't overtake the waiting send
+		Assert.assertFalse("Send overtook a waiting send", limiter.acquireAsync(100).isDone());
+
+		limiter.release(600);
+		Assert.assertTrue("Waiting send not admitted", waitingSend.isDone());
+		Assert.assertEquals("In flight bytes not correct", 700, limiter.getInFlightBytes());
+	}
+
+	@Test
+	public void testSendLargerThanByteLimitAdmittedWhenNothingInFlight()
+	{
+		PendingSendLimiter limiter = new PendingSendLimiter(100, 1000);
+		Assert.assertTrue("Large send not admitted with nothing in flight", limiter.acquireAsync(5000).isDone());
+		CompletableFuture<Void> waitingSend = limiter.acquireAsync(5000);
+		Assert.assertFalse("Large send admitted with another send in flight", waitingSend.isDone());
+		limiter.release(5000);
+		Assert.assertTrue("Large send not admitted after in flight send completed", waitingSend.isDone());
+	}
+
+	@Test
+	public void testWithdrawnSendDoesNotHoldRoom()
+	{
+		PendingSendLimiter limiter = new PendingSendLimiter(1, Long.MAX_VALUE);
+		limiter.acquireAsync(10);
+		CompletableFuture<Void> withdrawnSend = limiter.acquireAsync(10);
+		CompletableFuture<Void> waitingSend = limiter.acquireAsync(10);
+		withdrawnSend.completeExceptionally(new TimeoutException("Timed out"));
+
+		limiter.release(10);
+		Assert.assertTrue("Send behind a withdrawn send not admitted", waitingSend.isDone());
+		Assert.assertFalse("Send behind a withdrawn send failed", waitingSend.isCompletedExceptionally());
+		Assert.assertEquals("Withdrawn send counted as in flight", 1, limiter.getInFlightCount());
+		Assert.assertEquals("Withdrawn send still waiting", 0, limiter.getWaitingCount());
+	}
+
+	@Test
+	public void testRaisedLimitAdmitsWaitingSends()
+	{
+		PendingSendLimiter limiter = new PendingSendLimiter(1, Long.MAX_VALUE);
+		limiter.acquireAsync(10);
+		CompletableFuture<Void> waitingSend = limiter.acquireAsync(10);
+		limiter.setLimits(2, Long.MAX_VALUE);
+		Assert.assertTrue("Waiting send not admitted after limit raised", waitingSend.isDone());
+	}
+}
@@ -0,0 +1,52 @@
+package com.microsoft.azure.servicebus.primitives;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PrefetchMemoryBudgetTests {
+	@Test
+	public void testReserveAndRelease()
+	{
+		PrefetchMemoryBudget budget = new PrefetchMemoryBudget(1000);
+		Assert.assertTrue("Budget not limited", budget.isLimited());
+		budget.reserve(700);
+		Assert.assertEquals("Available bytes not correct", 300, budget.getAvailableBytes());
+		budget.reserve(500);
+		Assert.assertEquals("Budget can be overdrawn by messages larger than expected", -200, budget.getAvailableBytes());
+		budget.release(1200);
+		Assert.assertEquals("Used bytes not zero after releasing everything", 0, budget.getUsedBytes());
+		Assert.assertFalse("Unlimited budget reported as limited", new PrefetchMemoryBudget(Long.MAX_VALUE).isLimited());
+	}
+
+	@Test
+	public void testWaitersNotifiedInOrderWhenEnoughIsReleased()
+	{
+		PrefetchMemoryBudget budget = new PrefetchMemoryBudget(1000);
+		budget.reserve(1000);
+		List<String> notified = new ArrayList<String>();
+		budget.waitForAvailableBytes(500, () -> notified.add("first"));
+		budget.waitForAvailableBytes(100, () -> notified.add("second"));
+
+		budget.release(200);
+		Assert.assertTrue("Waiter notified before enough memory was released", notified.isEmpty());
+
+		budget.release(400);
+		Assert.assertEquals("Waiters not notified in order", "first", notified.get(0));
+		Assert.assertEquals("Waiters not notified in order", "second", notified.get(1));
+
+		budget.release(100);
+		Assert.assertEquals("Waiter notified more than once", 2, notified.size());
+	}
+
+	@Test
+	public void testWaiterNotifiedRightAwayIfMemoryIsAvailable()
+	{
+		PrefetchMemoryBudget budget = new PrefetchMemoryBudget(1000);
+		List<String> notified = new ArrayList<String>();
+		budget.waitForAvailableBytes(500, () -> notified.add("waiter"));
+		Assert.assertEquals("Waiter not notified with memory available", 1, notified.size());
+	}
+}
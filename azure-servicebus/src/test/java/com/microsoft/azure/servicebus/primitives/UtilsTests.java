@@ -1,8 +1,16 @@
 package com.microsoft.azure.servicebus.primitives;
 
 import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
 
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.messaging.ApplicationProperties;
+import org.apache.qpid.proton.amqp.messaging.Data;
+import org.apache.qpid.proton.message.Message;
 import org.junit.Test;
 
 import com.microsoft.azure.servicebus.primitives.Util;
@@ -49,4 +57,114 @@ public class UtilsTests {
 		Instant javaInstant = Instant.parse(dotNetDateTimeString);
 		Assert.assertEquals("DateTime conversion from Java to DotNet failed", dotNetTicks, Util.convertInstantToDotNetTicks(javaInstant));
 	}
+	
+	@Test
+	public void testEncodeMessageToOptimalSizeArrayIsExact() throws PayloadSizeExceededException
+	{
+		Message message = Proton.message();
+		message.setBody(new Data(new Binary(new byte[100])));
+		// Many small properties of types the size estimation doesn't handle
+		Map<String, Object> properties = new HashMap<String, Object>();
+		for(int i=0; i<500; i++)
+		{
+			properties.put("property" + i, i % 2 == 0);
+		}
+		message.setApplicationProperties(new ApplicationProperties(properties));
+		
+		byte[] expectedBytes = new byte[ClientConstants.MAX_MESSAGE_LENGTH_BYTES];
+		int expectedSize = message.encode(expectedBytes, 0, expectedBytes.length);
+		Pair<byte[], Integer> encodedPair = Util.encodeMessageToOptimalSizeArray(message, ClientConstants.MAX_MESSAGE_LENGTH_BYTES);
+		Assert.assertEquals("Encoded size is not exact", expectedSize, encodedPair.getSecondItem().intValue());
+		Assert.assertArrayEquals("Encoded bytes don't match", Arrays.copyOf(expectedBytes, expectedSize), Arrays.copyOf(encodedPair.getFirstItem(), expectedSize));
+	}
+	
+	@Test(expected = PayloadSizeExceededException.class)
+	public void testEncodeMessageToOptimalSizeArrayLargerThanMaxSize() throws PayloadSizeExceededException
+	{
+		Message message = Proton.message();
+		message.setBody(new Data(new Binary(new byte[10 * 1024])));
+		Util.encodeMessageToOptimalSizeArray(message, 8 * 1024);
+	}
+	
+	@Test
+	public void testEncodeMessageToDataSection() throws PayloadSizeExceededException
+	{
+		Message innerMessage = Proton.message();
+		innerMessage.setMessageId("id1");
+		// Large enough for proton to encode the wrapping binary as vbin32 too
+		innerMessage.setBody(new Data(new Binary(new byte[1000])));
+		byte[] innerBytes = new byte[ClientConstants.MAX_MESSAGE_LENGTH_BYTES];
+		int innerSize = innerMessage.encode(innerBytes, 0, innerBytes.length);
+		Message wrappingMessage = Proton.message();
+		wrappingMessage.setBody(new Data(new Binary(innerBytes, 0, innerSize)));
+		byte[] expectedBytes = new byte[ClientConstants.MAX_MESSAGE_LENGTH_BYTES];
+		int expectedSize = wrappingMessage.encode(expectedBytes, 0, expectedBytes.length);
+		
+		GrowableWritableBuffer buffer = new GrowableWritableBuffer(10, ClientConstants.MAX_MESSAGE_LENGTH_BYTES);
+		int encodedSize = Util.encodeMessageToDataSection(innerMessage, buffer);
+		Assert.assertEquals("Data section size is not correct", expectedSize, encodedSize);
+		Assert.assertEquals("Buffer position not moved to the end of data section", expectedSize, buffer.position());
+		Assert.assertArrayEquals("Data section bytes don't match", Arrays.copyOf(expectedBytes, expectedSize), Arrays.copyOf(buffer.getArray(), encodedSize));
+	}
+	
+	@Test
+	public void testEncodeMessageToDataSectionRestoresPositionWhenFull() throws PayloadSizeExceededException
+	{
+		Message smallMessage = Proton.message();
+		smallMessage.setBody(new Data(new Binary(new byte[10])));
+		Message largeMessage = Proton.message();
+		largeMessage.setBody(new Data(new Binary(new byte[2000])));
+		
+		GrowableWritableBuffer buffer = new GrowableWritableBuffer(10, 1024);
+		int encodedSize = Util.encodeMessageToDataSection(smallMessage, buffer);
+		try
+		{
+			Util.encodeMessageToDataSection(largeMessage, buffer);
+			Assert.fail("Data section larger than max size encoded into the buffer");
+		}
+		catch(PayloadSizeExceededException e)
+		{
+			Assert.assertEquals("Buffer position not restored", encodedSize, buffer.position());
+		}
+	}
+	
+	@Test
+	public void testDeliveryTagConversion()
+	{
+		long[] tagValues = {0, 1, 255, 256, 65535, 1L << 40, Long.MAX_VALUE};
+		int[] expectedLengths = {1, 1, 1, 2, 2, 6, 8};
+		for(int i=0; i<tagValues.length; i++)
+		{
+			byte[] deliveryTag = Util.convertLongToDeliveryTag(tagValues[i]);
+			Assert.assertEquals("Delivery tag is not compact", expectedLengths[i], deliveryTag.length);
+			Assert.assertEquals("Delivery tag conversion failed", tagValues[i], Util.convertDeliveryTagToLong(deliveryTag));
+		}
+		
+		Assert.assertEquals("Tag longer than 8 bytes not rejected", -1, Util.convertDeliveryTagToLong(new byte[16]));
+		Assert.assertEquals("Empty tag not rejected", -1, Util.convertDeliveryTagToLong(new byte[0]));
+	}
+	
+	@Test
+	public void testMessageDecodedOnFirstAccess()
+	{
+		Message message = Proton.message();
+		message.setMessageId("lazy");
+		Map<String, Object> properties = new HashMap<>();
+		properties.put("key", "value");
+		message.setApplicationProperties(new ApplicationProperties(properties));
+		message.setBody(new Data(new Binary(new byte[] {1, 2, 3})));
+		// Message releases its buffer to the pool once decoded, so the buffer has to come from the pool
+		byte[] buffer = BufferPool.acquire(1024);
+		int encodedSize = message.encode(buffer, 0, buffer.length);
+		
+		MessageWithDeliveryTag lazyMessage = new MessageWithDeliveryTag(buffer, encodedSize, new byte[] {1});
+		Assert.assertFalse("Message decoded before first access", lazyMessage.isDecoded());
+		Assert.assertEquals("Encoded size not correct", encodedSize, lazyMessage.getEncodedSize());
+		Message decodedMessage = lazyMessage.getMessage();
+		Assert.assertTrue("Message not decoded after first access", lazyMessage.isDecoded());
+		Assert.assertSame("Message decoded more than once", decodedMessage, lazyMessage.getMessage());
+		Assert.assertEquals("Message id not decoded", "lazy", decodedMessage.getMessageId());
+		Assert.assertEquals("Application properties not decoded", "value", decodedMessage.getApplicationProperties().getValue().get("key"));
+		Assert.assertArrayEquals("Body not decoded", new byte[] {1, 2, 3}, ((Data)decodedMessage.getBody()).getValue().getArray());
+	}
 }